@@ -0,0 +1,126 @@
+package com.jab.resilience;
+
+import com.github.tomakehurst.wiremock.WireMockServer;
+import com.github.tomakehurst.wiremock.client.WireMock;
+import com.github.tomakehurst.wiremock.core.WireMockConfiguration;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static com.jab.resilience.Constants.FALLBACK_GOD_RESPONSE;
+
+/**
+ * Concurrent blocking callers against a slow upstream, thread pool vs virtual threads behind the breaker.
+ *
+ * Every operation is a wave of callers, the score is the time to serve the wave and the aux counters
+ * tell how many calls were served or fell back because the pool could not run them within the time limit.
+ * Callers are virtual threads in both modes so only the executor behind the breaker changes. Java 21+ runtime.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class BlockingModeBenchmark {
+
+    private static final int UPSTREAM_DELAY_MILLIS = 200;
+
+    @Param({"THREAD_POOL", "VIRTUAL_THREADS"})
+    public BlockingMode mode;
+
+    @Param({"100", "1000", "4000"})
+    public int callers;
+
+    private WireMockServer wireMockServer;
+    private ConfigurableApplicationContext context;
+    private ServiceProtected service;
+    private ExecutorService callerExecutor;
+    private String address;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Outcome {
+        public long served;
+        public long fallback;
+    }
+
+    @Setup(Level.Trial)
+    public void setup() {
+        wireMockServer = new WireMockServer(WireMockConfiguration.options()
+            .dynamicPort()
+            .containerThreads(200)
+            .asynchronousResponseEnabled(true)
+            .asynchronousResponseThreads(100)
+            .usingFilesUnderDirectory("src/test/resources"));
+        wireMockServer.start();
+        wireMockServer.stubFor(WireMock.get(WireMock.urlPathEqualTo("/greek"))
+            .willReturn(WireMock.aResponse().withHeader("Content-Type", "application/json")
+                .withStatus(200)
+                .withFixedDelay(UPSTREAM_DELAY_MILLIS)
+                .withBodyFile("greek.json")));
+        address = "http://localhost:" + wireMockServer.port() + "/greek";
+
+        System.setProperty("spring.devtools.restart.enabled", "false");
+        context = new SpringApplicationBuilder(MainApplication.class)
+            .web(WebApplicationType.NONE)
+            .properties(
+                "spring.main.banner-mode=off",
+                "logging.level.com.jab.resilience=WARN",
+                "resilience.blocking.mode=" + mode,
+                "resilience.coalescing.enabled=false",
+                "resilience.limiter.enabled=false",
+                "resilience.retry.enabled=false",
+                "resilience.isolation.routes.CB1=/greek/**",
+                "resilience.isolation.instances.CB1.max-concurrent-calls=10000",
+                "upstream.client.max-connections=5000",
+                "upstream.client.pending-acquire-max-count=10000")
+            .run();
+        service = context.getBean(ServiceProtected.class);
+        callerExecutor = VirtualThreads.newPerTaskExecutor();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        callerExecutor.shutdownNow();
+        context.close();
+        wireMockServer.stop();
+    }
+
+    @Benchmark
+    public void blockingCallers(Outcome outcome) {
+        List<CompletableFuture<String>> responses = IntStream.range(0, callers)
+            .mapToObj(i -> CompletableFuture.supplyAsync(() -> service.retrieve(address + "?caller=" + i), callerExecutor))
+            .collect(Collectors.toList());
+
+        responses.stream().map(CompletableFuture::join).forEach(response -> {
+            if (FALLBACK_GOD_RESPONSE.equals(response)) {
+                outcome.fallback++;
+            } else {
+                outcome.served++;
+            }
+        });
+    }
+
+}
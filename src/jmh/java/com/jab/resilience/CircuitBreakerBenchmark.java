@@ -0,0 +1,99 @@
+package com.jab.resilience;
+
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.timelimiter.TimeLimiterConfig;
+import io.vavr.control.Try;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.cloud.circuitbreaker.resilience4j.ReactiveResilience4JCircuitBreakerFactory;
+import org.springframework.cloud.circuitbreaker.resilience4j.Resilience4JConfigBuilder;
+import reactor.core.publisher.Mono;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static com.jab.resilience.Constants.CIRCUIT_BREAKER_1;
+import static com.jab.resilience.Constants.FALLBACK_GOD_RESPONSE;
+
+/**
+ * Breaker overhead around a constant call, in CLOSED and OPEN state (OPEN measures the fallback path):
+ * plain Resilience4j, breaker acquisition through the Spring Cloud factory, and the reactive run with block().
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CircuitBreakerBenchmark {
+
+    private static final String GOD = "Zeus";
+
+    @Param({"CLOSED", "OPEN"})
+    private CircuitBreaker.State state;
+
+    private CircuitBreaker circuitBreaker;
+    private Supplier<String> decorated;
+    private ReactiveResilience4JCircuitBreakerFactory factory;
+
+    @Setup
+    public void setup() {
+        MainConfiguration configuration = new MainConfiguration();
+        CircuitBreakerConfig circuitBreakerConfig = configuration.circuitBreakerConfig(new CircuitBreakerProperties());
+        TimeLimiterConfig timeLimiterConfig = configuration.timeLimiterConfig(new TimeLimiterProperties());
+        CircuitBreakerRegistry registry = configuration.circuitBreakerRegistry(circuitBreakerConfig, new SlidingWindowProperties(), Clock.systemUTC());
+
+        circuitBreaker = registry.circuitBreaker(CIRCUIT_BREAKER_1);
+        decorated = CircuitBreaker.decorateSupplier(circuitBreaker, () -> GOD);
+
+        factory = new ReactiveResilience4JCircuitBreakerFactory();
+        factory.configureCircuitBreakerRegistry(registry);
+        factory.configureDefault(id -> new Resilience4JConfigBuilder(id)
+            .circuitBreakerConfig(circuitBreakerConfig)
+            .timeLimiterConfig(TimeLimiterConfig.custom()
+                .timeoutDuration(Duration.ofSeconds(3))
+                .build())
+            .build());
+
+        //Forced open, a plain OPEN breaker would move to HALF_OPEN after the 1s wait
+        if (state == CircuitBreaker.State.OPEN) {
+            circuitBreaker.transitionToForcedOpenState();
+        }
+    }
+
+    @Benchmark
+    public String baseline() {
+        return GOD;
+    }
+
+    @Benchmark
+    public String resilience4jDecorated() {
+        return Try.ofSupplier(decorated).getOrElse(FALLBACK_GOD_RESPONSE);
+    }
+
+    @Benchmark
+    public Object factoryCreate() {
+        return factory.create(CIRCUIT_BREAKER_1);
+    }
+
+    @Benchmark
+    public String factoryRunBlock() {
+        return factory.create(CIRCUIT_BREAKER_1)
+            .run(Mono.just(GOD), throwable -> Mono.just(FALLBACK_GOD_RESPONSE))
+            .block();
+    }
+
+}
@@ -0,0 +1,72 @@
+package com.jab.resilience;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.TimeUnit;
+
+import static com.jab.resilience.Constants.CIRCUIT_BREAKER_1;
+
+/**
+ * Cost of the stage instrumentation around a constant attempt, Reactor Netty hooks simulated.
+ * Budget: the difference between enabled=true and enabled=false stays under 1 microsecond per call.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class InstrumentationBenchmark {
+
+    private static final String GOD = "Zeus";
+
+    @Param({"false", "true"})
+    public boolean enabled;
+
+    private StageMetrics stageMetrics;
+
+    @Setup
+    public void setup() {
+        InstrumentationProperties properties = new InstrumentationProperties();
+        properties.setEnabled(enabled);
+        stageMetrics = new StageMetrics(properties, new SimpleMeterRegistry());
+    }
+
+    @Benchmark
+    public String instrumentedAttempt() {
+        return call();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public String instrumentedAttemptContended() {
+        return call();
+    }
+
+    private String call() {
+        return stageMetrics.attempt(CIRCUIT_BREAKER_1, () -> Mono.subscriberContext()
+                .map(context -> {
+                    StageMetrics.Attempt.from(context).ifPresent(attempt -> {
+                        attempt.requestSent();
+                        attempt.responseReceived();
+                    });
+                    return GOD;
+                }))
+            .transform(stageMetrics.timed(CIRCUIT_BREAKER_1, StageMetrics.Stage.BREAKER))
+            .block();
+    }
+
+}
@@ -0,0 +1,68 @@
+package com.jab.resilience;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.util.StreamUtils;
+import reactor.core.publisher.Flux;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Upstream payload decoding: per-call ObjectMapper (original code), shared ObjectReader and streaming decoder.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JsonDecodeBenchmark {
+
+    private final DefaultDataBufferFactory bufferFactory = new DefaultDataBufferFactory();
+
+    private String payload;
+    private byte[] payloadBytes;
+    private ObjectReader sharedReader;
+    private JsonArrayStreamDecoder streamDecoder;
+
+    @Setup
+    public void setup() throws IOException {
+        payloadBytes = StreamUtils.copyToByteArray(new ClassPathResource("__files/greek.json").getInputStream());
+        payload = new String(payloadBytes, StandardCharsets.UTF_8);
+        ObjectMapper objectMapper = new ObjectMapper();
+        sharedReader = objectMapper.readerFor(new TypeReference<List<String>>() {});
+        streamDecoder = new JsonArrayStreamDecoder(objectMapper);
+    }
+
+    @Benchmark
+    public List<String> perCallObjectMapper() throws IOException {
+        return new ObjectMapper().readValue(payload, new TypeReference<List<String>>() {});
+    }
+
+    @Benchmark
+    public List<String> sharedObjectReader() throws IOException {
+        return sharedReader.readValue(payload);
+    }
+
+    @Benchmark
+    public String streamingFirstElement() {
+        return streamDecoder.decode(Flux.just(bufferFactory.wrap(payloadBytes))).blockFirst();
+    }
+
+}
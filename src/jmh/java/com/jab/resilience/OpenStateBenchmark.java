@@ -0,0 +1,119 @@
+package com.jab.resilience;
+
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.netty.buffer.ByteBuf;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.server.RouterFunction;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import reactor.netty.http.client.HttpClient;
+
+import java.util.concurrent.TimeUnit;
+
+import static com.jab.resilience.Constants.CIRCUIT_BREAKER_1;
+import static com.jab.resilience.Constants.FALLBACK_GOD_RESPONSE;
+import static org.springframework.web.reactive.function.server.RequestPredicates.GET;
+import static org.springframework.web.reactive.function.server.RouterFunctions.route;
+import static org.springframework.web.reactive.function.server.ServerResponse.ok;
+
+/**
+ * Cost of a request while the breaker is open, with and without resilience.fast-fail, against a route
+ * answering the same body with no protection at all. The breaker is forced open, the upstream is never called.
+ * Run with -prof gc to compare the allocation per request, in process (rejection only) and over HTTP.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class OpenStateBenchmark {
+
+    private static final String UPSTREAM_URL = "http://localhost:8090/greek";
+
+    @Param({"true", "false"})
+    private boolean fastFail;
+
+    private ConfigurableApplicationContext context;
+    private HttpClient serverClient;
+    private ServiceProtected serviceProtected;
+    private OpenStateFastFail.Gate gate;
+
+    @Configuration
+    public static class StaticRoute {
+
+        @Bean
+        RouterFunction<ServerResponse> staticRoute() {
+            return route(GET("/api/static"),
+                req -> ok().contentType(MediaType.TEXT_PLAIN).bodyValue(FALLBACK_GOD_RESPONSE));
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setup() {
+        System.setProperty("spring.devtools.restart.enabled", "false");
+        context = new SpringApplicationBuilder(MainApplication.class, StaticRoute.class)
+            .properties(
+                "server.port=0",
+                "spring.main.banner-mode=off",
+                "logging.level.com.jab.resilience=WARN",
+                "upstream.url=" + UPSTREAM_URL,
+                "resilience.fast-fail.enabled=" + fastFail)
+            .run();
+        int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+
+        context.getBean(CircuitBreakerRegistry.class).circuitBreaker(CIRCUIT_BREAKER_1).transitionToForcedOpenState();
+        serverClient = HttpClient.create().baseUrl("http://localhost:" + port);
+        serviceProtected = context.getBean(ServiceProtected.class);
+        gate = context.getBean(OpenStateFastFail.class).gate(UPSTREAM_URL);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public long openCircuit() {
+        return count("/api/retrieve");
+    }
+
+    @Benchmark
+    public long staticResponse() {
+        return count("/api/static");
+    }
+
+    //The rejection only, without the HTTP exchange: the gate when enabled, otherwise the protected path
+    @Benchmark
+    public String rejection() {
+        return fastFail && gate.rejects()
+            ? serviceProtected.fallback(UPSTREAM_URL)
+            : serviceProtected.retrieveReactive(UPSTREAM_URL).block();
+    }
+
+    private long count(String uri) {
+        return serverClient.get().uri(uri)
+            .responseContent()
+            .map(ByteBuf::readableBytes)
+            .reduce(0L, (total, chunk) -> total + chunk)
+            .block();
+    }
+
+}
@@ -0,0 +1,139 @@
+package com.jab.resilience;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.github.tomakehurst.wiremock.WireMockServer;
+import com.github.tomakehurst.wiremock.client.WireMock;
+import com.github.tomakehurst.wiremock.core.WireMockConfiguration;
+import io.netty.buffer.ByteBuf;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import reactor.netty.http.client.HttpClient;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Re-serving the upstream JSON array: pass-through proxy against decode and re-encode with indent_output,
+ * and the first element route for reference. Run with -prof gc, gc.alloc.rate.norm is the allocation per
+ * request of the whole process (client, server and stub), every heap copy of the payload shows up there.
+ * The responseBytes counter is the payload size sent back per request.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ProxyBenchmark {
+
+    @Param({"20", "5000"})
+    private int elements;
+
+    private WireMockServer wireMockServer;
+    private ConfigurableApplicationContext context;
+    private HttpClient upstreamClient;
+    private HttpClient serverClient;
+    private ObjectReader listReader;
+    private ObjectWriter indentedWriter;
+
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Bytes {
+
+        public long responseBytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            responseBytes = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        ObjectMapper objectMapper = new ObjectMapper();
+        String payload = objectMapper.writeValueAsString(IntStream.range(0, elements)
+            .mapToObj(i -> "God-" + i)
+            .collect(Collectors.toList()));
+
+        wireMockServer = new WireMockServer(WireMockConfiguration.options().dynamicPort());
+        wireMockServer.start();
+        wireMockServer.stubFor(WireMock.get(WireMock.urlEqualTo("/greek"))
+            .willReturn(WireMock.aResponse().withHeader("Content-Type", "application/json")
+                .withStatus(200)
+                .withBody(payload)));
+        String upstream = "http://localhost:" + wireMockServer.port();
+
+        System.setProperty("spring.devtools.restart.enabled", "false");
+        context = new SpringApplicationBuilder(MainApplication.class)
+            .properties(
+                "server.port=0",
+                "spring.main.banner-mode=off",
+                "logging.level.com.jab.resilience=WARN",
+                "upstream.url=" + upstream + "/greek")
+            .run();
+        int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+
+        upstreamClient = HttpClient.create().baseUrl(upstream);
+        serverClient = HttpClient.create().baseUrl("http://localhost:" + port);
+        listReader = objectMapper.readerFor(new TypeReference<List<String>>() {});
+        indentedWriter = objectMapper.writer().with(SerializationFeature.INDENT_OUTPUT);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+        wireMockServer.stop();
+    }
+
+    @Benchmark
+    public long proxy(Bytes bytes) {
+        return count(serverClient, "/api/proxy", bytes);
+    }
+
+    @Benchmark
+    public long retrieveFirstElement(Bytes bytes) {
+        return count(serverClient, "/api/retrieve", bytes);
+    }
+
+    //Whole array through the decoded path: String, List<String>, indented byte[]
+    @Benchmark
+    public byte[] decodeAndReencode(Bytes bytes) throws IOException {
+        String body = upstreamClient.get().uri("/greek").responseContent().aggregate().asString().block();
+        byte[] reencoded = indentedWriter.writeValueAsBytes(listReader.<List<String>>readValue(body));
+        bytes.responseBytes += reencoded.length;
+        return reencoded;
+    }
+
+    private static long count(HttpClient client, String uri, Bytes bytes) {
+        long received = client.get().uri(uri)
+            .responseContent()
+            .map(ByteBuf::readableBytes)
+            .reduce(0L, (total, chunk) -> total + chunk)
+            .block();
+        bytes.responseBytes += received;
+        return received;
+    }
+
+}
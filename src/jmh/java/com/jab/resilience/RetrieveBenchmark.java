@@ -0,0 +1,78 @@
+package com.jab.resilience;
+
+import com.github.tomakehurst.wiremock.WireMockServer;
+import com.github.tomakehurst.wiremock.client.WireMock;
+import com.github.tomakehurst.wiremock.core.WireMockConfiguration;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end retrieve against an in-process WireMock stub, through the whole Spring wiring.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class RetrieveBenchmark {
+
+    private WireMockServer wireMockServer;
+    private ConfigurableApplicationContext context;
+    private ServiceProtected service;
+    private String address;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        wireMockServer = new WireMockServer(WireMockConfiguration.options()
+            .dynamicPort()
+            .usingFilesUnderDirectory("src/test/resources"));
+        wireMockServer.start();
+        wireMockServer.stubFor(WireMock.get(WireMock.urlEqualTo("/greek"))
+            .willReturn(WireMock.aResponse().withHeader("Content-Type", "application/json")
+                .withStatus(200)
+                .withBodyFile("greek.json")));
+        address = "http://localhost:" + wireMockServer.port() + "/greek";
+
+        System.setProperty("spring.devtools.restart.enabled", "false");
+        context = new SpringApplicationBuilder(MainApplication.class)
+            .web(WebApplicationType.NONE)
+            .properties(
+                "spring.main.banner-mode=off",
+                "logging.level.com.jab.resilience=WARN")
+            .run();
+        service = context.getBean(ServiceProtected.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+        wireMockServer.stop();
+    }
+
+    @Benchmark
+    public String retrieveBlocking() {
+        return service.retrieve(address);
+    }
+
+    @Benchmark
+    public String retrieveReactive() {
+        return service.retrieveReactive(address).block();
+    }
+
+}
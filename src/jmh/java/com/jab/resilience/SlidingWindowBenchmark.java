@@ -0,0 +1,96 @@
+package com.jab.resilience;
+
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.vavr.collection.HashMap;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Closed breaker bookkeeping under contention: Resilience4j time-based window vs the striped window,
+ * one shared breaker, 5% failures (never trips), from 1 to 64 threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SlidingWindowBenchmark {
+
+    private static final IOException FAILURE = new IOException("upstream");
+
+    @Param({"RESILIENCE4J", "STRIPED"})
+    public String window;
+
+    private CircuitBreaker circuitBreaker;
+
+    @State(Scope.Thread)
+    public static class Caller {
+        int calls;
+    }
+
+    @Setup
+    public void setup() {
+        CircuitBreakerConfig config = CircuitBreakerConfig.custom()
+            .slidingWindowType(CircuitBreakerConfig.SlidingWindowType.TIME_BASED)
+            .slidingWindowSize(10)
+            .minimumNumberOfCalls(100)
+            .failureRateThreshold(50)
+            .build();
+        circuitBreaker = "STRIPED".equals(window)
+            ? new StripedWindowCircuitBreaker("bench", config, HashMap.empty(), new SlidingWindowProperties(), System::nanoTime)
+            : CircuitBreaker.of("bench", config);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public boolean threads01(Caller caller) {
+        return call(caller);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public boolean threads04(Caller caller) {
+        return call(caller);
+    }
+
+    @Benchmark
+    @Threads(16)
+    public boolean threads16(Caller caller) {
+        return call(caller);
+    }
+
+    @Benchmark
+    @Threads(64)
+    public boolean threads64(Caller caller) {
+        return call(caller);
+    }
+
+    private boolean call(Caller caller) {
+        if (!circuitBreaker.tryAcquirePermission()) {
+            return false;
+        }
+        if (++caller.calls % 20 == 0) {
+            circuitBreaker.onError(100, TimeUnit.MICROSECONDS, FAILURE);
+        } else {
+            circuitBreaker.onSuccess(100, TimeUnit.MICROSECONDS);
+        }
+        return true;
+    }
+
+}
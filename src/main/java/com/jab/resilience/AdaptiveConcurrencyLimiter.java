@@ -0,0 +1,204 @@
+package com.jab.resilience;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+import reactor.core.publisher.SignalType;
+
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.DoubleUnaryOperator;
+import java.util.function.Function;
+
+/**
+ * AIMD concurrency limit for one upstream: every fast call grows the limit by 1/limit
+ * (about +1 per round trip), every slow call multiplies it by the backoff ratio.
+ */
+public class AdaptiveConcurrencyLimiter {
+
+    private static final String METRIC_PREFIX = "resilience.limiter.";
+
+    private final String key;
+    private final AdaptiveLimiterProperties properties;
+    private final long latencyThresholdNanos;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final Queue<Waiter> waiters = new ConcurrentLinkedQueue<>();
+    private final MeterRegistry meterRegistry;
+    private final List<Meter> meters;
+    private final Counter rejected;
+    //Bits of the double limit, updated with compare-and-set so concurrent releases never lose an update
+    private final AtomicLong limit;
+
+    /**
+     * Limiter for one upstream key, with its gauges and rejection counter bound to the registry.
+     */
+    public AdaptiveConcurrencyLimiter(String key, AdaptiveLimiterProperties properties, MeterRegistry meterRegistry) {
+        this.key = key;
+        this.properties = properties;
+        this.latencyThresholdNanos = properties.getLatencyThreshold().toNanos();
+        this.limit = new AtomicLong(Double.doubleToLongBits(properties.getInitialLimit()));
+        this.meterRegistry = meterRegistry;
+
+        this.rejected = Counter.builder(METRIC_PREFIX + "rejected")
+            .tag("upstream", key)
+            .register(meterRegistry);
+        this.meters = List.of(
+            Gauge.builder(METRIC_PREFIX + "limit", this, AdaptiveConcurrencyLimiter::getLimit)
+                .tag("upstream", key)
+                .register(meterRegistry),
+            Gauge.builder(METRIC_PREFIX + "inflight", this, AdaptiveConcurrencyLimiter::getInFlight)
+                .tag("upstream", key)
+                .register(meterRegistry),
+            rejected);
+    }
+
+    /**
+     * Reactor operator running the source only once a permit is available, identity when disabled.
+     *
+     * @param <T> element type
+     * @return operator failing with {@link LimitExceededException} when rejected
+     */
+    public <T> Function<Mono<T>, Mono<T>> operator() {
+        if (!properties.isEnabled()) {
+            return Function.identity();
+        }
+
+        //Released before the outcome is propagated, a caller seeing the result sees the permit back
+        return source -> Mono.defer(() -> {
+            Permit permit = new Permit();
+            return acquire(permit)
+                .then(source)
+                .doOnSuccess(value -> release(permit, SignalType.ON_COMPLETE))
+                .doOnError(error -> release(permit, SignalType.ON_ERROR))
+                .doOnCancel(() -> release(permit, SignalType.CANCEL));
+        });
+    }
+
+    /**
+     * Unregister the gauges and the rejection counter, once the upstream is evicted.
+     */
+    public void removeMeters() {
+        meters.forEach(meterRegistry::remove);
+    }
+
+    public int getLimit() {
+        return (int) limit();
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    private Mono<Void> acquire(Permit permit) {
+        if (tryAcquire()) {
+            permit.grant();
+            return Mono.empty();
+        }
+        if (properties.getMaxQueueTime().isZero() || waiters.size() >= properties.getMaxQueueSize()) {
+            return reject();
+        }
+
+        return Mono.<Void>create(sink -> {
+            Waiter waiter = new Waiter(permit, sink);
+            waiters.offer(waiter);
+            sink.onDispose(() -> waiters.remove(waiter));
+            drain();
+        }).timeout(properties.getMaxQueueTime(), Mono.defer(this::reject));
+    }
+
+    private Mono<Void> reject() {
+        rejected.increment();
+        return Mono.error(new LimitExceededException(key));
+    }
+
+    private boolean tryAcquire() {
+        int current = inFlight.get();
+        while (current < (int) limit()) {
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+            current = inFlight.get();
+        }
+        return false;
+    }
+
+    private void release(Permit permit, SignalType signal) {
+        if (!permit.revoke()) {
+            return;
+        }
+        inFlight.decrementAndGet();
+
+        long elapsed = System.nanoTime() - permit.grantedAt;
+        if (elapsed > latencyThresholdNanos) {
+            updateLimit(current -> Math.max(properties.getMinLimit(), current * properties.getBackoffRatio()));
+        } else if (signal == SignalType.ON_COMPLETE) {
+            updateLimit(current -> Math.min(properties.getMaxLimit(), current + 1.0 / current));
+        }
+        drain();
+    }
+
+    //A waiter whose grant loses to its timeout or cancellation gives the slot back to the next one
+    private void drain() {
+        while (!waiters.isEmpty() && tryAcquire()) {
+            Waiter waiter = waiters.poll();
+            if (waiter == null) {
+                inFlight.decrementAndGet();
+                return;
+            }
+            if (waiter.permit.grant()) {
+                waiter.sink.success();
+            } else {
+                inFlight.decrementAndGet();
+            }
+        }
+    }
+
+    private double limit() {
+        return Double.longBitsToDouble(limit.get());
+    }
+
+    private void updateLimit(DoubleUnaryOperator update) {
+        limit.updateAndGet(bits -> Double.doubleToLongBits(update.applyAsDouble(Double.longBitsToDouble(bits))));
+    }
+
+    /**
+     * Slot of one call: granted once, then released once. The grant of a queued call and the release of its
+     * timeout race on the same state, a release before the grant makes the grant fail.
+     */
+    private static class Permit {
+
+        private static final int WAITING = 0;
+        private static final int GRANTED = 1;
+        private static final int RELEASED = 2;
+
+        private final AtomicInteger state = new AtomicInteger(WAITING);
+        private volatile long grantedAt;
+
+        boolean grant() {
+            grantedAt = System.nanoTime();
+            return state.compareAndSet(WAITING, GRANTED);
+        }
+
+        boolean revoke() {
+            return state.getAndSet(RELEASED) == GRANTED;
+        }
+    }
+
+    private static class Waiter {
+
+        private final Permit permit;
+        private final MonoSink<Void> sink;
+
+        Waiter(Permit permit, MonoSink<Void> sink) {
+            this.permit = permit;
+            this.sink = sink;
+        }
+    }
+
+}
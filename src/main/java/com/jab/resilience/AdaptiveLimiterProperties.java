@@ -0,0 +1,37 @@
+package com.jab.resilience;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "resilience.limiter")
+public class AdaptiveLimiterProperties {
+
+    private boolean enabled = true;
+
+    private int initialLimit = 50;
+
+    private int minLimit = 4;
+
+    private int maxLimit = 500;
+
+    /**
+     * Calls slower than this shrink the limit, faster ones grow it
+     */
+    private Duration latencyThreshold = Duration.ofSeconds(1);
+
+    /**
+     * Multiplicative decrease applied on every slow call
+     */
+    private double backoffRatio = 0.9;
+
+    /**
+     * Time a call over the limit waits for a permit, zero rejects immediately
+     */
+    private Duration maxQueueTime = Duration.ZERO;
+
+    private int maxQueueSize = 1_000;
+
+}
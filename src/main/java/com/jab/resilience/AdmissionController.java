@@ -0,0 +1,312 @@
+package com.jab.resilience;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.util.PathMatcher;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Admission control of the protected routes at the WebFlux edge.
+ *
+ * <p>Requests are classified by the priority header, then by route. Up to max-concurrent-requests are in flight,
+ * the next ones wait in a bounded queue per priority and are admitted most important first. A request is shed
+ * with a 503 and Retry-After, without waiting, when a more important one is already waiting, when its queue is
+ * full or when its queue is standing: the last request admitted from it waited more than half of max-queue-delay.
+ * A queued request is shed once it waited max-queue-delay. The actuator and the routes outside
+ * resilience.admission.paths are never held.
+ */
+@Component
+public class AdmissionController implements WebFilter, Ordered {
+
+    private static final String METRIC_PREFIX = "resilience.admission.";
+
+    //After the http.server.requests filter, so the shed requests are measured too
+    private static final int ORDER = Ordered.HIGHEST_PRECEDENCE + 10;
+
+    private static final Mono<Boolean> ADMITTED = Mono.just(true);
+    private static final Mono<Boolean> SHED = Mono.just(false);
+
+    private final AdmissionProperties properties;
+    private final String actuatorPattern;
+    private final String retryAfterSeconds;
+    private final PathMatcher pathMatcher = new AntPathMatcher();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final Map<RequestPriority, Lane> lanes = new EnumMap<>(RequestPriority.class);
+
+    /**
+     * Admission controller with its gauges and shedding counters bound to the registry.
+     */
+    public AdmissionController(
+            AdmissionProperties properties,
+            MeterRegistry meterRegistry,
+            @Value("${management.endpoints.web.base-path:/actuator}") String actuatorBasePath) {
+        this.properties = properties;
+        this.actuatorPattern = actuatorBasePath + "/**";
+        this.retryAfterSeconds = String.valueOf(Math.max(1, (properties.getRetryAfter().toMillis() + 999) / 1_000));
+
+        for (RequestPriority priority : RequestPriority.values()) {
+            AdmissionProperties.Lane settings = properties.getLanes()
+                .getOrDefault(priority, new AdmissionProperties.Lane());
+            Lane lane = new Lane(priority, settings, meterRegistry);
+            Gauge.builder(METRIC_PREFIX + "queued", lane.queued, AtomicInteger::get)
+                .tag("priority", priority.name())
+                .register(meterRegistry);
+            lanes.put(priority, lane);
+        }
+        Gauge.builder(METRIC_PREFIX + "inflight", inFlight, AtomicInteger::get)
+            .register(meterRegistry);
+    }
+
+    @Override
+    public int getOrder() {
+        return ORDER;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        String path = exchange.getRequest().getPath().pathWithinApplication().value();
+        if (!properties.isEnabled() || !isProtected(path)) {
+            return chain.filter(exchange);
+        }
+
+        Lane lane = lanes.get(classify(exchange.getRequest(), path));
+        Permit permit = new Permit();
+        return acquire(lane, permit)
+            .flatMap(admitted -> admitted ? chain.filter(exchange) : shed(exchange.getResponse(), lane))
+            .doFinally(signal -> release(permit));
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    private boolean isProtected(String path) {
+        return !pathMatcher.match(actuatorPattern, path)
+            && properties.getPaths().stream().anyMatch(pattern -> pathMatcher.match(pattern, path));
+    }
+
+    RequestPriority classify(ServerHttpRequest request, String path) {
+        return Optional.ofNullable(request.getHeaders().getFirst(properties.getPriorityHeader()))
+            .flatMap(AdmissionController::parse)
+            .or(() -> properties.getRoutes().entrySet().stream()
+                .filter(route -> route.getValue().stream().anyMatch(pattern -> pathMatcher.match(pattern, path)))
+                .map(Map.Entry::getKey)
+                .min(Comparator.naturalOrder()))
+            .orElse(properties.getDefaultPriority());
+    }
+
+    private static Optional<RequestPriority> parse(String value) {
+        for (RequestPriority priority : RequestPriority.values()) {
+            if (priority.name().equalsIgnoreCase(value.trim())) {
+                return Optional.of(priority);
+            }
+        }
+        return Optional.empty();
+    }
+
+    private Mono<Boolean> acquire(Lane lane, Permit permit) {
+        if (!isWaitingAtOrAbove(lane.priority) && tryAcquire()) {
+            permit.grant();
+            return ADMITTED;
+        }
+        if (isWaitingAbove(lane.priority) || lane.isFull() || lane.isLate()) {
+            return SHED;
+        }
+
+        return Mono.<Boolean>create(sink -> {
+            Waiter waiter = new Waiter(lane, permit, sink);
+            lane.offer(waiter);
+            sink.onDispose(() -> lane.remove(waiter));
+            drain();
+        }).timeout(lane.maxQueueDelay, Mono.fromSupplier(() -> lane.timedOut(permit)));
+    }
+
+    private Mono<Void> shed(ServerHttpResponse response, Lane lane) {
+        lane.shed.increment();
+        response.setStatusCode(HttpStatus.SERVICE_UNAVAILABLE);
+        response.getHeaders().set(HttpHeaders.RETRY_AFTER, retryAfterSeconds);
+        return response.setComplete();
+    }
+
+    private boolean tryAcquire() {
+        int current = inFlight.get();
+        while (current < properties.getMaxConcurrentRequests()) {
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+            current = inFlight.get();
+        }
+        return false;
+    }
+
+    private void release(Permit permit) {
+        if (permit.revoke()) {
+            inFlight.decrementAndGet();
+            drain();
+        }
+    }
+
+    //A waiter whose grant loses to its queue timeout or cancellation gives the slot back to the next one
+    private void drain() {
+        while (isWaitingAtOrAbove(RequestPriority.LOW) && tryAcquire()) {
+            Waiter waiter = pollLive();
+            if (waiter == null) {
+                inFlight.decrementAndGet();
+                return;
+            }
+            if (waiter.permit.grant()) {
+                waiter.lane.admitted(waiter);
+                waiter.sink.success(true);
+            } else {
+                inFlight.decrementAndGet();
+            }
+        }
+    }
+
+    private Waiter pollLive() {
+        for (Lane lane : lanes.values()) {
+            Waiter waiter = lane.poll();
+            if (waiter != null) {
+                return waiter;
+            }
+        }
+        return null;
+    }
+
+    private boolean isWaitingAbove(RequestPriority priority) {
+        return lanes.values().stream()
+            .anyMatch(lane -> lane.priority.compareTo(priority) < 0 && lane.queued.get() > 0);
+    }
+
+    private boolean isWaitingAtOrAbove(RequestPriority priority) {
+        return lanes.values().stream()
+            .anyMatch(lane -> lane.priority.compareTo(priority) <= 0 && lane.queued.get() > 0);
+    }
+
+    private static class Lane {
+
+        private final RequestPriority priority;
+        private final int maxQueueSize;
+        private final Duration maxQueueDelay;
+        private final long maxQueueDelayNanos;
+        private final Queue<Waiter> waiters = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger queued = new AtomicInteger();
+        private final Counter shed;
+        private volatile long lastQueueDelayNanos;
+
+        Lane(RequestPriority priority, AdmissionProperties.Lane settings, MeterRegistry meterRegistry) {
+            this.priority = priority;
+            this.maxQueueSize = settings.getMaxQueueSize();
+            this.maxQueueDelay = settings.getMaxQueueDelay();
+            this.maxQueueDelayNanos = settings.getMaxQueueDelay().toNanos();
+            this.shed = Counter.builder(METRIC_PREFIX + "shed")
+                .tag("priority", priority.name())
+                .register(meterRegistry);
+        }
+
+        boolean isFull() {
+            return queued.get() >= maxQueueSize;
+        }
+
+        //Standing queue, a new arrival would most likely wait until it is shed
+        boolean isLate() {
+            return queued.get() > 0 && lastQueueDelayNanos > maxQueueDelayNanos / 2;
+        }
+
+        void admitted(Waiter waiter) {
+            lastQueueDelayNanos = System.nanoTime() - waiter.enqueuedAt;
+        }
+
+        boolean timedOut(Permit permit) {
+            if (!permit.expire()) {
+                //Granted by a drain racing the timeout, admitted after all
+                return true;
+            }
+            lastQueueDelayNanos = maxQueueDelayNanos;
+            return false;
+        }
+
+        void offer(Waiter waiter) {
+            queued.incrementAndGet();
+            waiters.offer(waiter);
+        }
+
+        //Only one of remove and poll unlinks a waiter, so it leaves the queued count once
+        void remove(Waiter waiter) {
+            if (waiters.remove(waiter)) {
+                queued.decrementAndGet();
+            }
+        }
+
+        Waiter poll() {
+            Waiter waiter = waiters.poll();
+            if (waiter != null) {
+                queued.decrementAndGet();
+            }
+            return waiter;
+        }
+    }
+
+    /**
+     * Slot of one request. A queued permit moves once from WAITING to either GRANTED, by the drain, or
+     * RELEASED, by the queue timeout or the end of the request: a grant racing them never lands on a
+     * request that already left, the loser of the compare-and-set gives the slot back or is admitted.
+     */
+    static class Permit {
+
+        private static final int WAITING = 0;
+        private static final int GRANTED = 1;
+        private static final int RELEASED = 2;
+
+        private final AtomicInteger state = new AtomicInteger(WAITING);
+
+        boolean grant() {
+            return state.compareAndSet(WAITING, GRANTED);
+        }
+
+        boolean expire() {
+            return state.compareAndSet(WAITING, RELEASED);
+        }
+
+        boolean revoke() {
+            return state.getAndSet(RELEASED) == GRANTED;
+        }
+    }
+
+    private static class Waiter {
+
+        private final Lane lane;
+        private final Permit permit;
+        private final MonoSink<Boolean> sink;
+        private final long enqueuedAt = System.nanoTime();
+
+        Waiter(Lane lane, Permit permit, MonoSink<Boolean> sink) {
+            this.lane = lane;
+            this.permit = permit;
+            this.sink = sink;
+        }
+    }
+
+}
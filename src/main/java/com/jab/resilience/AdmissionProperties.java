@@ -0,0 +1,62 @@
+package com.jab.resilience;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+@Data
+@ConfigurationProperties(prefix = "resilience.admission")
+public class AdmissionProperties {
+
+    private boolean enabled = true;
+
+    /**
+     * Path patterns going through admission, the actuator is never queued nor shed
+     */
+    private List<String> paths = new ArrayList<>(List.of("/api/**"));
+
+    /**
+     * Request header carrying a {@link RequestPriority}, it wins over the routes
+     */
+    private String priorityHeader = "X-Priority";
+
+    private RequestPriority defaultPriority = RequestPriority.NORMAL;
+
+    /**
+     * Path patterns per priority, for the requests without the header
+     */
+    private Map<RequestPriority, List<String>> routes = new EnumMap<>(RequestPriority.class);
+
+    /**
+     * Admitted requests in flight, the next ones queue by priority
+     */
+    private int maxConcurrentRequests = 1_000;
+
+    /**
+     * Sent back in the Retry-After header of the shed requests
+     */
+    private Duration retryAfter = Duration.ofSeconds(1);
+
+    /**
+     * Queue per priority
+     */
+    private Map<RequestPriority, Lane> lanes = new EnumMap<>(RequestPriority.class);
+
+    @Data
+    public static class Lane {
+
+        private int maxQueueSize = 100;
+
+        /**
+         * Longest wait for a slot, an arrival is shed at once when the head of its queue waited longer
+         */
+        private Duration maxQueueDelay = Duration.ofMillis(100);
+
+    }
+
+}
@@ -0,0 +1,15 @@
+package com.jab.resilience;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Data
+@ConfigurationProperties(prefix = "resilience.batch")
+public class BatchProperties {
+
+    /**
+     * Maximum upstream calls in flight per batch
+     */
+    private int concurrency = 64;
+
+}
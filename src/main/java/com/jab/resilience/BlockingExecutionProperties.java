@@ -0,0 +1,17 @@
+package com.jab.resilience;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Data
+@ConfigurationProperties(prefix = "resilience.blocking")
+public class BlockingExecutionProperties {
+
+    private BlockingMode mode = BlockingMode.REACTIVE;
+
+    /**
+     * Platform threads used by the THREAD_POOL mode
+     */
+    private int poolSize = 200;
+
+}
@@ -0,0 +1,20 @@
+package com.jab.resilience;
+
+public enum BlockingMode {
+
+    /**
+     * Block the caller on the reactive pipeline, no extra thread is held while the upstream answers
+     */
+    REACTIVE,
+
+    /**
+     * Run the blocking circuit breaker and its time limiter on a bounded pool of platform threads
+     */
+    THREAD_POOL,
+
+    /**
+     * Run the blocking circuit breaker and its time limiter on a virtual thread per call (Java 21+ runtime)
+     */
+    VIRTUAL_THREADS
+
+}
@@ -0,0 +1,79 @@
+package com.jab.resilience;
+
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import lombok.Value;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * State of one breaker on one node: its current state and the calls and failures in its window.
+ * The sequence grows with every message of a node, so stale or duplicated ones can be dropped.
+ */
+@Value
+public class BreakerStateMessage {
+
+    private static final int VERSION = 1;
+
+    String channel;
+    String node;
+    String breaker;
+    long sequence;
+    CircuitBreaker.State state;
+    int calls;
+    int failures;
+
+    /**
+     * Wire format, a few dozen bytes so a message always fits in one datagram.
+     *
+     * @return encoded message
+     */
+    public byte[] encode() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(VERSION);
+            out.writeUTF(channel);
+            out.writeUTF(node);
+            out.writeUTF(breaker);
+            out.writeLong(sequence);
+            out.writeUTF(state.name());
+            out.writeInt(calls);
+            out.writeInt(failures);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Read a message written by {@link #encode()}.
+     *
+     * @param bytes buffer
+     * @param length bytes used in the buffer
+     * @return decoded message
+     * @throws IllegalArgumentException on a truncated message or an unknown version
+     */
+    public static BreakerStateMessage decode(byte[] bytes, int length) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes, 0, length))) {
+            int version = in.readUnsignedByte();
+            if (version != VERSION) {
+                throw new IllegalArgumentException("Unsupported breaker state message version " + version);
+            }
+            return new BreakerStateMessage(
+                in.readUTF(),
+                in.readUTF(),
+                in.readUTF(),
+                in.readLong(),
+                CircuitBreaker.State.valueOf(in.readUTF()),
+                in.readInt(),
+                in.readInt());
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Malformed breaker state message", e);
+        }
+    }
+
+}
@@ -0,0 +1,30 @@
+package com.jab.resilience;
+
+import java.util.function.Consumer;
+
+/**
+ * Transport exchanging {@link BreakerStateMessage} between the nodes running this service.
+ *
+ * <p>Delivery is best effort: messages can be lost, duplicated or reordered, {@link BreakerStateSynchronizer}
+ * keeps the breakers eventually consistent on top of it.
+ */
+public interface BreakerStateSync extends AutoCloseable {
+
+    /**
+     * Send a message to the other nodes, it may also come back to this one.
+     *
+     * @param message breaker state of this node
+     */
+    void publish(BreakerStateMessage message);
+
+    /**
+     * Register a listener for the messages of the other nodes, called on the transport thread.
+     *
+     * @param listener message consumer, it must not block
+     */
+    void subscribe(Consumer<BreakerStateMessage> listener);
+
+    @Override
+    void close();
+
+}
@@ -0,0 +1,82 @@
+package com.jab.resilience;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.UUID;
+
+@Data
+@ConfigurationProperties(prefix = "resilience.state-sync")
+public class BreakerStateSyncProperties {
+
+    /**
+     * Share the breaker transitions and window counts with the other nodes
+     */
+    private boolean enabled = false;
+
+    private Transport transport = Transport.LOOPBACK;
+
+    /**
+     * Nodes only consider the messages of their own channel
+     */
+    private String channel = "resilience";
+
+    /**
+     * Identity of this node in the messages, random on every start by default
+     */
+    private String nodeId = UUID.randomUUID().toString();
+
+    /**
+     * Period of the outgoing flush, a transition waits at most this long before being sent
+     */
+    private Duration flushInterval = Duration.ofMillis(100);
+
+    /**
+     * Period of the window counts digest of every breaker, it also repairs lost transitions
+     */
+    private Duration digestInterval = Duration.ofSeconds(1);
+
+    /**
+     * Messages sent by this node per second, transitions go before digests
+     */
+    private int maxMessagesPerSecond = 100;
+
+    /**
+     * Counts of a node not heard from for this long are ignored
+     */
+    private Duration staleAfter = Duration.ofSeconds(5);
+
+    private Multicast multicast = new Multicast();
+
+    public enum Transport {
+
+        /**
+         * In-memory, between the nodes of one JVM
+         */
+        LOOPBACK,
+
+        /**
+         * UDP multicast, between the nodes of one network
+         */
+        MULTICAST
+
+    }
+
+    @Data
+    public static class Multicast {
+
+        private String group = "239.255.27.1";
+
+        private int port = 45588;
+
+        /**
+         * Interface name, empty to use the first multicast capable one
+         */
+        private String networkInterface = "";
+
+        private int ttl = 1;
+
+    }
+
+}
@@ -0,0 +1,283 @@
+package com.jab.resilience;
+
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.circuitbreaker.IllegalStateTransitionException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Shares the breakers of this node with the other nodes through a {@link BreakerStateSync}.
+ *
+ * <p>Outgoing, every state transition is queued and a digest with the window counts of every breaker is queued
+ * each digest interval. A flush every flush interval sends them, transitions first, within the message rate.
+ * Only the latest state of a breaker is sent, so a flapping breaker costs one message per flush.
+ *
+ * <p>Incoming, a closed breaker opens when a node reports it has just opened it, or when the failure rate of the
+ * windows of all the closed nodes reaches the threshold, and an open breaker moves to half-open when a node
+ * reports it has closed it again. Changes are detected against the last state known for the node,
+ * so a lost transition is caught up by the next digest and a node is never reopened by a stale state.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "resilience.state-sync", name = "enabled", havingValue = "true")
+public class BreakerStateSynchronizer {
+
+    private static final String METRIC_NAME = "resilience.state-sync.messages";
+
+    private final BreakerStateSyncProperties properties;
+    private final BreakerStateSync stateSync;
+    private final CircuitBreakerRegistry circuitBreakerRegistry;
+    private final LongSupplier nanoClock;
+    private final long staleAfterNanos;
+    private final double creditsPerFlush;
+
+    //Above the previous run of a node reusing its id
+    private final AtomicLong sequence = new AtomicLong(TimeUnit.MILLISECONDS.toMicros(System.currentTimeMillis()));
+    private final Set<String> pendingTransitions = ConcurrentHashMap.newKeySet();
+    private final Deque<String> pendingDigests = new ArrayDeque<>();
+    private final Map<String, Map<String, RemoteState>> remoteStates = new ConcurrentHashMap<>();
+    private final Counter sent;
+    private final Counter received;
+    private final Counter dropped;
+
+    private double credits;
+    private long nextDigestNanos;
+    private Scheduler scheduler;
+    private Disposable flushes;
+
+    /**
+     * Synchronizer for the breakers of the registry.
+     */
+    @Autowired
+    public BreakerStateSynchronizer(
+            BreakerStateSyncProperties properties,
+            BreakerStateSync stateSync,
+            CircuitBreakerRegistry circuitBreakerRegistry,
+            MeterRegistry meterRegistry) {
+        this(properties, stateSync, circuitBreakerRegistry, meterRegistry, System::nanoTime);
+    }
+
+    BreakerStateSynchronizer(
+            BreakerStateSyncProperties properties,
+            BreakerStateSync stateSync,
+            CircuitBreakerRegistry circuitBreakerRegistry,
+            MeterRegistry meterRegistry,
+            LongSupplier nanoClock) {
+        this.properties = properties;
+        this.stateSync = stateSync;
+        this.circuitBreakerRegistry = circuitBreakerRegistry;
+        this.nanoClock = nanoClock;
+        this.staleAfterNanos = properties.getStaleAfter().toNanos();
+        this.creditsPerFlush = properties.getMaxMessagesPerSecond() * properties.getFlushInterval().toNanos()
+            / (double) TimeUnit.SECONDS.toNanos(1);
+        this.credits = properties.getMaxMessagesPerSecond();
+        this.nextDigestNanos = nanoClock.getAsLong();
+        this.sent = counter(meterRegistry, "sent");
+        this.received = counter(meterRegistry, "received");
+        this.dropped = counter(meterRegistry, "dropped");
+    }
+
+    /**
+     * Follow the breakers of the registry, including the ones replaced on reload, and start flushing.
+     */
+    @PostConstruct
+    public void start() {
+        connect();
+
+        long period = properties.getFlushInterval().toNanos();
+        scheduler = Schedulers.newSingle("breaker-state-sync", true);
+        flushes = scheduler.schedulePeriodically(this::flush, period, period, TimeUnit.NANOSECONDS);
+        LOGGER.info("Breaker state sync started as node {} on channel {}",
+            properties.getNodeId(), properties.getChannel());
+    }
+
+    /**
+     * Stop flushing, the transport is closed with its bean.
+     */
+    @PreDestroy
+    public void stop() {
+        if (flushes != null) {
+            flushes.dispose();
+            scheduler.dispose();
+        }
+    }
+
+    void connect() {
+        stateSync.subscribe(this::onMessage);
+        circuitBreakerRegistry.getEventPublisher()
+            .onEntryAdded(event -> watch(event.getAddedEntry()))
+            .onEntryReplaced(event -> watch(event.getNewEntry()));
+        circuitBreakerRegistry.getAllCircuitBreakers().forEach(this::watch);
+    }
+
+    /**
+     * Send the pending transitions, then the pending digests, within the message rate.
+     */
+    synchronized void flush() {
+        credits = Math.min(properties.getMaxMessagesPerSecond(), credits + creditsPerFlush);
+
+        long now = nanoClock.getAsLong();
+        if (now - nextDigestNanos >= 0 && pendingDigests.isEmpty()) {
+            circuitBreakerRegistry.getAllCircuitBreakers()
+                .forEach(circuitBreaker -> pendingDigests.add(circuitBreaker.getName()));
+            nextDigestNanos = now + properties.getDigestInterval().toNanos();
+            expire(now);
+        }
+
+        Iterator<String> transitions = pendingTransitions.iterator();
+        while (credits >= 1 && transitions.hasNext()) {
+            String name = transitions.next();
+            transitions.remove();
+            send(name);
+        }
+        while (credits >= 1 && !pendingDigests.isEmpty()) {
+            send(pendingDigests.poll());
+        }
+    }
+
+    void onMessage(BreakerStateMessage message) {
+        if (!properties.getChannel().equals(message.getChannel()) || properties.getNodeId().equals(message.getNode())) {
+            return;
+        }
+
+        RemoteState[] previous = new RemoteState[1];
+        RemoteState[] current = new RemoteState[1];
+        remoteStates.computeIfAbsent(message.getBreaker(), key -> new ConcurrentHashMap<>())
+            .compute(message.getNode(), (node, known) -> {
+                previous[0] = known;
+                current[0] = known != null && known.sequence >= message.getSequence()
+                    ? known
+                    : new RemoteState(message, nanoClock.getAsLong());
+                return current[0];
+            });
+        if (current[0] == previous[0]) {
+            dropped.increment();
+            return;
+        }
+        received.increment();
+
+        boolean changed = previous[0] == null || previous[0].state != message.getState();
+        circuitBreakerRegistry.find(message.getBreaker())
+            .ifPresent(circuitBreaker -> apply(circuitBreaker, changed ? message.getState() : null));
+    }
+
+    //A breaker created after a node opened it starts from that news
+    private void watch(CircuitBreaker circuitBreaker) {
+        String name = circuitBreaker.getName();
+        circuitBreaker.getEventPublisher().onStateTransition(event -> pendingTransitions.add(name));
+
+        long now = nanoClock.getAsLong();
+        boolean remoteOpen = remoteStates.getOrDefault(name, Map.of()).values().stream()
+            .anyMatch(remote -> remote.state == CircuitBreaker.State.OPEN && now - remote.receivedAt < staleAfterNanos);
+        apply(circuitBreaker, remoteOpen ? CircuitBreaker.State.OPEN : null);
+    }
+
+    private void apply(CircuitBreaker circuitBreaker, CircuitBreaker.State remoteTransition) {
+        try {
+            CircuitBreaker.State state = circuitBreaker.getState();
+            if (state == CircuitBreaker.State.CLOSED
+                && (remoteTransition == CircuitBreaker.State.OPEN || isClusterFailureRateExceeded(circuitBreaker))) {
+                LOGGER.info("Circuit breaker {} opened by the other nodes", circuitBreaker.getName());
+                circuitBreaker.transitionToOpenState();
+            } else if (state == CircuitBreaker.State.OPEN && remoteTransition == CircuitBreaker.State.CLOSED) {
+                LOGGER.info("Circuit breaker {} probing, closed by another node", circuitBreaker.getName());
+                circuitBreaker.transitionToHalfOpenState();
+            }
+        } catch (IllegalStateTransitionException e) {
+            //The breaker moved on its own in the meantime
+            LOGGER.debug("Remote state not applied: {}", e.getMessage());
+        }
+    }
+
+    private boolean isClusterFailureRateExceeded(CircuitBreaker circuitBreaker) {
+        Map<String, RemoteState> remotes = remoteStates.get(circuitBreaker.getName());
+        if (remotes == null) {
+            return false;
+        }
+
+        long now = nanoClock.getAsLong();
+        CircuitBreaker.Metrics metrics = circuitBreaker.getMetrics();
+        long failures = metrics.getNumberOfFailedCalls();
+        long calls = metrics.getNumberOfSuccessfulCalls() + failures;
+        boolean remoteCalls = false;
+        for (RemoteState remote : remotes.values()) {
+            boolean fresh = now - remote.receivedAt < staleAfterNanos;
+            if (remote.state == CircuitBreaker.State.CLOSED && fresh && remote.calls > 0) {
+                calls += remote.calls;
+                failures += remote.failures;
+                remoteCalls = true;
+            }
+        }
+
+        CircuitBreakerConfig config = circuitBreaker.getCircuitBreakerConfig();
+        return remoteCalls
+            && calls >= config.getMinimumNumberOfCalls()
+            && failures * 100f / calls >= config.getFailureRateThreshold();
+    }
+
+    private void send(String name) {
+        circuitBreakerRegistry.find(name).ifPresent(circuitBreaker -> {
+            CircuitBreaker.Metrics metrics = circuitBreaker.getMetrics();
+            stateSync.publish(new BreakerStateMessage(
+                properties.getChannel(),
+                properties.getNodeId(),
+                name,
+                sequence.incrementAndGet(),
+                circuitBreaker.getState(),
+                metrics.getNumberOfSuccessfulCalls() + metrics.getNumberOfFailedCalls(),
+                metrics.getNumberOfFailedCalls()));
+            credits--;
+            sent.increment();
+        });
+    }
+
+    private void expire(long now) {
+        remoteStates.values()
+            .forEach(remotes -> remotes.values().removeIf(remote -> now - remote.receivedAt >= staleAfterNanos));
+    }
+
+    private static Counter counter(MeterRegistry meterRegistry, String direction) {
+        return Counter.builder(METRIC_NAME)
+            .tag("direction", direction)
+            .register(meterRegistry);
+    }
+
+    private static class RemoteState {
+
+        private final long sequence;
+        private final CircuitBreaker.State state;
+        private final int calls;
+        private final int failures;
+        private final long receivedAt;
+
+        RemoteState(BreakerStateMessage message, long receivedAt) {
+            this.sequence = message.getSequence();
+            this.state = message.getState();
+            this.calls = message.getCalls();
+            this.failures = message.getFailures();
+            this.receivedAt = receivedAt;
+        }
+    }
+
+}
@@ -0,0 +1,58 @@
+package com.jab.resilience;
+
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Default circuit breaker settings, rebound and applied to live breakers on /actuator/refresh
+ */
+@Data
+@ConfigurationProperties(prefix = "resilience.circuit-breaker")
+public class CircuitBreakerProperties {
+
+    private float failureRateThreshold = 50;
+
+    private float slowCallRateThreshold = 100;
+
+    private Duration slowCallDurationThreshold = Duration.ofSeconds(60);
+
+    private Duration waitDurationInOpenState = Duration.ofMillis(1000);
+
+    private CircuitBreakerConfig.SlidingWindowType slidingWindowType =
+        CircuitBreakerConfig.SlidingWindowType.COUNT_BASED;
+
+    private int slidingWindowSize = 2;
+
+    private int minimumNumberOfCalls = 100;
+
+    private int permittedNumberOfCallsInHalfOpenState = 10;
+
+    /**
+     * Fill the stack trace of the rejections while OPEN, always the same one and most of their cost
+     */
+    private boolean writableStackTraceEnabled = false;
+
+    /**
+     * Resilience4j configuration for the current values.
+     *
+     * @return CircuitBreakerConfig
+     */
+    public CircuitBreakerConfig toCircuitBreakerConfig() {
+        return CircuitBreakerConfig.custom()
+            .failureRateThreshold(failureRateThreshold)
+            .slowCallRateThreshold(slowCallRateThreshold)
+            .slowCallDurationThreshold(slowCallDurationThreshold)
+            .waitDurationInOpenState(waitDurationInOpenState)
+            .slidingWindow(slidingWindowSize, minimumNumberOfCalls, slidingWindowType)
+            .permittedNumberOfCallsInHalfOpenState(permittedNumberOfCallsInHalfOpenState)
+            .writableStackTraceEnabled(writableStackTraceEnabled)
+            //Bulkhead rejections are local back-pressure, not upstream failures
+            .ignoreExceptions(BulkheadFullException.class)
+            .build();
+    }
+
+}
@@ -0,0 +1,103 @@
+package com.jab.resilience;
+
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.circuitbreaker.internal.CircuitBreakerStateMachine;
+import io.github.resilience4j.core.ConfigurationNotFoundException;
+import io.github.resilience4j.core.registry.AbstractRegistry;
+import io.vavr.collection.Array;
+import io.vavr.collection.HashMap;
+import io.vavr.collection.Map;
+import io.vavr.collection.Seq;
+
+import java.time.Clock;
+import java.util.Objects;
+import java.util.function.Supplier;
+
+/**
+ * Registry whose breakers measure the OPEN state wait duration on the given clock, so tests can move
+ * time instead of sleeping. The other overloads end up in these ones.
+ */
+public class ClockedCircuitBreakerRegistry extends AbstractRegistry<CircuitBreaker, CircuitBreakerConfig>
+        implements CircuitBreakerRegistry {
+
+    private final Clock clock;
+
+    public ClockedCircuitBreakerRegistry(CircuitBreakerConfig defaultConfig, Clock clock) {
+        super(defaultConfig);
+        this.clock = clock;
+    }
+
+    @Override
+    public Seq<CircuitBreaker> getAllCircuitBreakers() {
+        return Array.ofAll(entryMap.values());
+    }
+
+    @Override
+    public CircuitBreaker circuitBreaker(String name) {
+        return circuitBreaker(name, getDefaultConfig());
+    }
+
+    @Override
+    public CircuitBreaker circuitBreaker(String name, Map<String, String> tags) {
+        return circuitBreaker(name, getDefaultConfig(), tags);
+    }
+
+    @Override
+    public CircuitBreaker circuitBreaker(String name, CircuitBreakerConfig config) {
+        return circuitBreaker(name, config, HashMap.empty());
+    }
+
+    @Override
+    public CircuitBreaker circuitBreaker(String name, CircuitBreakerConfig config, Map<String, String> tags) {
+        Objects.requireNonNull(config, "Config must not be null");
+        return computeIfAbsent(name, () -> create(name, config, tags));
+    }
+
+    @Override
+    public CircuitBreaker circuitBreaker(String name, String configName) {
+        return circuitBreaker(name, configName, HashMap.empty());
+    }
+
+    @Override
+    public CircuitBreaker circuitBreaker(String name, String configName, Map<String, String> tags) {
+        CircuitBreakerConfig config = getConfiguration(configName)
+            .orElseThrow(() -> new ConfigurationNotFoundException(configName));
+        return circuitBreaker(name, config, tags);
+    }
+
+    @Override
+    public CircuitBreaker circuitBreaker(String name, Supplier<CircuitBreakerConfig> configSupplier) {
+        return circuitBreaker(name, configSupplier, HashMap.empty());
+    }
+
+    @Override
+    public CircuitBreaker circuitBreaker(
+            String name, Supplier<CircuitBreakerConfig> configSupplier, Map<String, String> tags) {
+        return computeIfAbsent(name, () ->
+            create(name, Objects.requireNonNull(configSupplier.get(), "Config must not be null"), tags));
+    }
+
+    /**
+     * Breaker built like the ones of this registry, on its clock, but not added to it. Used to replace a live
+     * breaker with {@code replace}, so the registry listeners see the new instance.
+     *
+     * @param name breaker name
+     * @param config breaker configuration
+     * @param tags breaker tags
+     * @return CircuitBreaker
+     */
+    public CircuitBreaker newCircuitBreaker(String name, CircuitBreakerConfig config, Map<String, String> tags) {
+        return create(name, Objects.requireNonNull(config, "Config must not be null"), tags);
+    }
+
+    protected CircuitBreaker create(String name, CircuitBreakerConfig config, Map<String, String> tags) {
+        return new CircuitBreakerStateMachine(name, config, clock, getAllTags(tags));
+    }
+
+    protected Clock getClock() {
+        return clock;
+    }
+
+}
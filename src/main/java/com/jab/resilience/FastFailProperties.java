@@ -0,0 +1,15 @@
+package com.jab.resilience;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Data
+@ConfigurationProperties(prefix = "resilience.fast-fail")
+public class FastFailProperties {
+
+    /**
+     * Answer the routes with a preallocated fallback response while their breaker rejects calls
+     */
+    private boolean enabled = true;
+
+}
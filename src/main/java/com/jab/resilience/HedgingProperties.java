@@ -0,0 +1,35 @@
+package com.jab.resilience;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "resilience.hedging")
+public class HedgingProperties {
+
+    private boolean enabled = false;
+
+    /**
+     * Observed latency percentile after which a second attempt is fired
+     */
+    private double percentile = 0.95;
+
+    private Duration minDelay = Duration.ofMillis(10);
+
+    /**
+     * Hedge delay used until min-samples latencies are observed for an upstream
+     */
+    private Duration initialDelay = Duration.ofMillis(500);
+
+    private long minSamples = 100;
+
+    /**
+     * Maximum extra load, in percent of the primary calls
+     */
+    private double budgetPercent = 10;
+
+    private int budgetCapacity = 10;
+
+}
@@ -0,0 +1,22 @@
+package com.jab.resilience;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Data
+@ConfigurationProperties(prefix = "resilience.instrumentation")
+public class InstrumentationProperties {
+
+    /**
+     * Record resilience.stage timers per upstream
+     */
+    private boolean enabled = true;
+
+    private boolean percentileHistogram = true;
+
+    /**
+     * Fraction of upstream attempts logged as a span with their stage durations, 0 to disable
+     */
+    private double traceSampleRate = 0;
+
+}
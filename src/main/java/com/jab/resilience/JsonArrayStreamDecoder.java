@@ -0,0 +1,99 @@
+package com.jab.resilience;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonStreamContext;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteArrayFeeder;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.vavr.control.Try;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.codec.DecodingException;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Decodes a JSON array of strings with the Jackson non-blocking parser,
+ * emitting every element as soon as its bytes arrive.
+ */
+@Slf4j
+@Component
+public class JsonArrayStreamDecoder {
+
+    private final JsonFactory jsonFactory;
+
+    public JsonArrayStreamDecoder(ObjectMapper objectMapper) {
+        this.jsonFactory = objectMapper.getFactory();
+    }
+
+    /**
+     * Decode the upstream body. Cancelling the returned Flux cancels the upstream body.
+     *
+     * @param body upstream body
+     * @return array elements
+     */
+    public Flux<String> decode(Flux<DataBuffer> body) {
+        return Flux.defer(() -> {
+            JsonParser parser = Try.of(jsonFactory::createNonBlockingByteArrayParser)
+                .getOrElseThrow(ex -> new DecodingException("Unable to create JSON parser", ex));
+            ByteArrayFeeder feeder = (ByteArrayFeeder) parser.getNonBlockingInputFeeder();
+
+            return body
+                .concatMapIterable(buffer -> feed(parser, feeder, buffer))
+                .concatWith(Flux.defer(() -> {
+                    feeder.endOfInput();
+                    return Flux.fromIterable(tokenize(parser));
+                }))
+                .doFinally(signal -> Try.run(parser::close));
+        });
+    }
+
+    private List<String> feed(JsonParser parser, ByteArrayFeeder feeder, DataBuffer buffer) {
+        byte[] bytes = new byte[buffer.readableByteCount()];
+        buffer.read(bytes);
+        DataBufferUtils.release(buffer);
+
+        Try.run(() -> feeder.feedInput(bytes, 0, bytes.length))
+            .getOrElseThrow(ex -> new DecodingException("Bad upstream payload", ex));
+        return tokenize(parser);
+    }
+
+    private List<String> tokenize(JsonParser parser) {
+        return Try.of(() -> nextElements(parser))
+            .getOrElseThrow(ex -> {
+                LOGGER.error("Bad Serialization process", ex);
+                return ex instanceof DecodingException
+                    ? (DecodingException) ex
+                    : new DecodingException("Bad upstream payload", ex);
+            });
+    }
+
+    private List<String> nextElements(JsonParser parser) throws IOException {
+        List<String> elements = new ArrayList<>();
+        JsonToken token = parser.nextToken();
+        while (token != null && token != JsonToken.NOT_AVAILABLE) {
+            JsonStreamContext context = parser.getParsingContext();
+            if (token.isScalarValue() && isTopLevelArray(context)) {
+                if (token != JsonToken.VALUE_NULL) {
+                    elements.add(parser.getText());
+                }
+            } else if (!(token == JsonToken.START_ARRAY && isTopLevelArray(context))
+                    && !(token == JsonToken.END_ARRAY && context.inRoot())) {
+                throw new DecodingException("Upstream payload is not a JSON array of strings");
+            }
+            token = parser.nextToken();
+        }
+        return elements;
+    }
+
+    private boolean isTopLevelArray(JsonStreamContext context) {
+        return context.inArray() && context.getParent() != null && context.getParent().inRoot();
+    }
+
+}
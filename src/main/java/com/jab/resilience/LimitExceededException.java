@@ -0,0 +1,12 @@
+package com.jab.resilience;
+
+/**
+ * Raised when the adaptive concurrency limit rejects a call. Stackless, rejections are hot.
+ */
+public class LimitExceededException extends RuntimeException {
+
+    public LimitExceededException(String key) {
+        super("Concurrency limit exceeded for upstream " + key, null, false, false);
+    }
+
+}
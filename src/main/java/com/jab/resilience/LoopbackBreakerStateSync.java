@@ -0,0 +1,45 @@
+package com.jab.resilience;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * In-memory transport between the nodes started in the same JVM on the same channel.
+ * Messages are delivered synchronously on the publishing thread.
+ */
+public class LoopbackBreakerStateSync implements BreakerStateSync {
+
+    private static final Map<String, List<LoopbackBreakerStateSync>> CHANNELS = new ConcurrentHashMap<>();
+
+    private final String channel;
+    private final List<Consumer<BreakerStateMessage>> listeners = new CopyOnWriteArrayList<>();
+
+    public LoopbackBreakerStateSync(String channel) {
+        this.channel = channel;
+        CHANNELS.computeIfAbsent(channel, key -> new CopyOnWriteArrayList<>()).add(this);
+    }
+
+    @Override
+    public void publish(BreakerStateMessage message) {
+        CHANNELS.getOrDefault(channel, List.of()).stream()
+            .filter(member -> member != this)
+            .forEach(member -> member.listeners.forEach(listener -> listener.accept(message)));
+    }
+
+    @Override
+    public void subscribe(Consumer<BreakerStateMessage> listener) {
+        listeners.add(listener);
+    }
+
+    @Override
+    public void close() {
+        CHANNELS.computeIfPresent(channel, (key, members) -> {
+            members.remove(this);
+            return members.isEmpty() ? null : members;
+        });
+    }
+
+}
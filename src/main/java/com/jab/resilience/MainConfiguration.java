@@ -1,113 +1,210 @@
 package com.jab.resilience;
 
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
 import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
 import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.micrometer.tagged.TaggedBulkheadMetrics;
 import io.github.resilience4j.timelimiter.TimeLimiterConfig;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.cloud.circuitbreaker.resilience4j.ReactiveResilience4JCircuitBreakerFactory;
 import org.springframework.cloud.circuitbreaker.resilience4j.Resilience4JCircuitBreakerFactory;
 import org.springframework.cloud.circuitbreaker.resilience4j.Resilience4JConfigBuilder;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.cloud.client.circuitbreaker.Customizer;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
-import java.time.Duration;
+import java.time.Clock;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 @Slf4j
 @Configuration
+@EnableConfigurationProperties({
+    ResponseCacheProperties.class,
+    SnapshotStoreProperties.class,
+    RequestCoalescingProperties.class,
+    UpstreamIsolationProperties.class,
+    UpstreamPoolProperties.class,
+    AdaptiveLimiterProperties.class,
+    HedgingProperties.class,
+    RetryProperties.class,
+    BlockingExecutionProperties.class,
+    BatchProperties.class,
+    SlidingWindowProperties.class,
+    CircuitBreakerProperties.class,
+    FastFailProperties.class,
+    TimeLimiterProperties.class,
+    InstrumentationProperties.class,
+    BreakerStateSyncProperties.class,
+    AdmissionProperties.class
+})
 public class MainConfiguration {
 
     /**
-     * CircuitBreaker Configuration
+     * CircuitBreaker Configuration, bound from resilience.circuit-breaker
      *
+     * @param circuitBreakerProperties CircuitBreaker settings
      * @return CircuitBreaker Configuration
      */
     @Bean
-    public CircuitBreakerConfig circuitBreakerConfig() {
+    public CircuitBreakerConfig circuitBreakerConfig(CircuitBreakerProperties circuitBreakerProperties) {
 
         //https://resilience4j.readme.io/docs/circuitbreaker
         //https://github.com/resilience4j/resilience4j/blob/master/resilience4j-circuitbreaker/src/main/java/io/github/resilience4j/circuitbreaker/CircuitBreakerConfig.java
-        CircuitBreakerConfig circuitBreakerConfig = CircuitBreakerConfig.custom()
-            //.slidingWindowType(COUNT_BASED)
-            //.slidingWindowType(TIME_BASED)
-            //.minimumNumberOfCalls(2)
-            .failureRateThreshold(50)
-            //.slowCallRateThreshold(100)
-            //.slowCallDurationThreshold(Duration.ofMillis(200))
-            .waitDurationInOpenState(Duration.ofMillis(1000))
-            .slidingWindowSize(2)
-            //.permittedNumberOfCallsInHalfOpenState(2)
-            //.slidingWindow()
-            //.automaticTransitionFromOpenToHalfOpenEnabled(true)
-            //.recordExceptions()
-            //.recordException()
-            //.ignoreExceptions()
-            .build();
-        return circuitBreakerConfig;
+        return circuitBreakerProperties.toCircuitBreakerConfig();
+    }
+
+    /**
+     * Clock of the circuit breaker state machines, replaced by a virtual one in tests
+     *
+     * @return Clock
+     */
+    @Bean
+    @ConditionalOnMissingBean
+    public Clock resilienceClock() {
+        return Clock.systemUTC();
     }
 
     /**
      *
      * @param circuitBreakerConfig CircuitBreaker Configuration
+     * @param slidingWindowProperties Closed state window, Resilience4j or striped
+     * @param resilienceClock Clock of the OPEN state wait duration
      * @return CircuitBreker Registry
      */
     @Bean
-    public CircuitBreakerRegistry circuitBreakerRegistry(CircuitBreakerConfig circuitBreakerConfig) {
-        return CircuitBreakerRegistry.of(circuitBreakerConfig);
+    public ClockedCircuitBreakerRegistry circuitBreakerRegistry(
+            CircuitBreakerConfig circuitBreakerConfig,
+            SlidingWindowProperties slidingWindowProperties,
+            Clock resilienceClock) {
+
+        if (slidingWindowProperties.isStriped()) {
+            return new StripedWindowCircuitBreakerRegistry(
+                circuitBreakerConfig, slidingWindowProperties, resilienceClock);
+        }
+        return new ClockedCircuitBreakerRegistry(circuitBreakerConfig, resilienceClock);
+    }
+
+    /**
+     * Transport sharing the breaker states between the nodes, see {@link BreakerStateSynchronizer}
+     *
+     * @param breakerStateSyncProperties State sync settings
+     * @return BreakerStateSync
+     */
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(prefix = "resilience.state-sync", name = "enabled", havingValue = "true")
+    public BreakerStateSync breakerStateSync(BreakerStateSyncProperties breakerStateSyncProperties) {
+
+        switch (breakerStateSyncProperties.getTransport()) {
+            case MULTICAST:
+                return new MulticastBreakerStateSync(breakerStateSyncProperties.getMulticast());
+            default:
+                return new LoopbackBreakerStateSync(breakerStateSyncProperties.getChannel());
+        }
+    }
+
+    /**
+     * Bulkhead Registry, instances are created per upstream by {@link UpstreamIsolation}
+     *
+     * @param meterRegistry Micrometer registry
+     * @return Bulkhead Registry
+     */
+    @Bean
+    public BulkheadRegistry bulkheadRegistry(MeterRegistry meterRegistry) {
+
+        //https://resilience4j.readme.io/docs/bulkhead
+        BulkheadRegistry bulkheadRegistry = BulkheadRegistry.ofDefaults();
+        TaggedBulkheadMetrics.ofBulkheadRegistry(bulkheadRegistry).bindTo(meterRegistry);
+        return bulkheadRegistry;
     }
 
     /**
-     * TimeLimiter Configuration
+     * TimeLimiter Configuration, bound from resilience.time-limiter
      *
+     * @param timeLimiterProperties TimeLimiter settings
      * @return TimeLimiterConfig
      */
     @Bean
-    public TimeLimiterConfig timeLimiterConfig() {
+    public TimeLimiterConfig timeLimiterConfig(TimeLimiterProperties timeLimiterProperties) {
 
         //https://resilience4j.readme.io/docs/timeout
         //https://github.com/resilience4j/resilience4j/blob/master/resilience4j-timelimiter/src/main/java/io/github/resilience4j/timelimiter/TimeLimiterConfig.java
-        return TimeLimiterConfig.custom()
-            .timeoutDuration(Duration.ofSeconds(3))
-            //.cancelRunningFuture()
-            .build();
+        return timeLimiterProperties.toTimeLimiterConfig();
     }
 
-    /*
+    /**
+     * Executor behind the blocking circuit breaker and its time limiter, see {@link BlockingMode}
+     *
+     * @param blockingExecutionProperties Blocking execution settings
+     * @return ExecutorService
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService blockingCircuitBreakerExecutor(BlockingExecutionProperties blockingExecutionProperties) {
+
+        switch (blockingExecutionProperties.getMode()) {
+            case VIRTUAL_THREADS:
+                return VirtualThreads.newPerTaskExecutor();
+            case THREAD_POOL:
+                return Executors.newFixedThreadPool(blockingExecutionProperties.getPoolSize());
+            default:
+                //Spring Cloud default, only used if the blocking factory is called directly
+                return Executors.newCachedThreadPool();
+        }
+    }
+
+    /**
+     * Configuration for the blocking Circuit Breaker used by {@link ServiceProtected#retrieve(String)}
+     * when it does not go through the reactive pipeline. It shares the breakers with the reactive factory.
+     *
+     * @param upstreamIsolation Per-upstream resilience settings
+     * @param circuitBreakerRegistry CircuitBreaker Registry
+     * @param blockingCircuitBreakerExecutor Executor running the protected calls
+     * @return Customizer for the blocking factory
+     */
     @Bean
     public Customizer<Resilience4JCircuitBreakerFactory> defaultCustomizer(
-            CircuitBreakerConfig circuitBreakerConfig,
-            TimeLimiterConfig timeLimiterConfig,
-            CircuitBreakerRegistry circuitBreakerRegistry) {
+            UpstreamIsolation upstreamIsolation,
+            CircuitBreakerRegistry circuitBreakerRegistry,
+            ExecutorService blockingCircuitBreakerExecutor) {
 
         return factory -> {
-            factory.configureDefault(id -> new Resilience4JConfigBuilder(id)
-                .timeLimiterConfig(timeLimiterConfig)
-                .circuitBreakerConfig(circuitBreakerConfig)
-                .build());
+            factory.configureDefault(id -> {
+                UpstreamIsolation.Isolation isolation = upstreamIsolation.get(id);
+                return new Resilience4JConfigBuilder(id)
+                    .timeLimiterConfig(isolation.getTimeLimiterConfig())
+                    .circuitBreakerConfig(isolation.getCircuitBreakerConfig())
+                    .build();
+            });
             factory.configureCircuitBreakerRegistry(circuitBreakerRegistry);
+            factory.configureExecutorService(blockingCircuitBreakerExecutor);
         };
     }
-    */
 
     /**
-     * Main configuration to use Circuit Breaker with Resilience4j support
+     * Main configuration to use Circuit Breaker with Resilience4j support.
+     * Every upstream key gets its own breaker, with the overrides from {@link UpstreamIsolationProperties}
      *
-     * @param circuitBreakerConfig CircuitBreaker configuration
-     * @param timeLimiterConfig TimeLimiter configuration
+     * @param upstreamIsolation Per-upstream resilience settings
      * @param circuitBreakerRegistry CircuitBreaker Registry
-     * @return
+     * @return Customizer for the reactive factory
      */
     @Bean
     public Customizer<ReactiveResilience4JCircuitBreakerFactory> defaultCustomizer2(
-            CircuitBreakerConfig circuitBreakerConfig,
-            TimeLimiterConfig timeLimiterConfig,
+            UpstreamIsolation upstreamIsolation,
             CircuitBreakerRegistry circuitBreakerRegistry) {
 
         return factory -> {
-            factory.configureDefault(id -> new Resilience4JConfigBuilder(id)
-                    .timeLimiterConfig(timeLimiterConfig)
-                    .circuitBreakerConfig(circuitBreakerConfig)
-                    .build());
+            factory.configureDefault(id -> {
+                UpstreamIsolation.Isolation isolation = upstreamIsolation.get(id);
+                return new Resilience4JConfigBuilder(id)
+                    .timeLimiterConfig(isolation.getTimeLimiterConfig())
+                    .circuitBreakerConfig(isolation.getCircuitBreakerConfig())
+                    .build();
+            });
             factory.configureCircuitBreakerRegistry(circuitBreakerRegistry);
         };
     }
@@ -0,0 +1,132 @@
+package com.jab.resilience;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.NetworkInterface;
+import java.net.ProtocolFamily;
+import java.net.SocketException;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * UDP multicast transport, one datagram per message. The socket is bound with SO_REUSEADDR and multicast
+ * loopback enabled, so several nodes can share a host, or a JVM, on the same group and port.
+ */
+@Slf4j
+public class MulticastBreakerStateSync implements BreakerStateSync {
+
+    private static final int MAX_DATAGRAM_SIZE = 1024;
+
+    private final InetSocketAddress target;
+    private final DatagramChannel channel;
+    private final List<Consumer<BreakerStateMessage>> listeners = new CopyOnWriteArrayList<>();
+    private final Thread receiver;
+
+    /**
+     * Join the group and start the receiving thread.
+     *
+     * @param multicast group, port and interface settings
+     * @throws UncheckedIOException when the group cannot be joined
+     */
+    public MulticastBreakerStateSync(BreakerStateSyncProperties.Multicast multicast) {
+        try {
+            InetAddress group = InetAddress.getByName(multicast.getGroup());
+            NetworkInterface networkInterface = networkInterface(multicast.getNetworkInterface());
+            ProtocolFamily family = group instanceof Inet6Address
+                ? StandardProtocolFamily.INET6
+                : StandardProtocolFamily.INET;
+
+            this.target = new InetSocketAddress(group, multicast.getPort());
+            this.channel = DatagramChannel.open(family)
+                .setOption(StandardSocketOptions.SO_REUSEADDR, true)
+                .bind(new InetSocketAddress(multicast.getPort()))
+                .setOption(StandardSocketOptions.IP_MULTICAST_IF, networkInterface)
+                .setOption(StandardSocketOptions.IP_MULTICAST_TTL, multicast.getTtl())
+                .setOption(StandardSocketOptions.IP_MULTICAST_LOOP, true);
+            this.channel.join(group, networkInterface);
+            LOGGER.info("Breaker state sync joined {} on {}", target, networkInterface.getName());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to join the multicast group " + multicast.getGroup(), e);
+        }
+
+        this.receiver = new Thread(this::receive, "breaker-state-sync-receiver");
+        this.receiver.setDaemon(true);
+        this.receiver.start();
+    }
+
+    @Override
+    public void publish(BreakerStateMessage message) {
+        try {
+            channel.send(ByteBuffer.wrap(message.encode()), target);
+        } catch (IOException e) {
+            //Best effort, the next digest repairs a lost message
+            LOGGER.debug("Breaker state message not sent: {}", e.toString());
+        }
+    }
+
+    @Override
+    public void subscribe(Consumer<BreakerStateMessage> listener) {
+        listeners.add(listener);
+    }
+
+    @Override
+    public void close() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            LOGGER.debug("Breaker state sync channel not closed cleanly: {}", e.toString());
+        }
+    }
+
+    private void receive() {
+        ByteBuffer buffer = ByteBuffer.allocate(MAX_DATAGRAM_SIZE);
+        while (channel.isOpen()) {
+            try {
+                buffer.clear();
+                channel.receive(buffer);
+                BreakerStateMessage message = BreakerStateMessage.decode(buffer.array(), buffer.position());
+                listeners.forEach(listener -> listener.accept(message));
+            } catch (ClosedChannelException e) {
+                return;
+            } catch (IOException | RuntimeException e) {
+                LOGGER.debug("Breaker state message ignored: {}", e.toString());
+            }
+        }
+    }
+
+    //First interface up and multicast capable, the loopback one otherwise
+    private static NetworkInterface networkInterface(String name) throws SocketException {
+        if (!name.isEmpty()) {
+            NetworkInterface networkInterface = NetworkInterface.getByName(name);
+            if (networkInterface == null) {
+                throw new SocketException("Unknown network interface " + name);
+            }
+            return networkInterface;
+        }
+
+        return NetworkInterface.networkInterfaces()
+            .filter(MulticastBreakerStateSync::isMulticastUp)
+            .findFirst()
+            .orElse(NetworkInterface.getByInetAddress(InetAddress.getLoopbackAddress()));
+    }
+
+    private static boolean isMulticastUp(NetworkInterface networkInterface) {
+        try {
+            return networkInterface.isUp() && networkInterface.supportsMulticast() && !networkInterface.isVirtual();
+        } catch (SocketException e) {
+            return false;
+        }
+    }
+
+}
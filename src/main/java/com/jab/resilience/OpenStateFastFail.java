@@ -0,0 +1,117 @@
+package com.jab.resilience;
+
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Short-circuit of the calls to an upstream while its breaker rejects calls. The breaker handles
+ * follow the registry, so a rejection costs a map lookup and a state read instead of building the protected
+ * call, acquiring a limiter permit, creating the rejection exception and dispatching the fallback.
+ */
+@Component
+public class OpenStateFastFail {
+
+    private final FastFailProperties properties;
+    private final UpstreamIsolation upstreamIsolation;
+    private final UpstreamPool upstreamPool;
+    private final Map<String, CircuitBreaker> circuitBreakers = new ConcurrentHashMap<>();
+
+    /**
+     * Fast fail following the breakers of the registry, including the ones replaced on reload.
+     */
+    public OpenStateFastFail(
+            FastFailProperties properties,
+            CircuitBreakerRegistry circuitBreakerRegistry,
+            UpstreamIsolation upstreamIsolation,
+            UpstreamPool upstreamPool) {
+        this.properties = properties;
+        this.upstreamIsolation = upstreamIsolation;
+        this.upstreamPool = upstreamPool;
+
+        circuitBreakerRegistry.getEventPublisher()
+            .onEntryAdded(event -> track(event.getAddedEntry()))
+            .onEntryReplaced(event -> track(event.getNewEntry()))
+            .onEntryRemoved(event -> untrack(event.getRemovedEntry()));
+        circuitBreakerRegistry.getAllCircuitBreakers().forEach(this::track);
+    }
+
+    /**
+     * Gate of a fixed upstream address, its isolation key resolved once. A logical upstream has one breaker per
+     * endpoint and the balancer skips the open ones, its gate never rejects.
+     *
+     * @param url upstream address
+     * @return Gate
+     */
+    public Gate gate(String url) {
+        return new Gate(url, upstreamPool.isPooled(url) ? null : upstreamIsolation.keyFor(url));
+    }
+
+    /**
+     * Whether the breaker of an isolation key rejects the call, recorded by the breaker as a not permitted call.
+     * When the OPEN wait elapsed the permission taken here is given back, the trial call goes through the
+     * protected path.
+     *
+     * @param key isolation key
+     * @return true to answer with the fallback without calling the protected path
+     */
+    public boolean rejects(String key) {
+        if (!properties.isEnabled()) {
+            return false;
+        }
+
+        CircuitBreaker circuitBreaker = circuitBreakers.get(key);
+        if (circuitBreaker == null) {
+            return false;
+        }
+        CircuitBreaker.State state = circuitBreaker.getState();
+        if (state != CircuitBreaker.State.OPEN && state != CircuitBreaker.State.FORCED_OPEN) {
+            return false;
+        }
+        if (circuitBreaker.tryAcquirePermission()) {
+            circuitBreaker.releasePermission();
+            return false;
+        }
+        return true;
+    }
+
+    private void track(CircuitBreaker circuitBreaker) {
+        circuitBreakers.put(circuitBreaker.getName(), circuitBreaker);
+    }
+
+    private void untrack(CircuitBreaker circuitBreaker) {
+        circuitBreakers.remove(circuitBreaker.getName(), circuitBreaker);
+    }
+
+    public class Gate {
+
+        private final String url;
+        private final String key;
+
+        Gate(String url, String key) {
+            this.url = url;
+            this.key = key;
+        }
+
+        /**
+         * Whether the breaker of the gate rejects the call, see {@link OpenStateFastFail#rejects(String)}.
+         *
+         * @return true to answer with the fallback without calling the protected path
+         */
+        public boolean rejects() {
+            return key != null && OpenStateFastFail.this.rejects(key);
+        }
+
+        public String getUrl() {
+            return url;
+        }
+
+        public String getKey() {
+            return key;
+        }
+    }
+
+}
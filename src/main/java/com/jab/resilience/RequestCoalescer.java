@@ -0,0 +1,82 @@
+package com.jab.resilience;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+/**
+ * Single-flight: concurrent callers for the same key share one in-flight call.
+ */
+@Slf4j
+@Component
+public class RequestCoalescer {
+
+    private static final String CALLS_METRIC = "resilience.coalescing.calls";
+
+    private final RequestCoalescingProperties properties;
+    private final Map<String, Mono<String>> flights = new ConcurrentHashMap<>();
+
+    private final Counter leaders;
+    private final Counter followers;
+
+    /**
+     * Coalescer configured from {@link RequestCoalescingProperties}, with metrics bound to the registry.
+     */
+    public RequestCoalescer(RequestCoalescingProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.leaders = meterRegistry.counter(CALLS_METRIC, "role", "leader");
+        this.followers = meterRegistry.counter(CALLS_METRIC, "role", "follower");
+    }
+
+    /**
+     * Join the in-flight call for the key or start a new one.
+     *
+     * @param key flight key
+     * @param call call to share
+     * @return shared result
+     */
+    public Mono<String> execute(String key, Function<String, Mono<String>> call) {
+        if (!properties.isEnabled()) {
+            return call.apply(key);
+        }
+
+        return Mono.defer(() -> {
+            Mono<String> flight = flights.get(key);
+            if (flight != null) {
+                followers.increment();
+                return flight;
+            }
+            return flights.computeIfAbsent(key, k -> newFlight(k, call));
+        });
+    }
+
+    private Mono<String> newFlight(String key, Function<String, Mono<String>> call) {
+        leaders.increment();
+
+        AtomicReference<Mono<String>> self = new AtomicReference<>();
+        //Landed before the result is replayed, a caller seeing it never joins the finished flight
+        Mono<String> flight = call.apply(key)
+            .doOnTerminate(() -> land(key, self.get()))
+            .cache();
+        self.set(flight);
+        return flight;
+    }
+
+    private void land(String key, Mono<String> flight) {
+        Duration window = properties.getWindow();
+        if (window.isZero() || window.isNegative()) {
+            flights.remove(key, flight);
+        } else {
+            Mono.delay(window).subscribe(tick -> flights.remove(key, flight));
+        }
+    }
+
+}
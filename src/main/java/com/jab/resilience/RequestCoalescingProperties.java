@@ -0,0 +1,19 @@
+package com.jab.resilience;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "resilience.coalescing")
+public class RequestCoalescingProperties {
+
+    private boolean enabled = true;
+
+    /**
+     * Time a completed flight keeps being shared with new callers
+     */
+    private Duration window = Duration.ZERO;
+
+}
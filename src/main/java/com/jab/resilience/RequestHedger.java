@@ -0,0 +1,108 @@
+package com.jab.resilience;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Hedged requests: when the first attempt has not answered after the observed latency percentile,
+ * a second attempt is fired and the first one to answer wins, the other one is cancelled.
+ */
+@Component
+public class RequestHedger {
+
+    private static final String METRIC_PREFIX = "resilience.hedging.";
+
+    private final HedgingProperties properties;
+    private final MeterRegistry meterRegistry;
+    private final TokenBucketBudget budget;
+    private final Map<String, Timer> latencies = new ConcurrentHashMap<>();
+
+    private final Counter hedges;
+    private final Counter budgetExhausted;
+
+    /**
+     * Hedger configured from {@link HedgingProperties}, with metrics bound to the registry.
+     */
+    public RequestHedger(HedgingProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+        this.budget = new TokenBucketBudget(properties.getBudgetPercent() / 100, properties.getBudgetCapacity());
+        this.hedges = meterRegistry.counter(METRIC_PREFIX + "attempts");
+        this.budgetExhausted = meterRegistry.counter(METRIC_PREFIX + "budget.exhausted");
+    }
+
+    /**
+     * Run the attempt, hedging it when it is slower than usual for the upstream.
+     *
+     * @param key upstream key
+     * @param attempt one upstream attempt, subscribed once or twice
+     * @param <T> response type
+     * @return first response
+     */
+    public <T> Mono<T> hedge(String key, Supplier<Mono<T>> attempt) {
+        if (!properties.isEnabled()) {
+            return attempt.get();
+        }
+
+        return Mono.defer(() -> {
+            budget.deposit();
+            Timer latency = latencies.computeIfAbsent(key, this::latencyTimer);
+
+            Mono<T> primary = timed(attempt.get(), latency);
+            //A failed hedge never wins, the primary attempt decides
+            Mono<T> hedged = Mono.delay(hedgeDelay(latency))
+                .flatMap(tick -> {
+                    if (!budget.tryWithdraw()) {
+                        budgetExhausted.increment();
+                        return Mono.<T>never();
+                    }
+                    hedges.increment();
+                    return timed(attempt.get(), latency).onErrorResume(ex -> Mono.never());
+                });
+
+            return Mono.first(primary, hedged);
+        });
+    }
+
+    private Duration hedgeDelay(Timer latency) {
+        if (latency.count() < properties.getMinSamples()) {
+            return properties.getInitialDelay();
+        }
+
+        ValueAtPercentile[] percentiles = latency.takeSnapshot().percentileValues();
+        long nanos = percentiles.length > 0 ? (long) percentiles[0].value(TimeUnit.NANOSECONDS) : 0;
+        return Duration.ofNanos(Math.max(properties.getMinDelay().toNanos(), nanos));
+    }
+
+    private <T> Mono<T> timed(Mono<T> attempt, Timer latency) {
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            //Cancelled attempts are recorded too, otherwise the slow tail would vanish from the percentile
+            return attempt.doFinally(signal -> {
+                if (signal != SignalType.ON_ERROR) {
+                    latency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                }
+            });
+        });
+    }
+
+    private Timer latencyTimer(String key) {
+        return Timer.builder(METRIC_PREFIX + "latency")
+            .tag("upstream", key)
+            .publishPercentiles(properties.getPercentile())
+            .distributionStatisticExpiry(Duration.ofMinutes(1))
+            .register(meterRegistry);
+    }
+
+}
@@ -0,0 +1,20 @@
+package com.jab.resilience;
+
+/**
+ * Admission classes of the incoming requests, from the most to the least important.
+ * Under overload {@link AdmissionController} serves them in this order and sheds from the bottom.
+ */
+public enum RequestPriority {
+
+    CRITICAL,
+
+    HIGH,
+
+    NORMAL,
+
+    /**
+     * Bulk or background traffic, shed first
+     */
+    LOW
+
+}
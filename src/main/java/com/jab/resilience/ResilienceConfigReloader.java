@@ -0,0 +1,152 @@
+package com.jab.resilience;
+
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.circuitbreaker.event.CircuitBreakerEvent;
+import io.github.resilience4j.core.EventConsumer;
+import io.github.resilience4j.timelimiter.TimeLimiterConfig;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cloud.circuitbreaker.resilience4j.Resilience4JConfigBuilder;
+import org.springframework.cloud.client.circuitbreaker.CircuitBreakerFactory;
+import org.springframework.cloud.client.circuitbreaker.ReactiveCircuitBreakerFactory;
+import org.springframework.cloud.context.scope.refresh.RefreshScopeRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Applies resilience.circuit-breaker and resilience.time-limiter to the running breakers after /actuator/refresh.
+ *
+ * <p>Resilience4j configurations are immutable, so every live breaker is replaced in the registry by one built with
+ * the new settings and carrying over the current state. A closed breaker has its window counts replayed into the
+ * replacement. Calls in flight finish on the instance that admitted them, new calls see the replacement.
+ *
+ * <p>Replacements are built by the registry, on its clock and window, and swapped with {@code replace} so the
+ * registry listeners follow them. The event consumers registered on a replaced instance keep receiving the events
+ * of the breaker.
+ */
+@Slf4j
+@Component
+public class ResilienceConfigReloader {
+
+    private static final RuntimeException REPLAYED_FAILURE = new ReplayedFailure();
+
+    private final CircuitBreakerProperties circuitBreakerProperties;
+    private final TimeLimiterProperties timeLimiterProperties;
+    private final UpstreamIsolation upstreamIsolation;
+    private final ClockedCircuitBreakerRegistry circuitBreakerRegistry;
+    private final ReactiveCircuitBreakerFactory reactiveCircuitBreakerFactory;
+    private final CircuitBreakerFactory blockingCircuitBreakerFactory;
+
+    /**
+     * Reloader for the breakers created by both Spring Cloud factories.
+     */
+    public ResilienceConfigReloader(
+            CircuitBreakerProperties circuitBreakerProperties,
+            TimeLimiterProperties timeLimiterProperties,
+            UpstreamIsolation upstreamIsolation,
+            ClockedCircuitBreakerRegistry circuitBreakerRegistry,
+            ReactiveCircuitBreakerFactory reactiveCircuitBreakerFactory,
+            CircuitBreakerFactory blockingCircuitBreakerFactory) {
+        this.circuitBreakerProperties = circuitBreakerProperties;
+        this.timeLimiterProperties = timeLimiterProperties;
+        this.upstreamIsolation = upstreamIsolation;
+        this.circuitBreakerRegistry = circuitBreakerRegistry;
+        this.reactiveCircuitBreakerFactory = reactiveCircuitBreakerFactory;
+        this.blockingCircuitBreakerFactory = blockingCircuitBreakerFactory;
+    }
+
+    //Published once the @ConfigurationProperties beans are rebound
+    @EventListener(RefreshScopeRefreshedEvent.class)
+    public void onRefresh() {
+        reload();
+    }
+
+    /**
+     * Rebuild the configurations from the current properties and swap the live breakers.
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized void reload() {
+        CircuitBreakerConfig circuitBreakerConfig = circuitBreakerProperties.toCircuitBreakerConfig();
+        TimeLimiterConfig timeLimiterConfig = timeLimiterProperties.toTimeLimiterConfig();
+
+        Set<String> keys = new TreeSet<>(circuitBreakerRegistry.getAllCircuitBreakers()
+            .map(CircuitBreaker::getName)
+            .toJavaSet());
+        upstreamIsolation.reload(circuitBreakerConfig, timeLimiterConfig)
+            .forEach(isolation -> keys.add(isolation.getKey()));
+
+        keys.forEach(key -> {
+            UpstreamIsolation.Isolation isolation = upstreamIsolation.get(key);
+            circuitBreakerRegistry.find(key).ifPresent(current -> swap(current, isolation.getCircuitBreakerConfig()));
+
+            Consumer<Resilience4JConfigBuilder> configure = builder -> builder
+                .circuitBreakerConfig(isolation.getCircuitBreakerConfig())
+                .timeLimiterConfig(isolation.getTimeLimiterConfig());
+            reactiveCircuitBreakerFactory.configure(configure, key);
+            blockingCircuitBreakerFactory.configure(configure, key);
+        });
+        LOGGER.info("Reloaded resilience configuration for {}", keys);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void swap(CircuitBreaker current, CircuitBreakerConfig config) {
+        String name = current.getName();
+        CircuitBreaker replacement = circuitBreakerRegistry.newCircuitBreaker(name, config, current.getTags());
+
+        switch (current.getState()) {
+            case OPEN:
+                replacement.transitionToOpenState();
+                break;
+            case HALF_OPEN:
+                replacement.transitionToOpenState();
+                replacement.transitionToHalfOpenState();
+                break;
+            case FORCED_OPEN:
+                replacement.transitionToForcedOpenState();
+                break;
+            case DISABLED:
+                replacement.transitionToDisabledState();
+                break;
+            default:
+                replay(current, replacement);
+                break;
+        }
+        //After the restore, the consumers of the replaced instance only see the events of real calls
+        if (current.getEventPublisher() instanceof EventConsumer) {
+            replacement.getEventPublisher().onEvent((EventConsumer<CircuitBreakerEvent>) current.getEventPublisher());
+        }
+        circuitBreakerRegistry.replace(name, replacement);
+    }
+
+    //Outcomes are interleaved so a smaller new window keeps the same failure rate
+    private void replay(CircuitBreaker current, CircuitBreaker replacement) {
+        CircuitBreaker.Metrics metrics = current.getMetrics();
+        int failures = metrics.getNumberOfFailedCalls();
+        int total = metrics.getNumberOfSuccessfulCalls() + failures;
+        int slowFailures = metrics.getNumberOfSlowFailedCalls();
+        int slowSuccesses = metrics.getNumberOfSlowSuccessfulCalls();
+        long slowNanos = current.getCircuitBreakerConfig().getSlowCallDurationThreshold().toNanos();
+
+        for (int i = 0; i < total && replacement.getState() == CircuitBreaker.State.CLOSED; i++) {
+            boolean failure = (long) (i + 1) * failures / total > (long) i * failures / total;
+            if (failure) {
+                replacement.onError(slowFailures-- > 0 ? slowNanos : 0, TimeUnit.NANOSECONDS, REPLAYED_FAILURE);
+            } else {
+                replacement.onSuccess(slowSuccesses-- > 0 ? slowNanos : 0, TimeUnit.NANOSECONDS);
+            }
+        }
+    }
+
+    private static class ReplayedFailure extends RuntimeException {
+
+        ReplayedFailure() {
+            super("Failure replayed on configuration reload", null, false, false);
+        }
+    }
+
+}
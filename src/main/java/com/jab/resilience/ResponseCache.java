@@ -0,0 +1,133 @@
+package com.jab.resilience;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Per-URL cache of the last good upstream responses (W-TinyLFU eviction via Caffeine).
+ */
+@Slf4j
+@Component
+public class ResponseCache {
+
+    private static final String CACHE_NAME = "upstream.responses";
+    private static final String REQUESTS_METRIC = "resilience.cache.requests";
+
+    private final ResponseCacheProperties properties;
+    private final Cache<String, CachedResponse> cache;
+    private final Set<String> revalidating = ConcurrentHashMap.newKeySet();
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter stale;
+    private final Counter staleOnFallback;
+
+    /**
+     * Cache sized and timed from {@link ResponseCacheProperties}, with metrics bound to the registry.
+     */
+    public ResponseCache(ResponseCacheProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.cache = Caffeine.newBuilder()
+            .maximumSize(properties.getMaximumSize())
+            .expireAfterWrite(properties.getTtl().plus(properties.getStaleTtl()))
+            .recordStats()
+            .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+        this.hits = meterRegistry.counter(REQUESTS_METRIC, "result", "hit");
+        this.misses = meterRegistry.counter(REQUESTS_METRIC, "result", "miss");
+        this.stale = meterRegistry.counter(REQUESTS_METRIC, "result", "stale");
+        this.staleOnFallback = meterRegistry.counter(REQUESTS_METRIC, "result", "stale-fallback");
+    }
+
+    /**
+     * Serve a fresh response from the cache, a stale one while revalidating, or call the loader.
+     *
+     * @param key cache key
+     * @param loader upstream call, expected to {@link #put(String, String)} good responses
+     * @return response
+     */
+    public Mono<String> get(String key, Function<String, Mono<String>> loader) {
+        if (!properties.isEnabled()) {
+            return loader.apply(key);
+        }
+
+        return Mono.defer(() -> {
+            CachedResponse cached = cache.getIfPresent(key);
+            if (cached != null && cached.isFresh(properties.getTtl().toNanos())) {
+                hits.increment();
+                return Mono.just(cached.getValue());
+            }
+            if (cached != null && properties.isStaleWhileRevalidate()) {
+                stale.increment();
+                revalidate(key, loader);
+                return Mono.just(cached.getValue());
+            }
+            misses.increment();
+            return loader.apply(key);
+        });
+    }
+
+    /**
+     * Store a good upstream response.
+     *
+     * @param key cache key
+     * @param value upstream response
+     */
+    public void put(String key, String value) {
+        if (properties.isEnabled()) {
+            cache.put(key, new CachedResponse(value, System.nanoTime()));
+        }
+    }
+
+    /**
+     * Last good response for a key, used by the circuit breaker fallback.
+     *
+     * @param key cache key
+     * @return last known good response, if any
+     */
+    public Optional<String> lastKnownGood(String key) {
+        if (!properties.isEnabled() || !properties.isServeStaleOnOpen()) {
+            return Optional.empty();
+        }
+
+        Optional<String> lastKnownGood = Optional.ofNullable(cache.getIfPresent(key))
+            .map(CachedResponse::getValue);
+        lastKnownGood.ifPresent(value -> staleOnFallback.increment());
+        return lastKnownGood;
+    }
+
+    private void revalidate(String key, Function<String, Mono<String>> loader) {
+        if (revalidating.add(key)) {
+            loader.apply(key)
+                .doFinally(signal -> revalidating.remove(key))
+                .subscribe(
+                    value -> LOGGER.debug("Revalidated {}", key),
+                    ex -> LOGGER.warn("Revalidation failed for {}", key, ex));
+        }
+    }
+
+    @Value
+    private static class CachedResponse {
+
+        String value;
+        long storedAt;
+
+        boolean isFresh(long ttlNanos) {
+            return System.nanoTime() - storedAt < ttlNanos;
+        }
+    }
+
+}
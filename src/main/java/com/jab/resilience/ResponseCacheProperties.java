@@ -0,0 +1,30 @@
+package com.jab.resilience;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "resilience.cache")
+public class ResponseCacheProperties {
+
+    private boolean enabled = false;
+
+    private long maximumSize = 10_000;
+
+    /**
+     * Time a response is served without calling the upstream
+     */
+    private Duration ttl = Duration.ofSeconds(5);
+
+    /**
+     * Extra time an expired response is kept to be served as stale
+     */
+    private Duration staleTtl = Duration.ofSeconds(60);
+
+    private boolean staleWhileRevalidate = true;
+
+    private boolean serveStaleOnOpen = true;
+
+}
@@ -0,0 +1,14 @@
+package com.jab.resilience;
+
+import lombok.Value;
+
+/**
+ * Batch element: the requested url and its response, which can be the fallback
+ */
+@Value
+public class RetrieveResult {
+
+    String url;
+    String response;
+
+}
@@ -0,0 +1,50 @@
+package com.jab.resilience;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@Data
+@ConfigurationProperties(prefix = "resilience.retry")
+public class RetryProperties {
+
+    private boolean enabled = true;
+
+    /**
+     * Total attempts, including the first one
+     */
+    private int maxAttempts = 3;
+
+    private Duration initialBackoff = Duration.ofMillis(50);
+
+    private Duration maxBackoff = Duration.ofSeconds(1);
+
+    private double multiplier = 2;
+
+    /**
+     * Maximum retries, in percent of the calls to an upstream
+     */
+    private double budgetPercent = 20;
+
+    private int budgetCapacity = 10;
+
+    /**
+     * Per-upstream overrides, keyed like the circuit breakers
+     */
+    private Map<String, Instance> instances = new LinkedHashMap<>();
+
+    @Data
+    public static class Instance {
+
+        private Integer maxAttempts;
+
+        private Duration initialBackoff;
+
+        private Duration maxBackoff;
+
+    }
+
+}
@@ -1,7 +1,19 @@
 package com.jab.resilience;
 
+import org.springframework.core.io.buffer.DataBuffer;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
 public interface ServiceProtected {
 
     String retrieve(String url);
 
+    Mono<String> retrieveReactive(String url);
+
+    Flux<RetrieveResult> retrieveAll(Flux<String> urls, boolean ordered);
+
+    Flux<DataBuffer> proxy(String url);
+
+    String fallback(String url);
+
 }
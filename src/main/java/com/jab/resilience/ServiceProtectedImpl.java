@@ -1,91 +1,291 @@
 package com.jab.resilience;
 
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
+import com.fasterxml.jackson.databind.ObjectReader;
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.reactor.bulkhead.operator.BulkheadOperator;
 import io.vavr.control.Try;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.cloud.client.circuitbreaker.CircuitBreaker;
 import org.springframework.cloud.client.circuitbreaker.CircuitBreakerFactory;
+import org.springframework.cloud.client.circuitbreaker.ReactiveCircuitBreaker;
+import org.springframework.cloud.client.circuitbreaker.ReactiveCircuitBreakerFactory;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
 import java.util.List;
-import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Function;
+import java.util.function.Supplier;
 
-import static com.jab.resilience.Constants.CIRCUIT_BREAKER_1;
 import static com.jab.resilience.Constants.FALLBACK_GOD_RESPONSE;
 
 @Slf4j
 @Service
 public class ServiceProtectedImpl implements ServiceProtected {
 
-    private CircuitBreakerFactory circuitBreakerFactory;
+    //Fallback bodies of the proxy are wrapped, never copied, the Netty response writes the array as is
+    private static final DataBufferFactory FALLBACK_BUFFERS = new DefaultDataBufferFactory();
+    private static final byte[] FALLBACK_BODY = jsonArrayOf(FALLBACK_GOD_RESPONSE);
 
-    public ServiceProtectedImpl(CircuitBreakerFactory circuitBreakerFactory) {
+    private ReactiveCircuitBreakerFactory circuitBreakerFactory;
+    private WebClient upstreamWebClient;
+    private ObjectReader upstreamListReader;
+    private JsonArrayStreamDecoder jsonArrayStreamDecoder;
+    private UpstreamDecoding decoding;
+    private ResponseCache responseCache;
+    private SnapshotStore snapshotStore;
+    private RequestCoalescer requestCoalescer;
+    private UpstreamIsolation upstreamIsolation;
+    private UpstreamPool upstreamPool;
+    private OpenStateFastFail fastFail;
+    private RequestHedger requestHedger;
+    private CircuitBreakerFactory blockingCircuitBreakerFactory;
+    private BlockingMode blockingMode;
+    private int batchConcurrency;
+    private StageMetrics stageMetrics;
+
+    /**
+     * Service protected by the circuit breaker, calling the upstream with the shared client.
+     */
+    public ServiceProtectedImpl(
+            ReactiveCircuitBreakerFactory circuitBreakerFactory,
+            WebClient upstreamWebClient,
+            ObjectReader upstreamListReader,
+            JsonArrayStreamDecoder jsonArrayStreamDecoder,
+            UpstreamClientProperties upstreamClientProperties,
+            ResponseCache responseCache,
+            SnapshotStore snapshotStore,
+            RequestCoalescer requestCoalescer,
+            UpstreamIsolation upstreamIsolation,
+            UpstreamPool upstreamPool,
+            OpenStateFastFail fastFail,
+            RequestHedger requestHedger,
+            CircuitBreakerFactory blockingCircuitBreakerFactory,
+            BlockingExecutionProperties blockingExecutionProperties,
+            BatchProperties batchProperties,
+            StageMetrics stageMetrics) {
         this.circuitBreakerFactory = circuitBreakerFactory;
+        this.upstreamWebClient = upstreamWebClient;
+        this.upstreamListReader = upstreamListReader;
+        this.jsonArrayStreamDecoder = jsonArrayStreamDecoder;
+        this.decoding = upstreamClientProperties.getDecoding();
+        this.responseCache = responseCache;
+        this.snapshotStore = snapshotStore;
+        this.requestCoalescer = requestCoalescer;
+        this.upstreamIsolation = upstreamIsolation;
+        this.upstreamPool = upstreamPool;
+        this.fastFail = fastFail;
+        this.requestHedger = requestHedger;
+        this.blockingCircuitBreakerFactory = blockingCircuitBreakerFactory;
+        this.blockingMode = blockingExecutionProperties.getMode();
+        this.batchConcurrency = batchProperties.getConcurrency();
+        this.stageMetrics = stageMetrics;
+        upstreamIsolation.onEviction(stageMetrics::remove);
     }
 
+    /**
+     * Blocking retrieve for existing callers. By default it blocks on {@link #retrieveReactive(String)},
+     * with a thread based {@link BlockingMode} the blocking circuit breaker and time limiter run the call
+     * on a platform or a virtual thread. Both go through the same cache, coalescer, fast fail and limiter.
+     *
+     * @param url upstream address
+     * @return first element returned by the upstream or the fallback response
+     */
     @Override
     public String retrieve(String url) {
+        return protectedRetrieve(url, blockingMode != BlockingMode.REACTIVE).block();
+    }
 
-        Function<String, Flux<String>> serializeFlux = param -> Try.of(() -> {
-            if (param.length() == 0) {
-                return Flux.just("");
-            }
-            ObjectMapper objectMapper = new ObjectMapper();
-            List<String> deserializedData = objectMapper.readValue(param, new TypeReference<List<String>>() {});
-            return Mono.just(deserializedData).flatMapMany(Flux::fromIterable);
-        }).getOrElseThrow(ex -> {
-            LOGGER.error("Bad Serialization process", ex);
-            throw new RuntimeException(ex);
+    /**
+     * Non-blocking retrieve protected by the reactive circuit breaker and time limiter.
+     *
+     * @param url upstream address
+     * @return first element returned by the upstream or the fallback response
+     */
+    @Override
+    public Mono<String> retrieveReactive(String url) {
+        return protectedRetrieve(url, false);
+    }
+
+    private Mono<String> protectedRetrieve(String url, boolean blocking) {
+
+        //Adaptive limiter ahead of the circuit breaker and time limiter, retry, hedged attempts and bulkhead inside
+        //them: the breaker records one outcome per request and the time limiter bounds all the attempts.
+        //A logical upstream gets one of its endpoints per request, with the isolation of that endpoint
+        Function<String, Mono<String>> circuitBreakerRetrieve = param -> {
+            UpstreamPool.Target target = upstreamPool.resolve(param);
+            UpstreamIsolation.Isolation isolation = upstreamIsolation.get(target.getKey());
+
+            Mono<String> upstream = upstreamCall(param, target, isolation)
+                .transform(stageMetrics.timed(isolation.getKey(), StageMetrics.Stage.BREAKER));
+            Mono<String> fallbackCall = Mono.fromSupplier(() -> fallback(param))
+                .transform(stageMetrics.timed(isolation.getKey(), StageMetrics.Stage.FALLBACK));
+            Mono<String> protectedCall = blocking
+                ? blockingCall(isolation.getKey(), upstream, fallbackCall)
+                : circuitBreakerFactory.create(isolation.getKey()).run(upstream, throwable -> fallbackCall);
+
+            Mono<String> limitedCall = protectedCall
+                .transform(isolation.getLimiter().<String>operator())
+                .onErrorResume(LimitExceededException.class, ex -> fallbackCall)
+                .defaultIfEmpty(FALLBACK_GOD_RESPONSE);
+            return Mono.defer(() -> fastFail.rejects(isolation.getKey()) ? fallbackCall : limitedCall);
+        };
+
+        return responseCache.get(url, key -> requestCoalescer.execute(key, circuitBreakerRetrieve));
+    }
+
+    //The caller waits on the time limiter future while the executor thread blocks on the upstream.
+    //Nothing on this path holds a monitor, so a virtual thread unmounts instead of pinning its carrier.
+    //Subscribed from an event loop or a timer, e.g. when a limiter permit is released there, the wait moves
+    //to a thread allowed to block
+    private Mono<String> blockingCall(String key, Mono<String> upstream, Mono<String> fallbackCall) {
+        CircuitBreaker circuitBreaker = blockingCircuitBreakerFactory.create(key);
+        Mono<String> call = Mono.fromCallable(() -> circuitBreaker.run(
+            () -> upstream.blockOptional().orElse(FALLBACK_GOD_RESPONSE),
+            throwable -> fallbackCall.block()));
+        return Mono.defer(() -> Schedulers.isInNonBlockingThread()
+            ? call.subscribeOn(Schedulers.boundedElastic())
+            : call);
+    }
+
+    /**
+     * Retrieve many urls with at most resilience.batch.concurrency calls in flight. Every element goes
+     * through {@link #retrieveReactive(String)}, so it gets its own breaker and fallback and never fails the batch.
+     *
+     * @param urls upstream addresses
+     * @param ordered emit the results in the order of the urls, otherwise as soon as they complete
+     * @return one result per url
+     */
+    @Override
+    public Flux<RetrieveResult> retrieveAll(Flux<String> urls, boolean ordered) {
+
+        Function<String, Mono<RetrieveResult>> retrieveOne = url -> retrieveReactive(url)
+            .map(response -> new RetrieveResult(url, response));
+
+        return ordered
+            ? urls.flatMapSequential(retrieveOne, batchConcurrency)
+            : urls.flatMap(retrieveOne, batchConcurrency);
+    }
+
+    /**
+     * Upstream JSON passed through as is: the buffers read from the upstream connection are written to the
+     * caller, nothing is decoded nor re-encoded. Protected by the bulkhead, the circuit breaker and the time
+     * limiter, which bounds the wait for the first buffer and then between buffers. The fallback body, a JSON
+     * array of the fallback response, is sent only while no upstream byte went out; a failure after that aborts
+     * the response. Neither retried nor hedged, a stream cannot be replayed once bytes are committed.
+     *
+     * @param url upstream address
+     * @return upstream body or the fallback body
+     */
+    @Override
+    public Flux<DataBuffer> proxy(String url) {
+
+        return Flux.defer(() -> {
+            UpstreamPool.Target target = upstreamPool.resolve(url);
+            UpstreamIsolation.Isolation isolation = upstreamIsolation.get(target.getKey());
+            ReactiveCircuitBreaker circuitBreaker = circuitBreakerFactory.create(isolation.getKey());
+
+            AtomicBoolean committed = new AtomicBoolean();
+            Flux<DataBuffer> passThrough = target.observeMany(upstreamWebClient
+                .method(HttpMethod.GET)
+                .uri(target.getAddress())
+                .accept(MediaType.APPLICATION_JSON)
+                .retrieve()
+                .bodyToFlux(DataBuffer.class)
+                .transform(BulkheadOperator.of(isolation.getBulkhead())))
+                .doOnNext(buffer -> committed.set(true));
+
+            return circuitBreaker.run(passThrough, throwable -> committed.get()
+                ? Flux.error(throwable)
+                : Flux.just(FALLBACK_BUFFERS.wrap(fallbackBody(url))));
         });
+    }
+
+    //The response is kept for the url, the call goes to the address of the target, the same one unless the url is a
+    //logical upstream. The first attempt goes to the endpoint picked for the request, a retry picks one again with
+    //its bulkhead, while the breaker, time limiter and retry of the request stay those of the first endpoint
+    private Mono<String> upstreamCall(String url, UpstreamPool.Target target, UpstreamIsolation.Isolation isolation) {
 
         Function<String, List<String>> serializeList = param -> Try.of(() -> {
-            ObjectMapper objectMapper = new ObjectMapper();
-            List<String> deserializedData = objectMapper.readValue(param, new TypeReference<>() {
-            });
+            List<String> deserializedData = upstreamListReader.readValue(param);
             return deserializedData;
         }).getOrElseThrow(ex -> {
             LOGGER.error("Bad Serialization process", ex);
             throw new RuntimeException(ex);
         });
 
-        Function<String, List<String>> externalCall = param -> {
-
-            var response = WebClient.builder().build()
-                    .method(HttpMethod.GET)
-                    .uri(url)
-                    .accept(MediaType.APPLICATION_JSON)
-                    .retrieve()
-                    .bodyToMono(String.class)
-                    .map(serializeList)
-                    .flatMapMany(Flux::fromIterable)
-                    .doOnNext(x -> LOGGER.info(x.toString()))
-                    .doOnError(ex -> LOGGER.error(ex.getLocalizedMessage(), ex))
-                    .collectList()
-                    .block();
-
-            return response;
-        };
+        Function<WebClient.ResponseSpec, Flux<String>> decode = response -> decoding == UpstreamDecoding.STREAMING
+            ? response.bodyToFlux(DataBuffer.class).transform(jsonArrayStreamDecoder::decode)
+            : response.bodyToMono(String.class).map(serializeList).flatMapMany(Flux::fromIterable);
 
-        Function<String, List<String>> circuitBreakerRetrieve = param -> {
-            CircuitBreaker circuitBreaker = circuitBreakerFactory.create(CIRCUIT_BREAKER_1);
+        Function<String, Flux<String>> externalCall = param -> decode.apply(upstreamWebClient
+                .method(HttpMethod.GET)
+                .uri(param)
+                .accept(MediaType.APPLICATION_JSON)
+                .retrieve())
+            .doOnError(ex -> LOGGER.error(ex.getLocalizedMessage(), ex));
 
-            return circuitBreaker.run(() -> externalCall.apply(param),
-                throwable -> List.of(FALLBACK_GOD_RESPONSE));
+        //Hedged attempts go to the endpoint of the attempt they hedge and are accounted to it as one call
+        Function<UpstreamPool.Target, Mono<String>> endpointCall = endpoint -> {
+            Bulkhead bulkhead = upstreamIsolation.get(endpoint.getKey()).getBulkhead();
+            //Taking only the first element cancels the upstream exchange in streaming mode
+            Supplier<Mono<String>> attempt = () -> stageMetrics
+                .attempt(endpoint.getKey(), () -> externalCall.apply(endpoint.getAddress())
+                    .next()
+                    .doOnNext(first -> LOGGER.debug("Upstream {} answered {}", endpoint.getAddress(), first)))
+                .transform(BulkheadOperator.of(bulkhead));
+            return endpoint.observe(requestHedger.hedge(endpoint.getKey(), attempt));
         };
 
-        Function<List<String>, String> getFirst = list -> list.stream()
-            .peek(LOGGER::info)
-            .findFirst()
+        AtomicReference<UpstreamPool.Target> picked = new AtomicReference<>(target);
+        return Mono.defer(() -> endpointCall.apply(Optional.ofNullable(picked.getAndSet(null))
+                .orElseGet(() -> upstreamPool.resolve(url))))
+            .transform(isolation.getRetry().<String>operator())
+            .doOnNext(response -> {
+                responseCache.put(url, response);
+                snapshotStore.put(url, response);
+            });
+    }
+
+    /**
+     * Response served when the upstream cannot be called: the last good response in memory, then the one
+     * persisted, which survives restarts, otherwise {@link Constants#FALLBACK_GOD_RESPONSE}.
+     *
+     * @param url upstream address
+     * @return fallback response
+     */
+    @Override
+    public String fallback(String url) {
+        return responseCache.lastKnownGood(url)
+            .or(() -> snapshotStore.get(url))
             .orElse(FALLBACK_GOD_RESPONSE);
+    }
+
+    private byte[] fallbackBody(String url) {
+        String fallback = fallback(url);
+        return fallback.equals(FALLBACK_GOD_RESPONSE) ? FALLBACK_BODY : jsonArrayOf(fallback);
+    }
 
-        return circuitBreakerRetrieve.andThen(getFirst).apply(url);
+    static byte[] jsonArrayOf(String element) {
+        byte[] quoted = JsonStringEncoder.getInstance().quoteAsUTF8(element);
+        byte[] json = new byte[quoted.length + 4];
+        json[0] = '[';
+        json[1] = '"';
+        System.arraycopy(quoted, 0, json, 2, quoted.length);
+        json[json.length - 2] = '"';
+        json[json.length - 1] = ']';
+        return json;
     }
 
 }
@@ -0,0 +1,151 @@
+package com.jab.resilience;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.http.ReactiveHttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.BodyInserter;
+import org.springframework.web.reactive.function.BodyInserters;
+import org.springframework.web.reactive.function.server.RouterFunction;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import org.springframework.web.server.ServerWebInputException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+import static com.jab.resilience.Constants.FALLBACK_GOD_RESPONSE;
+import static org.springframework.web.reactive.function.server.RequestPredicates.GET;
+import static org.springframework.web.reactive.function.server.RequestPredicates.POST;
+import static org.springframework.web.reactive.function.server.RouterFunctions.route;
+import static org.springframework.web.reactive.function.server.ServerResponse.ok;
+
+@Configuration
+public class ServiceProtectedRouter {
+
+    static final MediaType APPLICATION_NDJSON = MediaType.parseMediaType("application/x-ndjson");
+
+    /**
+     * GET /api/retrieve, answered with a preallocated response while the breaker rejects calls, see
+     * {@link OpenStateFastFail}.
+     */
+    @Bean
+    RouterFunction<ServerResponse> retrieveRoute(
+            ServiceProtected serviceProtected,
+            OpenStateFastFail fastFail,
+            @Value("${upstream.url}") String upstreamUrl) {
+
+        OpenStateFastFail.Gate gate = fastFail.gate(upstreamUrl);
+        Mono<ServerResponse> openCircuit = preallocated(MediaType.TEXT_PLAIN,
+            FALLBACK_GOD_RESPONSE.getBytes(StandardCharsets.UTF_8));
+
+        return route(GET("/api/retrieve"),
+            req -> gate.rejects()
+                ? rejected(serviceProtected.fallback(upstreamUrl), openCircuit,
+                    fallback -> ok().contentType(MediaType.TEXT_PLAIN).bodyValue(fallback))
+                : ok().contentType(MediaType.TEXT_PLAIN)
+                    .body(serviceProtected.retrieveReactive(upstreamUrl), String.class));
+    }
+
+    /**
+     * GET /api/proxy re-serves the upstream JSON byte for byte, see {@link ServiceProtected#proxy(String)}.
+     */
+    @Bean
+    RouterFunction<ServerResponse> proxyRoute(
+            ServiceProtected serviceProtected,
+            OpenStateFastFail fastFail,
+            @Value("${upstream.url}") String upstreamUrl) {
+
+        OpenStateFastFail.Gate gate = fastFail.gate(upstreamUrl);
+        Mono<ServerResponse> openCircuit = preallocated(MediaType.APPLICATION_JSON,
+            ServiceProtectedImpl.jsonArrayOf(FALLBACK_GOD_RESPONSE));
+
+        return route(GET("/api/proxy"),
+            req -> gate.rejects()
+                ? rejected(serviceProtected.fallback(upstreamUrl), openCircuit,
+                    fallback -> ok().contentType(MediaType.APPLICATION_JSON)
+                        .bodyValue(ServiceProtectedImpl.jsonArrayOf(fallback)))
+                : ok().contentType(MediaType.APPLICATION_JSON)
+                    .body(BodyInserters.fromDataBuffers(serviceProtected.proxy(upstreamUrl))));
+    }
+
+    //Built once and shared by the requests: the body array is wrapped by the response buffer factory, never copied
+    private static Mono<ServerResponse> preallocated(MediaType contentType, byte[] body) {
+        return ok().contentType(contentType)
+            .contentLength(body.length)
+            .body((response, context) -> response.writeWith(
+                Mono.fromSupplier(() -> response.bufferFactory().wrap(body))));
+    }
+
+    //A last good response is per request, only the constant fallback is preallocated
+    private static Mono<ServerResponse> rejected(
+            String fallback,
+            Mono<ServerResponse> openCircuit,
+            Function<String, Mono<ServerResponse>> lastKnownGood) {
+        return FALLBACK_GOD_RESPONSE.equals(fallback) ? openCircuit : lastKnownGood.apply(fallback);
+    }
+
+    /**
+     * POST /api/retrieve/batch with one path per line, resolved against upstream.url. Results are streamed
+     * as NDJSON and flushed one by one, ?ordered=false emits them as soon as they complete. The lines are all
+     * checked before the first call, a batch with an address outside of the upstream is a 400.
+     */
+    @Bean
+    RouterFunction<ServerResponse> retrieveBatchRoute(
+            ServiceProtected serviceProtected,
+            ObjectMapper objectMapper,
+            @Value("${upstream.url}") String upstreamUrl) {
+
+        URI upstream = URI.create(upstreamUrl);
+
+        //Only the configured upstream can be reached, the batch is not an open proxy
+        Function<String, String> resolve = line -> {
+            URI uri = upstream.resolve(line.trim());
+            if (!Objects.equals(uri.getScheme(), upstream.getScheme())
+                    || !Objects.equals(uri.getRawAuthority(), upstream.getRawAuthority())) {
+                throw new ServerWebInputException("Address outside of the upstream: " + line);
+            }
+            return uri.toString();
+        };
+
+        //One document per line, whatever spring.jackson indentation says
+        ObjectWriter lineWriter = objectMapper.writerFor(RetrieveResult.class)
+            .without(SerializationFeature.INDENT_OUTPUT);
+
+        BiFunction<DataBufferFactory, RetrieveResult, Mono<DataBuffer>> toLine =
+            (bufferFactory, result) -> Mono.fromCallable(() -> {
+                byte[] json = lineWriter.writeValueAsBytes(result);
+                return bufferFactory.allocateBuffer(json.length + 1).write(json).write((byte) '\n');
+            });
+
+        return route(POST("/api/retrieve/batch"),
+            req -> {
+                boolean ordered = req.queryParam("ordered").map(Boolean::parseBoolean).orElse(true);
+                //Read whole before the status is sent, an invalid line once streaming started could only cut it
+                return req.bodyToFlux(String.class)
+                    .filter(line -> !line.isBlank())
+                    .map(resolve)
+                    .collectList()
+                    .flatMap(urls -> {
+                        Flux<RetrieveResult> results = serviceProtected.retrieveAll(Flux.fromIterable(urls), ordered);
+
+                        BodyInserter<Flux<RetrieveResult>, ReactiveHttpOutputMessage> ndjson = (response, context) ->
+                            response.writeAndFlushWith(
+                                results.map(result -> toLine.apply(response.bufferFactory(), result)));
+
+                        return ok().contentType(APPLICATION_NDJSON).body(ndjson);
+                    });
+            });
+    }
+
+}
@@ -0,0 +1,26 @@
+package com.jab.resilience;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "resilience.window")
+public class SlidingWindowProperties {
+
+    /**
+     * Evaluate closed breakers on a lock-free striped time window instead of the Resilience4j one
+     */
+    private boolean striped = false;
+
+    private Duration size = Duration.ofSeconds(10);
+
+    private int buckets = 10;
+
+    /**
+     * Stripes per bucket, 0 to use the available processors
+     */
+    private int stripes = 0;
+
+}
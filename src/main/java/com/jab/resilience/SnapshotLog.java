@@ -0,0 +1,413 @@
+package com.jab.resilience;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32C;
+
+/**
+ * Last good value per key, kept in an append-only log in a memory-mapped file of fixed capacity.
+ * Keys and values never live on the heap: the file holds the records and a direct buffer holds the index,
+ * an open addressing table of (key hash, record offset).
+ *
+ * <p>File header: magic, version, generation, CRC32C of the first 12 bytes, padded to 32 bytes.
+ * Record: length, CRC32C of the rest, generation, key length, UTF-8 key, UTF-8 value.
+ *
+ * <p>The CRC is written last, so a record torn by a crash never verifies. Every open bumps the generation and
+ * recovery stops at the first record that does not verify or whose generation goes backwards, so the bytes left
+ * after a torn record by an earlier run are never read. Writes survive a process crash as soon as they are done,
+ * a power loss keeps what the OS had flushed.
+ */
+public class SnapshotLog implements AutoCloseable {
+
+    static final int FILE_HEADER_SIZE = 32;
+    static final int RECORD_HEADER_SIZE = 14;
+
+    private static final int MAGIC = 0x52534E50;
+    private static final int VERSION = 1;
+    private static final int MAX_KEY_LENGTH = 0xFFFF;
+
+    private final Path path;
+    private final int capacity;
+    private final int maxKeys;
+    private final FileChannel lockChannel;
+    private final FileLock fileLock;
+    private final ByteBuffer index;
+    private final int mask;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private MappedByteBuffer buffer;
+    private int generation;
+    private int end;
+    private int keys;
+    private long liveBytes;
+
+    /**
+     * Map the file, creating it if needed, and rebuild the index from the valid records.
+     *
+     * @param path snapshot file, a sibling .lock file keeps other processes out
+     * @param capacity file size in bytes
+     * @param maxKeys keys indexed at most
+     * @throws IOException when the file cannot be mapped or is used by another instance
+     */
+    public SnapshotLog(Path path, int capacity, int maxKeys) throws IOException {
+        if (capacity <= FILE_HEADER_SIZE + RECORD_HEADER_SIZE || maxKeys < 1) {
+            throw new IllegalArgumentException("Snapshot capacity or maximum keys too small");
+        }
+        this.path = path;
+        this.capacity = capacity;
+        this.maxKeys = maxKeys;
+
+        int slots = Integer.highestOneBit(Math.max(2, maxKeys) * 2 - 1) << 1;
+        this.index = ByteBuffer.allocateDirect(slots * Long.BYTES);
+        this.mask = slots - 1;
+
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        this.lockChannel = FileChannel.open(path.resolveSibling(path.getFileName() + ".lock"),
+            StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        this.fileLock = tryLock(lockChannel, path);
+        try {
+            this.buffer = map(path);
+            int previous = readHeader();
+            if (previous == 0) {
+                //New or unreadable file, records left from an earlier run must not follow the new ones
+                try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+                    channel.truncate(0);
+                }
+                this.buffer = map(path);
+            }
+            this.generation = previous + 1;
+            writeHeader(buffer, generation);
+            rebuild(previous);
+        } catch (IOException | RuntimeException e) {
+            close();
+            throw e;
+        }
+    }
+
+    /**
+     * Last value stored for a key.
+     *
+     * @param key key
+     * @return value, if any
+     */
+    public Optional<String> get(String key) {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        lock.readLock().lock();
+        try {
+            long entry = index.getLong(findSlot(keyBytes, hash(keyBytes)) * Long.BYTES);
+            if (entry == 0) {
+                return Optional.empty();
+            }
+            int position = (int) entry;
+            int valueOffset = position + RECORD_HEADER_SIZE + keyBytes.length;
+            byte[] value = new byte[position + buffer.getInt(position) - valueOffset];
+            buffer.duplicate().position(valueOffset).get(value);
+            return Optional.of(new String(value, StandardCharsets.UTF_8));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Append a value, nothing is written when it did not change.
+     *
+     * @param key key, at most 64 KB once encoded
+     * @param value value
+     * @return false when the log or the index is full, see {@link #compact(double)}
+     */
+    public boolean put(String key, String value) {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        byte[] valueBytes = value.getBytes(StandardCharsets.UTF_8);
+        if (keyBytes.length > MAX_KEY_LENGTH) {
+            throw new IllegalArgumentException("Snapshot key too long: " + keyBytes.length + " bytes");
+        }
+        long length = (long) RECORD_HEADER_SIZE + keyBytes.length + valueBytes.length;
+        int hash = hash(keyBytes);
+
+        lock.writeLock().lock();
+        try {
+            int slot = findSlot(keyBytes, hash);
+            long entry = index.getLong(slot * Long.BYTES);
+            if (entry != 0 && valueEquals((int) entry, keyBytes.length, valueBytes)) {
+                return true;
+            }
+            if (end + length > capacity || (entry == 0 && keys >= maxKeys)) {
+                return false;
+            }
+
+            int position = end;
+            buffer.putInt(position, (int) length);
+            buffer.putInt(position + 8, generation);
+            buffer.putShort(position + 12, (short) keyBytes.length);
+            ByteBuffer record = buffer.duplicate();
+            record.position(position + RECORD_HEADER_SIZE);
+            record.put(keyBytes).put(valueBytes);
+            buffer.putInt(position + 4, crc(buffer, position + 8, (int) length - 8));
+
+            index.putLong(slot * Long.BYTES, entry(hash, position));
+            if (entry == 0) {
+                keys++;
+            } else {
+                liveBytes -= buffer.getInt((int) entry);
+            }
+            liveBytes += length;
+            end += (int) length;
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Rewrite the live records into a new file swapped in atomically. Only the most recently written ones
+     * are kept within the given ratio of the capacity and of the maximum keys, older keys are dropped.
+     *
+     * @param retainRatio share of the capacity and of the keys kept at most
+     * @throws IOException when the new file cannot be written, the current one is then kept
+     */
+    public void compact(double retainRatio) throws IOException {
+        lock.writeLock().lock();
+        try {
+            int[] positions = new int[keys];
+            int live = 0;
+            for (int slot = 0; slot <= mask; slot++) {
+                long entry = index.getLong(slot * Long.BYTES);
+                if (entry != 0) {
+                    positions[live++] = (int) entry;
+                }
+            }
+            Arrays.sort(positions, 0, live);
+
+            long byteBudget = (long) ((capacity - FILE_HEADER_SIZE) * retainRatio);
+            int keyBudget = (int) (maxKeys * retainRatio);
+            int first = live;
+            long retained = 0;
+            while (first > 0 && live - first < keyBudget) {
+                int length = buffer.getInt(positions[first - 1]);
+                if (retained + length > byteBudget) {
+                    break;
+                }
+                retained += length;
+                first--;
+            }
+
+            Path compacted = path.resolveSibling(path.getFileName() + ".compact");
+            Files.deleteIfExists(compacted);
+            MappedByteBuffer target = map(compacted);
+            writeHeader(target, generation);
+            ByteBuffer writer = target.duplicate();
+            writer.position(FILE_HEADER_SIZE);
+            for (int i = first; i < live; i++) {
+                //Copied as is, the CRC and the non decreasing generations still hold
+                ByteBuffer record = buffer.duplicate();
+                record.limit(positions[i] + buffer.getInt(positions[i])).position(positions[i]);
+                writer.put(record);
+            }
+            target.force();
+            Files.move(compacted, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            buffer = target;
+            rebuild(generation);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Write the dirty mapped pages to disk, so they survive a power loss too.
+     */
+    public void force() {
+        MappedByteBuffer current;
+        lock.readLock().lock();
+        try {
+            current = buffer;
+        } finally {
+            lock.readLock().unlock();
+        }
+        current.force();
+    }
+
+    public int size() {
+        return keys;
+    }
+
+    public int getUsedBytes() {
+        return end;
+    }
+
+    public long getLiveBytes() {
+        return liveBytes;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    @Override
+    public void close() throws IOException {
+        //The mapping itself is released with the buffer, Java 11 has no unmap
+        if (fileLock != null && fileLock.isValid()) {
+            fileLock.release();
+        }
+        lockChannel.close();
+    }
+
+    //Scan the records up to the first invalid one, generations never going backwards nor above the header one
+    private void rebuild(int maxGeneration) {
+        for (int slot = 0; slot <= mask; slot++) {
+            index.putLong(slot * Long.BYTES, 0);
+        }
+        keys = 0;
+        liveBytes = 0;
+
+        int position = FILE_HEADER_SIZE;
+        int minGeneration = 1;
+        while (maxGeneration > 0) {
+            int length = validRecordLength(position, minGeneration, maxGeneration);
+            if (length < 0) {
+                break;
+            }
+            minGeneration = buffer.getInt(position + 8);
+
+            byte[] key = new byte[Short.toUnsignedInt(buffer.getShort(position + 12))];
+            buffer.duplicate().position(position + RECORD_HEADER_SIZE).get(key);
+            int hash = hash(key);
+            int slot = findSlot(key, hash);
+            long entry = index.getLong(slot * Long.BYTES);
+            if (entry != 0) {
+                liveBytes -= buffer.getInt((int) entry);
+            } else if (keys < maxKeys) {
+                keys++;
+            } else {
+                position += length;
+                continue;
+            }
+            index.putLong(slot * Long.BYTES, entry(hash, position));
+            liveBytes += length;
+            position += length;
+        }
+        end = position;
+    }
+
+    private int validRecordLength(int position, int minGeneration, int maxGeneration) {
+        if (position > capacity - RECORD_HEADER_SIZE) {
+            return -1;
+        }
+        int length = buffer.getInt(position);
+        if (length < RECORD_HEADER_SIZE || length > capacity - position) {
+            return -1;
+        }
+        int recordGeneration = buffer.getInt(position + 8);
+        if (recordGeneration < minGeneration || recordGeneration > maxGeneration) {
+            return -1;
+        }
+        if (RECORD_HEADER_SIZE + Short.toUnsignedInt(buffer.getShort(position + 12)) > length) {
+            return -1;
+        }
+        return buffer.getInt(position + 4) == crc(buffer, position + 8, length - 8) ? length : -1;
+    }
+
+    private int findSlot(byte[] key, int hash) {
+        int slot = hash & mask;
+        while (true) {
+            long entry = index.getLong(slot * Long.BYTES);
+            if (entry == 0 || ((int) (entry >>> 32) == hash && keyEquals((int) entry, key))) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    private boolean keyEquals(int position, byte[] key) {
+        if (Short.toUnsignedInt(buffer.getShort(position + 12)) != key.length) {
+            return false;
+        }
+        for (int i = 0; i < key.length; i++) {
+            if (buffer.get(position + RECORD_HEADER_SIZE + i) != key[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean valueEquals(int position, int keyLength, byte[] value) {
+        int valueOffset = position + RECORD_HEADER_SIZE + keyLength;
+        if (buffer.getInt(position) - RECORD_HEADER_SIZE - keyLength != value.length) {
+            return false;
+        }
+        for (int i = 0; i < value.length; i++) {
+            if (buffer.get(valueOffset + i) != value[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int readHeader() {
+        boolean valid = buffer.getInt(0) == MAGIC
+            && buffer.getInt(4) == VERSION
+            && buffer.getInt(12) == crc(buffer, 0, 12);
+        return valid ? buffer.getInt(8) : 0;
+    }
+
+    private MappedByteBuffer map(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+        }
+    }
+
+    private static void writeHeader(ByteBuffer target, int generation) {
+        target.putInt(0, MAGIC);
+        target.putInt(4, VERSION);
+        target.putInt(8, generation);
+        target.putInt(12, crc(target, 0, 12));
+    }
+
+    private static FileLock tryLock(FileChannel channel, Path path) throws IOException {
+        FileLock fileLock;
+        try {
+            fileLock = channel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            fileLock = null;
+        }
+        if (fileLock == null) {
+            channel.close();
+            throw new IOException("Snapshot file already in use: " + path);
+        }
+        return fileLock;
+    }
+
+    private static int crc(ByteBuffer source, int offset, int length) {
+        ByteBuffer slice = source.duplicate();
+        slice.position(offset).limit(offset + length);
+        CRC32C crc = new CRC32C();
+        crc.update(slice);
+        return (int) crc.getValue();
+    }
+
+    private static long entry(int hash, int position) {
+        return ((long) hash << 32) | (position & 0xFFFFFFFFL);
+    }
+
+    private static int hash(byte[] key) {
+        int hash = Arrays.hashCode(key) * 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+
+}
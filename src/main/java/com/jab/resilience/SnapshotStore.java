@@ -0,0 +1,175 @@
+package com.jab.resilience;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.Disposables;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.ToIntFunction;
+
+/**
+ * Last good upstream response per URL persisted in a {@link SnapshotLog}, so the circuit breaker fallback
+ * still has real data right after a restart.
+ *
+ * <p>The file is opened and its index rebuilt in the background, startup does not wait for it: until then the
+ * store is empty and writes are dropped. When the file is full it is compacted in the background as well,
+ * dropping the writes meanwhile; a later good response writes them again.
+ */
+@Slf4j
+@Component
+public class SnapshotStore {
+
+    private static final String METRIC_PREFIX = "resilience.snapshot.";
+
+    private final SnapshotStoreProperties properties;
+    private final AtomicBoolean compacting = new AtomicBoolean();
+    private final Disposable.Composite tasks = Disposables.composite();
+    private volatile SnapshotLog log;
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter stored;
+    private final Counter dropped;
+
+    /**
+     * Store opening its file in the background when enabled, with metrics bound to the registry.
+     */
+    public SnapshotStore(SnapshotStoreProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.hits = meterRegistry.counter(METRIC_PREFIX + "requests", "result", "hit");
+        this.misses = meterRegistry.counter(METRIC_PREFIX + "requests", "result", "miss");
+        this.stored = meterRegistry.counter(METRIC_PREFIX + "writes", "result", "stored");
+        this.dropped = meterRegistry.counter(METRIC_PREFIX + "writes", "result", "dropped");
+        Gauge.builder(METRIC_PREFIX + "keys", this, store -> store.measure(SnapshotLog::size))
+            .register(meterRegistry);
+        Gauge.builder(METRIC_PREFIX + "used", this, store -> store.measure(SnapshotLog::getUsedBytes))
+            .baseUnit("bytes")
+            .register(meterRegistry);
+
+        if (properties.isEnabled()) {
+            //Not cancelled on close, opened() releases a file opened too late
+            Mono.fromCallable(this::open)
+                .subscribeOn(Schedulers.boundedElastic())
+                .subscribe(this::opened, ex -> LOGGER.warn("Snapshot store disabled, {} cannot be opened",
+                    properties.getPath(), ex));
+        }
+    }
+
+    /**
+     * Last good response stored for a URL.
+     *
+     * @param key upstream address
+     * @return last known good response, if any
+     */
+    public Optional<String> get(String key) {
+        SnapshotLog current = log;
+        if (current == null || compacting.get()) {
+            return Optional.empty();
+        }
+
+        Optional<String> value = current.get(key);
+        (value.isPresent() ? hits : misses).increment();
+        return value;
+    }
+
+    /**
+     * Store a good upstream response, compacting the file in the background once full.
+     *
+     * @param key upstream address
+     * @param value upstream response
+     */
+    public void put(String key, String value) {
+        SnapshotLog current = log;
+        if (current == null || compacting.get()) {
+            dropped.increment();
+            return;
+        }
+
+        if (current.put(key, value)) {
+            stored.increment();
+        } else {
+            dropped.increment();
+            compact(current);
+        }
+    }
+
+    public boolean isReady() {
+        return log != null;
+    }
+
+    /**
+     * Flushes and unmaps the file, the store answers nothing afterwards.
+     *
+     * @throws IOException if the file cannot be closed
+     */
+    @PreDestroy
+    public synchronized void close() throws IOException {
+        tasks.dispose();
+        SnapshotLog current = log;
+        log = null;
+        if (current != null) {
+            current.force();
+            current.close();
+        }
+    }
+
+    private double measure(ToIntFunction<SnapshotLog> metric) {
+        SnapshotLog current = log;
+        return current != null ? metric.applyAsInt(current) : 0;
+    }
+
+    private SnapshotLog open() throws IOException {
+        long start = System.nanoTime();
+        SnapshotLog opened = new SnapshotLog(Paths.get(properties.getPath()),
+            Math.toIntExact(properties.getMaxSize().toBytes()), properties.getMaxKeys());
+        LOGGER.info("Snapshot store {} recovered {} keys in {} ms", properties.getPath(), opened.size(),
+            (System.nanoTime() - start) / 1_000_000);
+        return opened;
+    }
+
+    private synchronized void opened(SnapshotLog opened) {
+        if (tasks.isDisposed()) {
+            try {
+                opened.close();
+            } catch (IOException e) {
+                LOGGER.warn("Snapshot store {} not released", properties.getPath(), e);
+            }
+            return;
+        }
+        log = opened;
+        if (!properties.getSyncInterval().isZero()) {
+            Duration syncInterval = properties.getSyncInterval();
+            tasks.add(Flux.interval(syncInterval, syncInterval, Schedulers.boundedElastic())
+                .subscribe(tick -> opened.force()));
+        }
+    }
+
+    private void compact(SnapshotLog current) {
+        if (compacting.compareAndSet(false, true)) {
+            Mono.fromRunnable(() -> {
+                try {
+                    current.compact(properties.getCompactionRetainRatio());
+                } catch (IOException e) {
+                    LOGGER.warn("Snapshot compaction failed, {} kept as is", properties.getPath(), e);
+                }
+            })
+                .subscribeOn(Schedulers.boundedElastic())
+                .doFinally(signal -> compacting.set(false))
+                .subscribe(done -> { }, ex -> LOGGER.warn("Snapshot compaction failed", ex),
+                    () -> LOGGER.info("Snapshot store {} compacted to {} keys", properties.getPath(), current.size()));
+        }
+    }
+
+}
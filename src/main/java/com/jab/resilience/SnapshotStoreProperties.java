@@ -0,0 +1,40 @@
+package com.jab.resilience;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "resilience.snapshot")
+public class SnapshotStoreProperties {
+
+    private boolean enabled = false;
+
+    /**
+     * Memory-mapped snapshot file, one instance per file
+     */
+    private String path = "snapshots/last-good.snap";
+
+    /**
+     * Size of the file, mapped off-heap. Bounded to 2 GB
+     */
+    private DataSize maxSize = DataSize.ofMegabytes(64);
+
+    /**
+     * Keys indexed at most, 16 bytes of direct memory each
+     */
+    private int maxKeys = 100_000;
+
+    /**
+     * Share of max-size and max-keys kept by a compaction, the most recently written keys first
+     */
+    private double compactionRetainRatio = 0.75;
+
+    /**
+     * Interval the mapped pages are forced to disk at, 0 leaves it to the OS
+     */
+    private Duration syncInterval = Duration.ofSeconds(5);
+
+}
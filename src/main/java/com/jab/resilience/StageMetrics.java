@@ -0,0 +1,207 @@
+package com.jab.resilience;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.util.context.Context;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Latency of every pipeline stage per upstream, as resilience.stage timers with HdrHistogram backed
+ * percentile histograms. An attempt travels in the Reactor Context so the Reactor Netty request and
+ * response hooks can stamp it, nothing is logged on the hot path but the sampled spans.
+ */
+@Component
+public class StageMetrics {
+
+    private static final Logger SPANS = LoggerFactory.getLogger("com.jab.resilience.spans");
+    private static final Stage[] STAGES = Stage.values();
+
+    private final InstrumentationProperties properties;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Timer[]> timers = new ConcurrentHashMap<>();
+
+    public StageMetrics(InstrumentationProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+    }
+
+    public enum Stage {
+
+        /**
+         * Subscription to request written: pool acquire, connect when needed, request encoding
+         */
+        ACQUIRE,
+
+        /**
+         * Request written to response headers received
+         */
+        UPSTREAM,
+
+        /**
+         * Response headers to first element decoded
+         */
+        DECODE,
+
+        /**
+         * Protected section: attempts, hedges and retries inside the circuit breaker
+         */
+        BREAKER,
+
+        FALLBACK
+
+    }
+
+    /**
+     * Time one upstream attempt, stage by stage.
+     *
+     * @param key upstream key
+     * @param call the attempt, its first element ends the decode stage
+     * @param <T> response type
+     * @return instrumented attempt
+     */
+    public <T> Mono<T> attempt(String key, Supplier<Mono<T>> call) {
+        if (!properties.isEnabled()) {
+            return Mono.defer(call);
+        }
+        return Mono.defer(() -> {
+            Attempt attempt = new Attempt(key, timers(key), isSampled());
+            return call.get()
+                .doOnNext(value -> attempt.decoded())
+                .subscriberContext(Context.of(Attempt.class, attempt));
+        });
+    }
+
+    /**
+     * Time a whole stage from subscription to termination or cancellation.
+     *
+     * @param key upstream key
+     * @param stage stage
+     * @param <T> response type
+     * @return operator for transform
+     */
+    public <T> Function<Mono<T>, Mono<T>> timed(String key, Stage stage) {
+        if (!properties.isEnabled()) {
+            return Function.identity();
+        }
+        //Recorded before the outcome is propagated, a caller seeing the result sees the stage timed
+        return mono -> Mono.defer(() -> {
+            Timer timer = timers(key)[stage.ordinal()];
+            long start = System.nanoTime();
+            Runnable record = () -> timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            return mono
+                .doOnSuccess(value -> record.run())
+                .doOnError(error -> record.run())
+                .doOnCancel(record);
+        });
+    }
+
+    /**
+     * Unregister the stage timers of an upstream, once it is evicted. A later call registers them again.
+     *
+     * @param key upstream key
+     */
+    public void remove(String key) {
+        Timer[] stageTimers = timers.remove(key);
+        if (stageTimers != null) {
+            for (Timer timer : stageTimers) {
+                meterRegistry.remove(timer);
+            }
+        }
+    }
+
+    private boolean isSampled() {
+        double rate = properties.getTraceSampleRate();
+        return rate > 0 && ThreadLocalRandom.current().nextDouble() < rate;
+    }
+
+    private Timer[] timers(String key) {
+        return timers.computeIfAbsent(key, this::register);
+    }
+
+    private Timer[] register(String key) {
+        Timer[] stageTimers = new Timer[STAGES.length];
+        for (Stage stage : STAGES) {
+            stageTimers[stage.ordinal()] = Timer.builder("resilience.stage")
+                .tag("stage", stage.name().toLowerCase())
+                .tag("upstream", key)
+                .publishPercentileHistogram(properties.isPercentileHistogram())
+                .minimumExpectedValue(Duration.ofMillis(1))
+                .maximumExpectedValue(Duration.ofSeconds(10))
+                .register(meterRegistry);
+        }
+        return stageTimers;
+    }
+
+    /**
+     * Stage timestamps of one upstream attempt, written by the Reactor Netty hooks.
+     */
+    public static final class Attempt {
+
+        private final String key;
+        private final Timer[] timers;
+        private final boolean sampled;
+        private final long startedAt = System.nanoTime();
+        private volatile long requestSentAt;
+        private volatile long responseAt;
+
+        private Attempt(String key, Timer[] timers, boolean sampled) {
+            this.key = key;
+            this.timers = timers;
+            this.sampled = sampled;
+        }
+
+        /**
+         * Attempt carried by a Reactor Context, if the call is instrumented.
+         *
+         * @param context subscriber context
+         * @return Attempt
+         */
+        public static Optional<Attempt> from(Context context) {
+            return context.getOrEmpty(Attempt.class);
+        }
+
+        public void requestSent() {
+            requestSentAt = System.nanoTime();
+            timers[Stage.ACQUIRE.ordinal()].record(requestSentAt - startedAt, TimeUnit.NANOSECONDS);
+        }
+
+        /**
+         * Response headers received, ends the upstream stage.
+         */
+        public void responseReceived() {
+            responseAt = System.nanoTime();
+            if (requestSentAt != 0) {
+                timers[Stage.UPSTREAM.ordinal()].record(responseAt - requestSentAt, TimeUnit.NANOSECONDS);
+            }
+        }
+
+        private void decoded() {
+            long decodedAt = System.nanoTime();
+            if (responseAt != 0) {
+                timers[Stage.DECODE.ordinal()].record(decodedAt - responseAt, TimeUnit.NANOSECONDS);
+            }
+            if (sampled) {
+                SPANS.info("upstream={} total={}us acquire={}us upstream={}us decode={}us", key,
+                    micros(decodedAt - startedAt), micros(requestSentAt - startedAt),
+                    micros(responseAt - requestSentAt), micros(decodedAt - responseAt));
+            }
+        }
+
+        private static long micros(long nanos) {
+            return TimeUnit.NANOSECONDS.toMicros(nanos);
+        }
+    }
+
+}
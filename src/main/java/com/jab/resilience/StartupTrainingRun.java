@@ -0,0 +1,25 @@
+package com.jab.resilience;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * Stops the application as soon as it is ready when started with -Dstartup.training-run=true.
+ * The appcds build profile uses it to record the classes loaded on startup.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty("startup.training-run")
+public class StartupTrainingRun implements ApplicationListener<ApplicationReadyEvent> {
+
+    @Override
+    public void onApplicationEvent(ApplicationReadyEvent event) {
+        LOGGER.info("Training run finished, exiting");
+        System.exit(SpringApplication.exit(event.getApplicationContext()));
+    }
+
+}
@@ -0,0 +1,157 @@
+package com.jab.resilience;
+
+import lombok.Value;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.LongSupplier;
+
+/**
+ * Lock-free time-based sliding window counting calls, failures and slow calls.
+ *
+ * <p>The window is split in buckets and every bucket in stripes, a thread always adds to its own stripe
+ * in a single primitive array, so recording is a couple of uncontended atomic adds and allocates nothing.
+ * Stripes are padded to a cache line to avoid false sharing. Reads sum the live buckets over all stripes.
+ * A few calls recorded at the very moment a bucket is recycled can be lost: this is a statistic for
+ * breaker decisions, not a ledger.
+ */
+public class StripedSlidingWindow {
+
+    private static final int CALLS = 0;
+    private static final int FAILURES = 1;
+    private static final int SLOW_CALLS = 2;
+    //8 longs, one cache line per stripe
+    private static final int PADDING = 8;
+
+    private final int buckets;
+    private final int stripes;
+    private final long bucketNanos;
+    private final LongSupplier nanoClock;
+    private final AtomicLongArray cells;
+    private final AtomicLongArray bucketEpochs;
+
+    /**
+     * Window over {@code size}, split in {@code buckets}.
+     *
+     * @param size time covered by the window
+     * @param buckets number of buckets, the window slides one bucket at a time
+     * @param stripes number of stripes, rounded up to a power of two, 0 to use the available processors
+     * @param nanoClock monotonic clock, System::nanoTime
+     */
+    public StripedSlidingWindow(Duration size, int buckets, int stripes, LongSupplier nanoClock) {
+        this.buckets = buckets;
+        this.stripes = powerOfTwo(stripes > 0 ? stripes : Runtime.getRuntime().availableProcessors());
+        this.bucketNanos = Math.max(1, size.toNanos() / buckets);
+        this.nanoClock = nanoClock;
+        this.cells = new AtomicLongArray(buckets * this.stripes * PADDING);
+        this.bucketEpochs = new AtomicLongArray(buckets);
+        long epoch = Math.floorDiv(nanoClock.getAsLong(), bucketNanos);
+        for (int bucket = 0; bucket < buckets; bucket++) {
+            bucketEpochs.set(bucket, epoch - buckets);
+        }
+    }
+
+    /**
+     * Record one call outcome.
+     *
+     * @param failure the call failed
+     * @param slow the call was slower than the slow call threshold
+     */
+    public void record(boolean failure, boolean slow) {
+        int base = cell(currentBucket(), stripe());
+        cells.getAndIncrement(base + CALLS);
+        if (failure) {
+            cells.getAndIncrement(base + FAILURES);
+        }
+        if (slow) {
+            cells.getAndIncrement(base + SLOW_CALLS);
+        }
+    }
+
+    /**
+     * Totals over the buckets still in the window.
+     *
+     * @return calls, failures and slow calls
+     */
+    public Snapshot snapshot() {
+        long epoch = Math.floorDiv(nanoClock.getAsLong(), bucketNanos);
+        long calls = 0;
+        long failures = 0;
+        long slowCalls = 0;
+        for (int bucket = 0; bucket < buckets; bucket++) {
+            long bucketEpoch = bucketEpochs.get(bucket);
+            if (bucketEpoch > epoch - buckets && bucketEpoch <= epoch) {
+                for (int stripe = 0; stripe < stripes; stripe++) {
+                    int base = cell(bucket, stripe);
+                    calls += cells.get(base + CALLS);
+                    failures += cells.get(base + FAILURES);
+                    slowCalls += cells.get(base + SLOW_CALLS);
+                }
+            }
+        }
+        return new Snapshot(calls, failures, slowCalls);
+    }
+
+    /**
+     * Forgets every call recorded so far.
+     */
+    public void reset() {
+        for (int bucket = 0; bucket < buckets; bucket++) {
+            clear(bucket);
+        }
+    }
+
+    int getStripes() {
+        return stripes;
+    }
+
+    private int currentBucket() {
+        long epoch = Math.floorDiv(nanoClock.getAsLong(), bucketNanos);
+        int bucket = (int) Math.floorMod(epoch, (long) buckets);
+        long bucketEpoch = bucketEpochs.get(bucket);
+        //The first thread entering a new period recycles the bucket, late threads add to it anyway
+        if (bucketEpoch < epoch && bucketEpochs.compareAndSet(bucket, bucketEpoch, epoch)) {
+            clear(bucket);
+        }
+        return bucket;
+    }
+
+    private void clear(int bucket) {
+        for (int stripe = 0; stripe < stripes; stripe++) {
+            int base = cell(bucket, stripe);
+            cells.set(base + CALLS, 0);
+            cells.set(base + FAILURES, 0);
+            cells.set(base + SLOW_CALLS, 0);
+        }
+    }
+
+    private int cell(int bucket, int stripe) {
+        return (bucket * stripes + stripe) * PADDING;
+    }
+
+    private int stripe() {
+        long id = Thread.currentThread().getId();
+        return (int) ((id * 0x9E3779B97F4A7C15L) >>> 40) & (stripes - 1);
+    }
+
+    private static int powerOfTwo(int value) {
+        return value <= 1 ? 1 : Integer.highestOneBit(value - 1) << 1;
+    }
+
+    @Value
+    public static class Snapshot {
+
+        long calls;
+        long failures;
+        long slowCalls;
+
+        public float getFailureRate() {
+            return calls == 0 ? 0 : failures * 100f / calls;
+        }
+
+        public float getSlowCallRate() {
+            return calls == 0 ? 0 : slowCalls * 100f / calls;
+        }
+    }
+
+}
@@ -0,0 +1,366 @@
+package com.jab.resilience;
+
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.circuitbreaker.IllegalStateTransitionException;
+import io.github.resilience4j.circuitbreaker.event.CircuitBreakerEvent;
+import io.github.resilience4j.circuitbreaker.event.CircuitBreakerOnCallNotPermittedEvent;
+import io.github.resilience4j.circuitbreaker.event.CircuitBreakerOnErrorEvent;
+import io.github.resilience4j.circuitbreaker.event.CircuitBreakerOnFailureRateExceededEvent;
+import io.github.resilience4j.circuitbreaker.event.CircuitBreakerOnIgnoredErrorEvent;
+import io.github.resilience4j.circuitbreaker.event.CircuitBreakerOnResetEvent;
+import io.github.resilience4j.circuitbreaker.event.CircuitBreakerOnSlowCallRateExceededEvent;
+import io.github.resilience4j.circuitbreaker.event.CircuitBreakerOnStateTransitionEvent;
+import io.github.resilience4j.circuitbreaker.event.CircuitBreakerOnSuccessEvent;
+import io.github.resilience4j.circuitbreaker.internal.CircuitBreakerStateMachine;
+import io.github.resilience4j.core.EventConsumer;
+import io.github.resilience4j.core.EventProcessor;
+import io.vavr.collection.Map;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Resilience4j circuit breaker whose CLOSED state is evaluated on a {@link StripedSlidingWindow}.
+ *
+ * <p>The Resilience4j state machine keeps OPEN, HALF_OPEN and the forced states, events and health,
+ * but closed calls never reach its synchronized sliding window. When the striped window crosses the
+ * failure or slow call rate threshold of the config, the delegate is moved to OPEN.
+ *
+ * <p>Closed calls are still published as success, error and ignored error events, next to the events
+ * of the delegate, so the call metrics and event consumers see every call whatever the state.
+ */
+public class StripedWindowCircuitBreaker implements CircuitBreaker {
+
+    private final CircuitBreaker delegate;
+    private final CircuitBreakerConfig config;
+    private final StripedSlidingWindow window;
+    private final long slowCallNanos;
+    private final int minimumNumberOfCalls;
+    private final Metrics closedMetrics = new WindowMetrics();
+    private final StripedEventProcessor eventProcessor = new StripedEventProcessor();
+
+    /**
+     * Breaker named {@code name} with the thresholds of {@code config}.
+     *
+     * @param name breaker name
+     * @param config thresholds and state machine settings
+     * @param tags breaker tags
+     * @param properties window shape
+     * @param nanoClock monotonic clock of the window
+     */
+    public StripedWindowCircuitBreaker(
+            String name,
+            CircuitBreakerConfig config,
+            Map<String, String> tags,
+            SlidingWindowProperties properties,
+            LongSupplier nanoClock) {
+        this(CircuitBreaker.of(name, config, tags), config, properties, nanoClock);
+    }
+
+    /**
+     * Breaker named {@code name} whose OPEN state wait duration is measured on {@code clock}.
+     *
+     * @param name breaker name
+     * @param config thresholds and state machine settings
+     * @param tags breaker tags
+     * @param properties window shape
+     * @param nanoClock monotonic clock of the window
+     * @param clock clock of the state machine
+     */
+    public StripedWindowCircuitBreaker(
+            String name,
+            CircuitBreakerConfig config,
+            Map<String, String> tags,
+            SlidingWindowProperties properties,
+            LongSupplier nanoClock,
+            Clock clock) {
+        this(new CircuitBreakerStateMachine(name, config, clock, tags), config, properties, nanoClock);
+    }
+
+    private StripedWindowCircuitBreaker(
+            CircuitBreaker delegate,
+            CircuitBreakerConfig config,
+            SlidingWindowProperties properties,
+            LongSupplier nanoClock) {
+        this.delegate = delegate;
+        this.config = config;
+        this.window = new StripedSlidingWindow(
+            properties.getSize(), properties.getBuckets(), properties.getStripes(), nanoClock);
+        this.slowCallNanos = config.getSlowCallDurationThreshold().toNanos();
+        this.minimumNumberOfCalls = config.getMinimumNumberOfCalls();
+        delegate.getEventPublisher().onEvent(eventProcessor);
+    }
+
+    @Override
+    public boolean tryAcquirePermission() {
+        return delegate.tryAcquirePermission();
+    }
+
+    @Override
+    public void releasePermission() {
+        delegate.releasePermission();
+    }
+
+    @Override
+    public void acquirePermission() {
+        delegate.acquirePermission();
+    }
+
+    @Override
+    public void onError(long duration, TimeUnit durationUnit, Throwable throwable) {
+        if (delegate.getState() != State.CLOSED) {
+            delegate.onError(duration, durationUnit, throwable);
+            return;
+        }
+        long nanos = durationUnit.toNanos(duration);
+        if (config.getIgnoreExceptionPredicate().test(throwable)) {
+            if (eventProcessor.hasConsumers()) {
+                eventProcessor.processEvent(
+                    new CircuitBreakerOnIgnoredErrorEvent(getName(), Duration.ofNanos(nanos), throwable));
+            }
+            return;
+        }
+        boolean failure = config.getRecordExceptionPredicate().test(throwable);
+        boolean slow = nanos >= slowCallNanos;
+        window.record(failure, slow);
+        if (eventProcessor.hasConsumers()) {
+            //Not recorded exceptions count as successful calls, as in the delegate
+            eventProcessor.processEvent(failure
+                ? new CircuitBreakerOnErrorEvent(getName(), Duration.ofNanos(nanos), throwable)
+                : new CircuitBreakerOnSuccessEvent(getName(), Duration.ofNanos(nanos)));
+        }
+        if (failure || slow) {
+            evaluate();
+        }
+    }
+
+    @Override
+    public void onSuccess(long duration, TimeUnit durationUnit) {
+        if (delegate.getState() != State.CLOSED) {
+            delegate.onSuccess(duration, durationUnit);
+            return;
+        }
+        long nanos = durationUnit.toNanos(duration);
+        boolean slow = nanos >= slowCallNanos;
+        window.record(false, slow);
+        if (eventProcessor.hasConsumers()) {
+            eventProcessor.processEvent(new CircuitBreakerOnSuccessEvent(getName(), Duration.ofNanos(nanos)));
+        }
+        if (slow) {
+            evaluate();
+        }
+    }
+
+    //Rates only grow with failures and slow calls, so successful fast calls never read the window
+    private void evaluate() {
+        StripedSlidingWindow.Snapshot snapshot = window.snapshot();
+        if (snapshot.getCalls() < minimumNumberOfCalls) {
+            return;
+        }
+        boolean failureRateExceeded = snapshot.getFailureRate() >= config.getFailureRateThreshold();
+        if (failureRateExceeded || snapshot.getSlowCallRate() >= config.getSlowCallRateThreshold()) {
+            try {
+                if (delegate.getState() == State.CLOSED) {
+                    publishRateExceeded(failureRateExceeded, snapshot);
+                    delegate.transitionToOpenState();
+                    window.reset();
+                }
+            } catch (IllegalStateTransitionException ex) {
+                //Another caller already moved the breaker
+            }
+        }
+    }
+
+    private void publishRateExceeded(boolean failureRateExceeded, StripedSlidingWindow.Snapshot snapshot) {
+        if (eventProcessor.hasConsumers()) {
+            eventProcessor.processEvent(failureRateExceeded
+                ? new CircuitBreakerOnFailureRateExceededEvent(getName(), snapshot.getFailureRate())
+                : new CircuitBreakerOnSlowCallRateExceededEvent(getName(), snapshot.getSlowCallRate()));
+        }
+    }
+
+    @Override
+    public void reset() {
+        window.reset();
+        delegate.reset();
+    }
+
+    @Override
+    public void transitionToClosedState() {
+        window.reset();
+        delegate.transitionToClosedState();
+    }
+
+    @Override
+    public void transitionToOpenState() {
+        delegate.transitionToOpenState();
+    }
+
+    @Override
+    public void transitionToHalfOpenState() {
+        delegate.transitionToHalfOpenState();
+    }
+
+    @Override
+    public void transitionToDisabledState() {
+        delegate.transitionToDisabledState();
+    }
+
+    @Override
+    public void transitionToMetricsOnlyState() {
+        delegate.transitionToMetricsOnlyState();
+    }
+
+    @Override
+    public void transitionToForcedOpenState() {
+        delegate.transitionToForcedOpenState();
+    }
+
+    @Override
+    public String getName() {
+        return delegate.getName();
+    }
+
+    @Override
+    public State getState() {
+        return delegate.getState();
+    }
+
+    @Override
+    public CircuitBreakerConfig getCircuitBreakerConfig() {
+        return config;
+    }
+
+    @Override
+    public Metrics getMetrics() {
+        return delegate.getState() == State.CLOSED ? closedMetrics : delegate.getMetrics();
+    }
+
+    @Override
+    public Map<String, String> getTags() {
+        return delegate.getTags();
+    }
+
+    @Override
+    public EventPublisher getEventPublisher() {
+        return eventProcessor;
+    }
+
+    /**
+     * Events of the closed calls recorded in the striped window, followed by the events of the delegate.
+     */
+    private static class StripedEventProcessor extends EventProcessor<CircuitBreakerEvent>
+            implements EventConsumer<CircuitBreakerEvent>, EventPublisher {
+
+        @Override
+        public void consumeEvent(CircuitBreakerEvent event) {
+            processEvent(event);
+        }
+
+        @Override
+        public EventPublisher onSuccess(EventConsumer<CircuitBreakerOnSuccessEvent> consumer) {
+            registerConsumer(CircuitBreakerOnSuccessEvent.class.getSimpleName(), consumer);
+            return this;
+        }
+
+        @Override
+        public EventPublisher onError(EventConsumer<CircuitBreakerOnErrorEvent> consumer) {
+            registerConsumer(CircuitBreakerOnErrorEvent.class.getSimpleName(), consumer);
+            return this;
+        }
+
+        @Override
+        public EventPublisher onStateTransition(EventConsumer<CircuitBreakerOnStateTransitionEvent> consumer) {
+            registerConsumer(CircuitBreakerOnStateTransitionEvent.class.getSimpleName(), consumer);
+            return this;
+        }
+
+        @Override
+        public EventPublisher onReset(EventConsumer<CircuitBreakerOnResetEvent> consumer) {
+            registerConsumer(CircuitBreakerOnResetEvent.class.getSimpleName(), consumer);
+            return this;
+        }
+
+        @Override
+        public EventPublisher onIgnoredError(EventConsumer<CircuitBreakerOnIgnoredErrorEvent> consumer) {
+            registerConsumer(CircuitBreakerOnIgnoredErrorEvent.class.getSimpleName(), consumer);
+            return this;
+        }
+
+        @Override
+        public EventPublisher onCallNotPermitted(EventConsumer<CircuitBreakerOnCallNotPermittedEvent> consumer) {
+            registerConsumer(CircuitBreakerOnCallNotPermittedEvent.class.getSimpleName(), consumer);
+            return this;
+        }
+
+        @Override
+        public EventPublisher onFailureRateExceeded(
+                EventConsumer<CircuitBreakerOnFailureRateExceededEvent> consumer) {
+            registerConsumer(CircuitBreakerOnFailureRateExceededEvent.class.getSimpleName(), consumer);
+            return this;
+        }
+
+        @Override
+        public EventPublisher onSlowCallRateExceeded(
+                EventConsumer<CircuitBreakerOnSlowCallRateExceededEvent> consumer) {
+            registerConsumer(CircuitBreakerOnSlowCallRateExceededEvent.class.getSimpleName(), consumer);
+            return this;
+        }
+    }
+
+    private class WindowMetrics implements Metrics {
+
+        @Override
+        public float getFailureRate() {
+            StripedSlidingWindow.Snapshot snapshot = window.snapshot();
+            return snapshot.getCalls() < minimumNumberOfCalls ? -1 : snapshot.getFailureRate();
+        }
+
+        @Override
+        public float getSlowCallRate() {
+            StripedSlidingWindow.Snapshot snapshot = window.snapshot();
+            return snapshot.getCalls() < minimumNumberOfCalls ? -1 : snapshot.getSlowCallRate();
+        }
+
+        @Override
+        public int getNumberOfSlowCalls() {
+            return (int) window.snapshot().getSlowCalls();
+        }
+
+        @Override
+        public int getNumberOfSlowSuccessfulCalls() {
+            return getNumberOfSlowCalls() - getNumberOfSlowFailedCalls();
+        }
+
+        //Slow failures are not told apart in the striped window, they count as slow successful calls
+        @Override
+        public int getNumberOfSlowFailedCalls() {
+            return 0;
+        }
+
+        @Override
+        public int getNumberOfBufferedCalls() {
+            return (int) window.snapshot().getCalls();
+        }
+
+        @Override
+        public int getNumberOfFailedCalls() {
+            return (int) window.snapshot().getFailures();
+        }
+
+        @Override
+        public long getNumberOfNotPermittedCalls() {
+            return delegate.getMetrics().getNumberOfNotPermittedCalls();
+        }
+
+        @Override
+        public int getNumberOfSuccessfulCalls() {
+            StripedSlidingWindow.Snapshot snapshot = window.snapshot();
+            return (int) (snapshot.getCalls() - snapshot.getFailures());
+        }
+    }
+
+}
@@ -0,0 +1,41 @@
+package com.jab.resilience;
+
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.vavr.collection.Map;
+
+import java.time.Clock;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Registry creating {@link StripedWindowCircuitBreaker} instances.
+ */
+public class StripedWindowCircuitBreakerRegistry extends ClockedCircuitBreakerRegistry {
+
+    private final SlidingWindowProperties properties;
+
+    public StripedWindowCircuitBreakerRegistry(CircuitBreakerConfig defaultConfig, SlidingWindowProperties properties) {
+        this(defaultConfig, properties, Clock.systemUTC());
+    }
+
+    public StripedWindowCircuitBreakerRegistry(
+            CircuitBreakerConfig defaultConfig, SlidingWindowProperties properties, Clock clock) {
+        super(defaultConfig, clock);
+        this.properties = properties;
+    }
+
+    @Override
+    protected CircuitBreaker create(String name, CircuitBreakerConfig config, Map<String, String> tags) {
+        return new StripedWindowCircuitBreaker(
+            name, config, getAllTags(tags), properties, nanoClock(getClock()), getClock());
+    }
+
+    //Monotonic unless another clock is injected
+    private static LongSupplier nanoClock(Clock clock) {
+        return Clock.systemUTC().equals(clock)
+            ? System::nanoTime
+            : () -> TimeUnit.MILLISECONDS.toNanos(clock.millis());
+    }
+
+}
@@ -0,0 +1,32 @@
+package com.jab.resilience;
+
+import io.github.resilience4j.timelimiter.TimeLimiterConfig;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Default time limiter settings, rebound and applied to live breakers on /actuator/refresh
+ */
+@Data
+@ConfigurationProperties(prefix = "resilience.time-limiter")
+public class TimeLimiterProperties {
+
+    private Duration timeout = Duration.ofSeconds(3);
+
+    private boolean cancelRunningFuture = true;
+
+    /**
+     * Resilience4j configuration for the current values.
+     *
+     * @return TimeLimiterConfig
+     */
+    public TimeLimiterConfig toTimeLimiterConfig() {
+        return TimeLimiterConfig.custom()
+            .timeoutDuration(timeout)
+            .cancelRunningFuture(cancelRunningFuture)
+            .build();
+    }
+
+}
@@ -0,0 +1,49 @@
+package com.jab.resilience;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free token bucket refilled by primary calls: every call deposits {@code ratio} tokens
+ * and every extra call (hedge, retry) withdraws one, so extra load stays below ratio of the traffic.
+ */
+public class TokenBucketBudget {
+
+    private static final long SCALE = 1_000;
+
+    private final long depositPerCall;
+    private final long capacity;
+    private final AtomicLong tokens;
+
+    /**
+     * Bucket starting full.
+     *
+     * @param ratio tokens deposited per primary call
+     * @param capacity maximum tokens, the burst of extra calls allowed
+     */
+    public TokenBucketBudget(double ratio, int capacity) {
+        this.depositPerCall = (long) (ratio * SCALE);
+        this.capacity = capacity * SCALE;
+        this.tokens = new AtomicLong(this.capacity);
+    }
+
+    public void deposit() {
+        tokens.accumulateAndGet(depositPerCall, (current, deposit) -> Math.min(capacity, current + deposit));
+    }
+
+    /**
+     * Take one token.
+     *
+     * @return false when the budget is exhausted
+     */
+    public boolean tryWithdraw() {
+        long current = tokens.get();
+        while (current >= SCALE) {
+            if (tokens.compareAndSet(current, current - SCALE)) {
+                return true;
+            }
+            current = tokens.get();
+        }
+        return false;
+    }
+
+}
@@ -0,0 +1,94 @@
+package com.jab.resilience;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import io.netty.channel.ChannelOption;
+import io.vavr.control.Try;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.util.List;
+
+@Slf4j
+@Configuration
+@EnableConfigurationProperties(UpstreamClientProperties.class)
+public class UpstreamClientConfiguration {
+
+    /**
+     * Connection pool shared by every upstream call
+     *
+     * @param properties Upstream client properties
+     * @return ConnectionProvider
+     */
+    @Bean(destroyMethod = "dispose")
+    public ConnectionProvider upstreamConnectionProvider(UpstreamClientProperties properties) {
+
+        //https://projectreactor.io/docs/netty/release/reference/index.html#_connection_pool_2
+        return ConnectionProvider.builder(properties.getPoolName())
+            .maxConnections(properties.getMaxConnections())
+            .pendingAcquireMaxCount(properties.getPendingAcquireMaxCount())
+            .pendingAcquireTimeout(properties.getPendingAcquireTimeout())
+            .maxIdleTime(properties.getMaxIdleTime())
+            .maxLifeTime(properties.getMaxLifeTime())
+            .metrics(properties.isMetrics())
+            .build();
+    }
+
+    /**
+     * WebClient shared by every upstream call
+     *
+     * @param webClientBuilder Spring Boot WebClient builder
+     * @param upstreamConnectionProvider Upstream connection pool
+     * @param properties Upstream client properties
+     * @return WebClient
+     */
+    @Bean
+    public WebClient upstreamWebClient(
+            WebClient.Builder webClientBuilder,
+            ConnectionProvider upstreamConnectionProvider,
+            UpstreamClientProperties properties) {
+
+        HttpClient httpClient = HttpClient.create(upstreamConnectionProvider)
+            .keepAlive(properties.isKeepAlive())
+            //Stage timestamps for StageMetrics, a no-op for calls without an attempt in their context
+            .doOnRequest((request, connection) -> StageMetrics.Attempt.from(request.currentContext())
+                .ifPresent(StageMetrics.Attempt::requestSent))
+            .doOnResponse((response, connection) -> StageMetrics.Attempt.from(response.currentContext())
+                .ifPresent(StageMetrics.Attempt::responseReceived))
+            .tcpConfiguration(tcpClient -> tcpClient
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) properties.getConnectTimeout().toMillis())
+                .option(ChannelOption.SO_KEEPALIVE, properties.isKeepAlive()));
+
+        if (properties.isHttp2()) {
+            httpClient = httpClient.protocol(HttpProtocol.H2C, HttpProtocol.HTTP11);
+        }
+
+        return webClientBuilder.clone()
+            .clientConnector(new ReactorClientHttpConnector(httpClient))
+            .build();
+    }
+
+    /**
+     * Jackson reader bound to the upstream payload, warmed up on startup
+     *
+     * @param objectMapper Spring Boot ObjectMapper
+     * @return ObjectReader for List of String
+     */
+    @Bean
+    public ObjectReader upstreamListReader(ObjectMapper objectMapper) {
+
+        ObjectReader reader = objectMapper.readerFor(new TypeReference<List<String>>() {});
+        Try.of(() -> reader.<List<String>>readValue("[\"warm-up\"]"))
+            .onFailure(ex -> LOGGER.warn("Jackson reader warm up failed", ex));
+        return reader;
+    }
+
+}
@@ -0,0 +1,34 @@
+package com.jab.resilience;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "upstream.client")
+public class UpstreamClientProperties {
+
+    private String poolName = "upstream";
+
+    private int maxConnections = 500;
+
+    private int pendingAcquireMaxCount = 1000;
+
+    private Duration pendingAcquireTimeout = Duration.ofSeconds(45);
+
+    private Duration maxIdleTime = Duration.ofSeconds(30);
+
+    private Duration maxLifeTime = Duration.ofMinutes(5);
+
+    private Duration connectTimeout = Duration.ofSeconds(2);
+
+    private boolean keepAlive = true;
+
+    private boolean http2 = false;
+
+    private boolean metrics = true;
+
+    private UpstreamDecoding decoding = UpstreamDecoding.BUFFERED;
+
+}
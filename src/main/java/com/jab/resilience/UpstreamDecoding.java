@@ -0,0 +1,15 @@
+package com.jab.resilience;
+
+public enum UpstreamDecoding {
+
+    /**
+     * Buffer the whole upstream body and bind it to a List of String
+     */
+    BUFFERED,
+
+    /**
+     * Emit array elements as soon as they are parsed from the upstream DataBuffers
+     */
+    STREAMING
+
+}
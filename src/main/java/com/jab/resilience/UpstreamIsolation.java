@@ -0,0 +1,205 @@
+package com.jab.resilience;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadConfig;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.timelimiter.TimeLimiterConfig;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.vavr.control.Try;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.util.PathMatcher;
+
+import java.net.URI;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Lazily creates one circuit breaker and one bulkhead per upstream (route pattern or host),
+ * keeping the number of live instances bounded and evicting idle ones.
+ */
+@Slf4j
+@Component
+public class UpstreamIsolation {
+
+    private final UpstreamIsolationProperties properties;
+    private volatile CircuitBreakerConfig circuitBreakerConfig;
+    private volatile TimeLimiterConfig timeLimiterConfig;
+    private final CircuitBreakerRegistry circuitBreakerRegistry;
+    private final BulkheadRegistry bulkheadRegistry;
+    private final AdaptiveLimiterProperties limiterProperties;
+    private final RetryProperties retryProperties;
+    private final MeterRegistry meterRegistry;
+    private final PathMatcher pathMatcher = new AntPathMatcher();
+    private final Cache<String, Isolation> isolations;
+    private final List<Consumer<String>> evictionListeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Isolation built on top of the default resilience configuration and registries.
+     */
+    public UpstreamIsolation(
+            UpstreamIsolationProperties properties,
+            CircuitBreakerConfig circuitBreakerConfig,
+            TimeLimiterConfig timeLimiterConfig,
+            CircuitBreakerRegistry circuitBreakerRegistry,
+            BulkheadRegistry bulkheadRegistry,
+            AdaptiveLimiterProperties limiterProperties,
+            RetryProperties retryProperties,
+            MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.circuitBreakerConfig = circuitBreakerConfig;
+        this.timeLimiterConfig = timeLimiterConfig;
+        this.circuitBreakerRegistry = circuitBreakerRegistry;
+        this.bulkheadRegistry = bulkheadRegistry;
+        this.limiterProperties = limiterProperties;
+        this.retryProperties = retryProperties;
+        this.meterRegistry = meterRegistry;
+        this.isolations = Caffeine.newBuilder()
+            .maximumSize(properties.getMaxInstances())
+            .expireAfterAccess(properties.getIdleTimeout())
+            .removalListener(this::evict)
+            .build();
+    }
+
+    /**
+     * Isolation key of an upstream URL.
+     *
+     * @param url upstream address
+     * @return first matching route name, otherwise host:port
+     */
+    public String keyFor(String url) {
+        return Try.of(() -> URI.create(url))
+            .map(uri -> routeFor(uri).orElseGet(() -> hostKey(uri)))
+            .getOrElse(url);
+    }
+
+    /**
+     * Resilience settings for a key, created on first use.
+     *
+     * @param key isolation key
+     * @return Isolation
+     */
+    public Isolation get(String key) {
+        return isolations.get(key, this::create);
+    }
+
+    /**
+     * Be told the key of every evicted isolation, to drop what is kept per upstream elsewhere.
+     *
+     * @param listener called with the evicted key
+     */
+    public void onEviction(Consumer<String> listener) {
+        evictionListeners.add(listener);
+    }
+
+    private Optional<String> routeFor(URI uri) {
+        String path = Optional.ofNullable(uri.getPath()).orElse("");
+        return properties.getRoutes().entrySet().stream()
+            .filter(route -> pathMatcher.match(route.getValue(), path))
+            .map(Map.Entry::getKey)
+            .findFirst();
+    }
+
+    private String hostKey(URI uri) {
+        int port = uri.getPort() != -1 ? uri.getPort() : ("https".equals(uri.getScheme()) ? 443 : 80);
+        return uri.getHost() + ":" + port;
+    }
+
+    /**
+     * Apply new default configurations: live isolations are rebuilt with them and their overrides,
+     * keeping their bulkhead, limiter and retry.
+     *
+     * @param circuitBreakerConfig new default circuit breaker configuration
+     * @param timeLimiterConfig new default time limiter configuration
+     * @return the live isolations, rebuilt
+     */
+    public Collection<Isolation> reload(
+            CircuitBreakerConfig circuitBreakerConfig, TimeLimiterConfig timeLimiterConfig) {
+        this.circuitBreakerConfig = circuitBreakerConfig;
+        this.timeLimiterConfig = timeLimiterConfig;
+        isolations.asMap().replaceAll((key, isolation) -> {
+            UpstreamIsolationProperties.Instance instance = instanceFor(key);
+            isolation.getBulkhead().changeConfig(bulkheadConfig(instance));
+            return new Isolation(key, circuitBreakerConfig(instance), timeLimiterConfig(instance),
+                isolation.getBulkhead(), isolation.getLimiter(), isolation.getRetry());
+        });
+        return List.copyOf(isolations.asMap().values());
+    }
+
+    private Isolation create(String key) {
+        UpstreamIsolationProperties.Instance instance = instanceFor(key);
+
+        LOGGER.info("Creating isolation for upstream {}", key);
+        return new Isolation(key, circuitBreakerConfig(instance), timeLimiterConfig(instance),
+            bulkheadRegistry.bulkhead(key, bulkheadConfig(instance)),
+            new AdaptiveConcurrencyLimiter(key, limiterProperties, meterRegistry),
+            new UpstreamRetry(key, retryProperties,
+                retryProperties.getInstances().getOrDefault(key, new RetryProperties.Instance()), meterRegistry));
+    }
+
+    private UpstreamIsolationProperties.Instance instanceFor(String key) {
+        return properties.getInstances().getOrDefault(key, new UpstreamIsolationProperties.Instance());
+    }
+
+    private CircuitBreakerConfig circuitBreakerConfig(UpstreamIsolationProperties.Instance instance) {
+        CircuitBreakerConfig.Builder circuitBreaker = CircuitBreakerConfig.from(circuitBreakerConfig);
+        Optional.ofNullable(instance.getFailureRateThreshold()).ifPresent(circuitBreaker::failureRateThreshold);
+        Optional.ofNullable(instance.getSlidingWindowSize()).ifPresent(circuitBreaker::slidingWindowSize);
+        Optional.ofNullable(instance.getWaitDurationInOpenState()).ifPresent(circuitBreaker::waitDurationInOpenState);
+        return circuitBreaker.build();
+    }
+
+    private TimeLimiterConfig timeLimiterConfig(UpstreamIsolationProperties.Instance instance) {
+        return TimeLimiterConfig.custom()
+            .timeoutDuration(Optional.ofNullable(instance.getTimeout())
+                .orElse(timeLimiterConfig.getTimeoutDuration()))
+            .cancelRunningFuture(timeLimiterConfig.shouldCancelRunningFuture())
+            .build();
+    }
+
+    private BulkheadConfig bulkheadConfig(UpstreamIsolationProperties.Instance instance) {
+        return BulkheadConfig.custom()
+            .maxConcurrentCalls(Optional.ofNullable(instance.getMaxConcurrentCalls())
+                .orElse(properties.getMaxConcurrentCalls()))
+            .maxWaitDuration(Optional.ofNullable(instance.getMaxWaitDuration())
+                .orElse(properties.getMaxWaitDuration()))
+            .build();
+    }
+
+    private void evict(String key, Isolation isolation, RemovalCause cause) {
+        if (cause == RemovalCause.REPLACED) {
+            //Reloaded configuration, same upstream
+            return;
+        }
+        LOGGER.info("Evicting isolation for upstream {} ({})", key, cause);
+        circuitBreakerRegistry.remove(key);
+        bulkheadRegistry.remove(key);
+        isolation.getLimiter().removeMeters();
+        isolation.getRetry().removeMeters();
+        evictionListeners.forEach(listener -> listener.accept(key));
+    }
+
+    @Value
+    public static class Isolation {
+
+        String key;
+        CircuitBreakerConfig circuitBreakerConfig;
+        TimeLimiterConfig timeLimiterConfig;
+        Bulkhead bulkhead;
+        AdaptiveConcurrencyLimiter limiter;
+        UpstreamRetry retry;
+
+    }
+
+}
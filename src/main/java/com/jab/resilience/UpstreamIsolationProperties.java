@@ -0,0 +1,55 @@
+package com.jab.resilience;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@Data
+@ConfigurationProperties(prefix = "resilience.isolation")
+public class UpstreamIsolationProperties {
+
+    /**
+     * Upper bound of live circuit breaker and bulkhead instances
+     */
+    private long maxInstances = 1_000;
+
+    /**
+     * Instances not used for this time are evicted
+     */
+    private Duration idleTimeout = Duration.ofMinutes(10);
+
+    /**
+     * Isolation key by URL path pattern, first match wins. Unmatched URLs are keyed by host:port
+     */
+    private Map<String, String> routes = new LinkedHashMap<>();
+
+    private int maxConcurrentCalls = 100;
+
+    private Duration maxWaitDuration = Duration.ZERO;
+
+    /**
+     * Per-key overrides of the default resilience configuration
+     */
+    private Map<String, Instance> instances = new LinkedHashMap<>();
+
+    @Data
+    public static class Instance {
+
+        private Float failureRateThreshold;
+
+        private Integer slidingWindowSize;
+
+        private Duration waitDurationInOpenState;
+
+        private Duration timeout;
+
+        private Integer maxConcurrentCalls;
+
+        private Duration maxWaitDuration;
+
+    }
+
+}
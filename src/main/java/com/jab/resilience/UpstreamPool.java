@@ -0,0 +1,496 @@
+package com.jab.resilience;
+
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.vavr.control.Try;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+
+/**
+ * Client-side load balancing of the logical upstreams, addressed as lb://name/path, over their endpoints.
+ * Power of two choices on a peak EWMA latency weighted by the calls in flight: two random endpoints, the cheaper
+ * one wins. Every endpoint has its own isolation (breaker, bulkhead, limiter, retry) keyed name/host:port, and is
+ * skipped while its breaker is open. Endpoints failing in a row or slower than the others are ejected, for
+ * a time doubled on every ejection in a row, then re-probed by a single call.
+ */
+@Slf4j
+@Component
+public class UpstreamPool {
+
+    static final String SCHEME = "lb";
+
+    private static final String METRIC_PREFIX = "resilience.pool.";
+
+    private final UpstreamPoolProperties properties;
+    private final UpstreamIsolation upstreamIsolation;
+    private final CircuitBreakerRegistry circuitBreakerRegistry;
+    private final MeterRegistry meterRegistry;
+    private final LongSupplier nanoClock;
+    private final Map<String, Pool> pools = new LinkedHashMap<>();
+    private final Map<String, Endpoint> endpointsByKey = new HashMap<>();
+
+    /**
+     * Pools of the configured logical upstreams, with their endpoint metrics bound to the registry.
+     */
+    @Autowired
+    public UpstreamPool(
+            UpstreamPoolProperties properties,
+            UpstreamIsolation upstreamIsolation,
+            CircuitBreakerRegistry circuitBreakerRegistry,
+            MeterRegistry meterRegistry) {
+        this(properties, upstreamIsolation, circuitBreakerRegistry, meterRegistry, System::nanoTime);
+    }
+
+    UpstreamPool(
+            UpstreamPoolProperties properties,
+            UpstreamIsolation upstreamIsolation,
+            CircuitBreakerRegistry circuitBreakerRegistry,
+            MeterRegistry meterRegistry,
+            LongSupplier nanoClock) {
+        this.properties = properties;
+        this.upstreamIsolation = upstreamIsolation;
+        this.circuitBreakerRegistry = circuitBreakerRegistry;
+        this.meterRegistry = meterRegistry;
+        this.nanoClock = nanoClock;
+        properties.getUpstreams().forEach((name, baseUrls) -> pools.put(name, new Pool(name, baseUrls)));
+        pools.values().forEach(pool -> Arrays.stream(pool.endpoints)
+            .forEach(endpoint -> endpointsByKey.put(endpoint.key, endpoint)));
+        circuitBreakerRegistry.getAllCircuitBreakers().forEach(this::watch);
+        circuitBreakerRegistry.getEventPublisher().onEntryAdded(event -> watch(event.getAddedEntry()));
+    }
+
+    //A reloaded breaker forwards its events to the one it replaces, so the first one is watched only
+    private void watch(CircuitBreaker circuitBreaker) {
+        Endpoint endpoint = endpointsByKey.get(circuitBreaker.getName());
+        if (endpoint != null) {
+            circuitBreaker.getEventPublisher().onStateTransition(event -> endpoint.openedAt =
+                event.getStateTransition().getToState() == CircuitBreaker.State.OPEN ? nanoClock.getAsLong() | 1 : 0);
+        }
+    }
+
+    /**
+     * Whether the address is a logical upstream of a configured pool.
+     *
+     * @param url upstream address
+     * @return true for lb://name/path with a pool named name
+     */
+    public boolean isPooled(String url) {
+        return pool(url).isPresent();
+    }
+
+    /**
+     * Where to send a call: an endpoint picked for a logical upstream, otherwise the address as is.
+     *
+     * @param url upstream address, logical or not
+     * @return Target
+     */
+    public Target resolve(String url) {
+        if (pools.isEmpty() || !url.startsWith(SCHEME + ":")) {
+            return new Target(url, upstreamIsolation.keyFor(url), null);
+        }
+        return Try.of(() -> URI.create(url))
+            .toJavaOptional()
+            .flatMap(uri -> Optional.ofNullable(pools.get(poolName(uri)))
+                .map(pool -> pool.choose(nanoClock.getAsLong()).target(uri)))
+            .orElseGet(() -> new Target(url, upstreamIsolation.keyFor(url), null));
+    }
+
+    /**
+     * Endpoints of a pool, in the configured order.
+     *
+     * @param name logical upstream name
+     * @return endpoints, empty for an unknown name
+     */
+    public List<Endpoint> getEndpoints(String name) {
+        return Optional.ofNullable(pools.get(name))
+            .map(pool -> Collections.unmodifiableList(Arrays.asList(pool.endpoints)))
+            .orElse(Collections.emptyList());
+    }
+
+    private Optional<Pool> pool(String url) {
+        return Try.of(() -> URI.create(url))
+            .toJavaOptional()
+            .map(this::poolName)
+            .map(pools::get);
+    }
+
+    private String poolName(URI uri) {
+        return SCHEME.equals(uri.getScheme()) ? uri.getHost() : null;
+    }
+
+    private class Pool {
+
+        private final String name;
+        private final Endpoint[] endpoints;
+
+        Pool(String name, List<String> baseUrls) {
+            if (baseUrls.isEmpty()) {
+                throw new IllegalArgumentException("Upstream pool " + name + " without endpoints");
+            }
+            this.name = name;
+            this.endpoints = baseUrls.stream()
+                .map(baseUrl -> new Endpoint(this, baseUrl))
+                .toArray(Endpoint[]::new);
+        }
+
+        //An endpoint due for its probe first, whatever its cost, otherwise two distinct random endpoints among the
+        //available ones, or the cheapest one when none is available
+        Endpoint choose(long now) {
+            for (Endpoint endpoint : endpoints) {
+                if (endpoint.isProbeDue(now)) {
+                    return endpoint;
+                }
+            }
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            int count = endpoints.length;
+            if (count > 1) {
+                int first = random.nextInt(count);
+                int second = random.nextInt(count - 1);
+                second = second >= first ? second + 1 : second;
+                if (endpoints[first].isAvailable(now) && endpoints[second].isAvailable(now)) {
+                    return cheaper(endpoints[first], endpoints[second], now);
+                }
+            }
+
+            List<Endpoint> available = new ArrayList<>(count);
+            for (Endpoint endpoint : endpoints) {
+                if (endpoint.isAvailable(now)) {
+                    available.add(endpoint);
+                }
+            }
+            if (available.isEmpty()) {
+                //Its breaker or its probe decides, the fallback is served when it rejects the call
+                return Arrays.stream(endpoints).reduce((first, second) -> cheaper(first, second, now)).orElseThrow();
+            }
+            if (available.size() == 1) {
+                return available.get(0);
+            }
+            int first = random.nextInt(available.size());
+            int second = random.nextInt(available.size() - 1);
+            return cheaper(available.get(first), available.get(second >= first ? second + 1 : second), now);
+        }
+
+        private Endpoint cheaper(Endpoint first, Endpoint second, long now) {
+            return second.cost(now) < first.cost(now) ? second : first;
+        }
+
+        synchronized void completed(Endpoint endpoint, long latencyNanos, boolean succeeded, long now) {
+            endpoint.record(latencyNanos, now);
+
+            if (endpoint.ejectedUntil != 0) {
+                if (now - endpoint.ejectedUntil >= 0) {
+                    probed(endpoint, latencyNanos, succeeded, now);
+                }
+                return;
+            }
+            if (!succeeded) {
+                if (++endpoint.consecutiveFailures >= properties.getConsecutiveFailures()) {
+                    eject(endpoint, "failures", now);
+                }
+                return;
+            }
+            endpoint.consecutiveFailures = 0;
+            if (isLatencyOutlier(endpoint, now)) {
+                eject(endpoint, "latency", now);
+            }
+        }
+
+        private void probed(Endpoint endpoint, long latencyNanos, boolean succeeded, long now) {
+            if (succeeded) {
+                LOGGER.info("Upstream {} endpoint {} back after a successful probe", name, endpoint.baseUrl);
+                endpoint.ejectedUntil = 0;
+                endpoint.ejections = 0;
+                endpoint.consecutiveFailures = 0;
+                //Its latency before the ejection says nothing about the endpoint now
+                endpoint.ewmaNanos = latencyNanos;
+            } else {
+                endpoint.ejectedUntil = 0;
+                eject(endpoint, "probe", now);
+            }
+        }
+
+        private boolean isLatencyOutlier(Endpoint endpoint, long now) {
+            if (endpoint.ewmaNanos < properties.getMinOutlierLatency().toNanos()) {
+                return false;
+            }
+            double[] others = Arrays.stream(endpoints)
+                .filter(other -> other != endpoint && other.measured && !other.isEjected(now))
+                .mapToDouble(other -> other.ewmaNanos)
+                .sorted()
+                .toArray();
+            if (others.length == 0) {
+                return false;
+            }
+            double median = others.length % 2 == 1
+                ? others[others.length / 2]
+                : (others[others.length / 2 - 1] + others[others.length / 2]) / 2;
+            return endpoint.ewmaNanos > properties.getLatencyOutlierFactor() * median;
+        }
+
+        private void eject(Endpoint endpoint, String reason, long now) {
+            long ejected = Arrays.stream(endpoints).filter(other -> other.isEjected(now)).count();
+            if ((ejected + 1) * 100 > properties.getMaxEjectionPercent() * endpoints.length) {
+                LOGGER.debug("Upstream {} endpoint {} not ejected ({}), too many endpoints ejected",
+                    name, endpoint.baseUrl, reason);
+                return;
+            }
+
+            long ejectionNanos = Math.min(
+                properties.getBaseEjectionTime().toNanos() << Math.min(endpoint.ejections, 30),
+                properties.getMaxEjectionTime().toNanos());
+            endpoint.ejections++;
+            endpoint.consecutiveFailures = 0;
+            //0 means not ejected
+            endpoint.ejectedUntil = (now + ejectionNanos) | 1;
+            endpoint.ejectionCounter(reason).increment();
+            LOGGER.warn("Upstream {} endpoint {} ejected for {} ms ({})", name, endpoint.baseUrl,
+                TimeUnit.NANOSECONDS.toMillis(ejectionNanos), reason);
+        }
+    }
+
+    /**
+     * One endpoint of a pool, its latency average, calls in flight and ejection state.
+     */
+    public class Endpoint {
+
+        private final Pool pool;
+        private final String baseUrl;
+        private final String key;
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final Counter calls;
+
+        private volatile boolean measured;
+        private volatile double ewmaNanos;
+        private volatile long lastRecorded;
+        private volatile long ejectedUntil;
+        private volatile long openedAt;
+        private int consecutiveFailures;
+        private int ejections;
+
+        Endpoint(Pool pool, String baseUrl) {
+            this.pool = pool;
+            this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+            URI base = URI.create(this.baseUrl);
+            this.key = pool.name + "/" + base.getRawAuthority();
+            this.calls = Counter.builder(METRIC_PREFIX + "calls")
+                .tag("upstream", pool.name)
+                .tag("endpoint", key)
+                .register(meterRegistry);
+            Gauge.builder(METRIC_PREFIX + "latency", this, endpoint -> endpoint.ewmaNanos / 1e9)
+                .tag("upstream", pool.name)
+                .tag("endpoint", key)
+                .register(meterRegistry);
+            Gauge.builder(METRIC_PREFIX + "ejected", this, endpoint -> endpoint.isEjected() ? 1 : 0)
+                .tag("upstream", pool.name)
+                .tag("endpoint", key)
+                .register(meterRegistry);
+        }
+
+        public String getBaseUrl() {
+            return baseUrl;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        /**
+         * Cost of the next call, lower is better: latency average times the calls in flight plus this one.
+         * An endpoint never measured costs nothing, so it gets traffic right away.
+         *
+         * @return cost in nanoseconds
+         */
+        public double getCost() {
+            return cost(nanoClock.getAsLong());
+        }
+
+        //The average decays while no call completes, an endpoint left aside is tried again after a while
+        double cost(long now) {
+            double weight = Math.exp(-(now - lastRecorded) / (double) properties.getDecayTime().toNanos());
+            return ewmaNanos * Math.min(weight, 1) * (inFlight.get() + 1);
+        }
+
+        public long getCalls() {
+            return (long) calls.count();
+        }
+
+        public boolean isEjected() {
+            return isEjected(nanoClock.getAsLong());
+        }
+
+        boolean isEjected(long now) {
+            long until = ejectedUntil;
+            return until != 0 && now - until < 0;
+        }
+
+        /**
+         * Whether the endpoint takes calls: not ejected or due for its probe, and its breaker not open.
+         *
+         * @return true when it can be picked
+         */
+        public boolean isAvailable() {
+            return isAvailable(nanoClock.getAsLong());
+        }
+
+        //Once ejected, back for one probe call at a time when the ejection time is over
+        boolean isAvailable(long now) {
+            long until = ejectedUntil;
+            if (until != 0 && (now - until < 0 || inFlight.get() > 0)) {
+                return false;
+            }
+            return circuitBreakerRegistry.find(key)
+                .map(circuitBreaker -> permits(circuitBreaker, now))
+                .orElse(true);
+        }
+
+        boolean isProbeDue(long now) {
+            long until = ejectedUntil;
+            return until != 0 && now - until >= 0 && isAvailable(now);
+        }
+
+        //Read from the state only, the breaker of the chosen endpoint alone is asked for a permission, by the call.
+        //An OPEN breaker is back once its wait duration went by since it opened, one call at a time, so that call
+        //moves it to HALF_OPEN
+        private boolean permits(CircuitBreaker circuitBreaker, long now) {
+            switch (circuitBreaker.getState()) {
+                case FORCED_OPEN:
+                    return false;
+                case OPEN:
+                    long opened = openedAt;
+                    if (opened == 0) {
+                        //Opened before it was watched, waiting from now
+                        openedAt = now | 1;
+                        return false;
+                    }
+                    return inFlight.get() == 0 && now - opened
+                        >= circuitBreaker.getCircuitBreakerConfig().getWaitDurationInOpenState().toNanos();
+                default:
+                    return true;
+            }
+        }
+
+        //Peak EWMA: a slower call raises the average at once, faster ones lower it over the decay time
+        private void record(long latencyNanos, long now) {
+            if (!measured || latencyNanos > ewmaNanos) {
+                ewmaNanos = latencyNanos;
+                measured = true;
+            } else {
+                double weight = Math.exp(-(now - lastRecorded) / (double) properties.getDecayTime().toNanos());
+                ewmaNanos = ewmaNanos * weight + latencyNanos * (1 - weight);
+            }
+            lastRecorded = now;
+        }
+
+        private Counter ejectionCounter(String reason) {
+            return Counter.builder(METRIC_PREFIX + "ejections")
+                .tag("upstream", pool.name)
+                .tag("endpoint", key)
+                .tag("reason", reason)
+                .register(meterRegistry);
+        }
+
+        private Target target(URI logical) {
+            String address = baseUrl + Optional.ofNullable(logical.getRawPath()).orElse("")
+                + Optional.ofNullable(logical.getRawQuery()).map(query -> "?" + query).orElse("");
+            return new Target(address, key, this);
+        }
+    }
+
+    /**
+     * Address and isolation key of a call, with the endpoint to account it to when it is a pooled one.
+     */
+    public class Target {
+
+        private final String address;
+        private final String key;
+        private final Endpoint endpoint;
+
+        Target(String address, String key, Endpoint endpoint) {
+            this.address = address;
+            this.key = key;
+            this.endpoint = endpoint;
+        }
+
+        public String getAddress() {
+            return address;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        /**
+         * Account the call to the endpoint: in flight from subscription, then its latency and outcome. A
+         * cancellation, as done by the time limiter, is a failure.
+         *
+         * @param call call to the address
+         * @param <T> element type
+         * @return same call, observed
+         */
+        public <T> Mono<T> observe(Mono<T> call) {
+            if (endpoint == null) {
+                return call;
+            }
+            return Mono.defer(() -> {
+                long start = started();
+                boolean[] succeeded = new boolean[1];
+                return call
+                    .doOnSuccess(value -> succeeded[0] = true)
+                    .doFinally(signal -> completed(start, succeeded[0]));
+            });
+        }
+
+        /**
+         * Flux version of {@link #observe(Mono)}, successful once complete.
+         *
+         * @param call call to the address
+         * @param <T> element type
+         * @return same call, observed
+         */
+        public <T> Flux<T> observeMany(Flux<T> call) {
+            if (endpoint == null) {
+                return call;
+            }
+            return Flux.defer(() -> {
+                long start = started();
+                boolean[] succeeded = new boolean[1];
+                return call
+                    .doOnComplete(() -> succeeded[0] = true)
+                    .doFinally(signal -> completed(start, succeeded[0]));
+            });
+        }
+
+        private long started() {
+            endpoint.calls.increment();
+            endpoint.inFlight.incrementAndGet();
+            return nanoClock.getAsLong();
+        }
+
+        private void completed(long start, boolean succeeded) {
+            long now = nanoClock.getAsLong();
+            endpoint.inFlight.decrementAndGet();
+            endpoint.pool.completed(endpoint, now - start, succeeded, now);
+        }
+    }
+
+}
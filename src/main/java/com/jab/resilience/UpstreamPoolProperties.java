@@ -0,0 +1,52 @@
+package com.jab.resilience;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+@Data
+@ConfigurationProperties(prefix = "resilience.pool")
+public class UpstreamPoolProperties {
+
+    /**
+     * Endpoint base URLs by logical upstream name, addressed as lb://name/path
+     */
+    private Map<String, List<String>> upstreams = new LinkedHashMap<>();
+
+    /**
+     * Time for the latency average of an endpoint to forget 63% of its past
+     */
+    private Duration decayTime = Duration.ofSeconds(10);
+
+    /**
+     * Failed calls in a row ejecting an endpoint
+     */
+    private int consecutiveFailures = 5;
+
+    /**
+     * Latency average, as a factor of the median of the other endpoints, ejecting an endpoint
+     */
+    private double latencyOutlierFactor = 3;
+
+    /**
+     * Latency average below which an endpoint is never a latency outlier
+     */
+    private Duration minOutlierLatency = Duration.ofMillis(50);
+
+    /**
+     * First ejection time, doubled on every ejection in a row
+     */
+    private Duration baseEjectionTime = Duration.ofSeconds(30);
+
+    private Duration maxEjectionTime = Duration.ofMinutes(5);
+
+    /**
+     * Upper bound of the endpoints of a pool ejected at the same time
+     */
+    private double maxEjectionPercent = 50;
+
+}
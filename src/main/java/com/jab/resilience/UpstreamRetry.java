@@ -0,0 +1,103 @@
+package com.jab.resilience;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
+
+/**
+ * Retry for one upstream: exponential backoff with full jitter, bounded by a token-bucket retry budget
+ * so that retries cannot amplify the load on an upstream that is already failing.
+ */
+public class UpstreamRetry {
+
+    private static final String METRIC_PREFIX = "resilience.retry.";
+
+    private final boolean enabled;
+    private final int maxAttempts;
+    private final long initialBackoffNanos;
+    private final long maxBackoffNanos;
+    private final double multiplier;
+    private final TokenBucketBudget budget;
+    private final MeterRegistry meterRegistry;
+    private final Counter retries;
+    private final Counter budgetExhausted;
+
+    /**
+     * Retry for one upstream key, with its counters bound to the registry.
+     */
+    public UpstreamRetry(
+            String key,
+            RetryProperties properties,
+            RetryProperties.Instance instance,
+            MeterRegistry meterRegistry) {
+        this.enabled = properties.isEnabled();
+        this.maxAttempts = instance.getMaxAttempts() != null ? instance.getMaxAttempts() : properties.getMaxAttempts();
+        this.initialBackoffNanos = (instance.getInitialBackoff() != null
+            ? instance.getInitialBackoff() : properties.getInitialBackoff()).toNanos();
+        this.maxBackoffNanos = (instance.getMaxBackoff() != null
+            ? instance.getMaxBackoff() : properties.getMaxBackoff()).toNanos();
+        this.multiplier = properties.getMultiplier();
+        this.budget = new TokenBucketBudget(properties.getBudgetPercent() / 100, properties.getBudgetCapacity());
+        this.meterRegistry = meterRegistry;
+        this.retries = meterRegistry.counter(METRIC_PREFIX + "attempts", "upstream", key);
+        this.budgetExhausted = meterRegistry.counter(METRIC_PREFIX + "budget.exhausted", "upstream", key);
+    }
+
+    /**
+     * Unregister the retry counters, once the upstream is evicted.
+     */
+    public void removeMeters() {
+        meterRegistry.remove(retries);
+        meterRegistry.remove(budgetExhausted);
+    }
+
+    /**
+     * Reactor operator resubscribing the source on transient failures, identity when disabled.
+     *
+     * @param <T> element type
+     * @return operator
+     */
+    public <T> Function<Mono<T>, Mono<T>> operator() {
+        if (!enabled || maxAttempts <= 1) {
+            return Function.identity();
+        }
+
+        return source -> Mono.defer(() -> {
+            budget.deposit();
+            return source.retryWhen(Retry.from(signals -> signals.concatMap(signal -> {
+                Throwable failure = signal.failure();
+                if (!isTransient(failure) || signal.totalRetries() + 1 >= maxAttempts) {
+                    return Mono.error(failure);
+                }
+                if (!budget.tryWithdraw()) {
+                    budgetExhausted.increment();
+                    return Mono.error(failure);
+                }
+                retries.increment();
+                return Mono.delay(backoff(signal.totalRetries()));
+            })));
+        });
+    }
+
+    //Full jitter: uniform between zero and the capped exponential backoff
+    private Duration backoff(long retry) {
+        double exponential = initialBackoffNanos * Math.pow(multiplier, retry);
+        long cap = (long) Math.min(maxBackoffNanos, exponential);
+        return Duration.ofNanos(ThreadLocalRandom.current().nextLong(cap + 1));
+    }
+
+    private boolean isTransient(Throwable failure) {
+        if (failure instanceof WebClientResponseException) {
+            return ((WebClientResponseException) failure).getStatusCode().is5xxServerError();
+        }
+        return failure instanceof IOException;
+    }
+
+}
@@ -0,0 +1,28 @@
+package com.jab.resilience;
+
+import io.vavr.control.Try;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Access to virtual threads while the bytecode stays at Java 11.
+ *
+ * <p>Spring Framework 5.2 cannot scan classes compiled for Java 21, so the executor is looked up
+ * reflectively and only the runtime has to be Java 21+.
+ */
+final class VirtualThreads {
+
+    private VirtualThreads() {
+    }
+
+    static boolean isSupported() {
+        return Try.of(() -> Executors.class.getMethod("newVirtualThreadPerTaskExecutor")).isSuccess();
+    }
+
+    static ExecutorService newPerTaskExecutor() {
+        return Try.of(() -> (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null))
+            .getOrElseThrow(ex -> new IllegalStateException("Virtual threads need a Java 21+ runtime", ex));
+    }
+
+}
@@ -0,0 +1,137 @@
+package com.jab.resilience;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.BDDAssertions.then;
+
+class AdaptiveConcurrencyLimiterTests {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    public void given_fastCalls_when_complete_then_limitGrows() {
+
+        AdaptiveConcurrencyLimiter limiter = limiter(properties(10, Duration.ZERO));
+
+        Flux.range(0, 100)
+            .concatMap(i -> Mono.just(i).transform(limiter.<Integer>operator()))
+            .blockLast();
+
+        then(limiter.getLimit()).isGreaterThan(10);
+        then(limiter.getInFlight()).isZero();
+    }
+
+    @Test
+    public void given_slowCalls_when_complete_then_limitShrinks() {
+
+        AdaptiveLimiterProperties properties = properties(10, Duration.ZERO);
+        properties.setLatencyThreshold(Duration.ofMillis(10));
+        AdaptiveConcurrencyLimiter limiter = limiter(properties);
+
+        Flux.range(0, 5)
+            .concatMap(i -> Mono.delay(Duration.ofMillis(20)).transform(limiter.<Long>operator()))
+            .blockLast();
+
+        then(limiter.getLimit()).isLessThan(10);
+    }
+
+    @Test
+    public void given_limitReached_when_noQueue_then_rejectFast() {
+
+        AdaptiveConcurrencyLimiter limiter = limiter(properties(2, Duration.ZERO));
+
+        List<Object> results = Flux.range(0, 5)
+            .flatMap(i -> Mono.delay(Duration.ofMillis(200))
+                .transform(limiter.<Long>operator())
+                .cast(Object.class)
+                .onErrorResume(LimitExceededException.class, Mono::just), 5)
+            .collectList()
+            .block();
+
+        then(results).filteredOn(LimitExceededException.class::isInstance).hasSize(3);
+        then(meterRegistry.get("resilience.limiter.rejected").counter().count()).isEqualTo(3);
+        then(limiter.getInFlight()).isZero();
+    }
+
+    @Test
+    public void given_limitReached_when_boundedQueue_then_waitForPermit() {
+
+        AdaptiveConcurrencyLimiter limiter = limiter(properties(1, Duration.ofSeconds(2)));
+
+        StepVerifier.create(Flux.range(0, 3)
+                .flatMap(i -> Mono.delay(Duration.ofMillis(100)).transform(limiter.<Long>operator()), 3)
+                .count())
+            .expectNext(3L)
+            .verifyComplete();
+
+        then(limiter.getInFlight()).isZero();
+    }
+
+    @Test
+    public void given_limitReached_when_queueTimeout_then_reject() {
+
+        AdaptiveConcurrencyLimiter limiter = limiter(properties(1, Duration.ofMillis(50)));
+
+        List<Object> results = Flux.range(0, 2)
+            .flatMap(i -> Mono.delay(Duration.ofMillis(300))
+                .transform(limiter.<Long>operator())
+                .cast(Object.class)
+                .onErrorResume(LimitExceededException.class, Mono::just), 2)
+            .collectList()
+            .block();
+
+        then(results).filteredOn(LimitExceededException.class::isInstance).hasSize(1);
+        then(limiter.getInFlight()).isZero();
+    }
+
+    @Test
+    public void given_queueTimeoutRacingRelease_when_load_then_noPermitLeaked() {
+
+        AdaptiveLimiterProperties properties = properties(4, Duration.ofMillis(5));
+        properties.setMaxLimit(4);
+        AdaptiveConcurrencyLimiter limiter = limiter(properties);
+
+        //Calls last as long as the queue time, so queued grants and queue timeouts land together
+        Flux.range(0, 2_000)
+            .flatMap(i -> Mono.delay(Duration.ofMillis(5))
+                .transform(limiter.<Long>operator())
+                .onErrorResume(LimitExceededException.class, ex -> Mono.empty()), 16)
+            .blockLast();
+
+        then(limiter.getInFlight()).isZero();
+        then(limiter.getLimit()).isBetween(1, 4);
+    }
+
+    @Test
+    public void given_evictedLimiter_when_removeMeters_then_sameKeyBoundToNextLimiter() {
+
+        AdaptiveConcurrencyLimiter evicted = limiter(properties(2, Duration.ZERO));
+        evicted.removeMeters();
+
+        then(meterRegistry.find("resilience.limiter.limit").gauges()).isEmpty();
+        then(meterRegistry.find("resilience.limiter.rejected").counters()).isEmpty();
+
+        limiter(properties(7, Duration.ZERO));
+        then(meterRegistry.get("resilience.limiter.limit").tag("upstream", "test").gauge().value()).isEqualTo(7);
+    }
+
+    private AdaptiveLimiterProperties properties(int initialLimit, Duration maxQueueTime) {
+        AdaptiveLimiterProperties properties = new AdaptiveLimiterProperties();
+        properties.setInitialLimit(initialLimit);
+        properties.setMinLimit(1);
+        properties.setMaxQueueTime(maxQueueTime);
+        return properties;
+    }
+
+    private AdaptiveConcurrencyLimiter limiter(AdaptiveLimiterProperties properties) {
+        return new AdaptiveConcurrencyLimiter("test", properties, meterRegistry);
+    }
+
+}
@@ -0,0 +1,98 @@
+package com.jab.resilience;
+
+import com.github.tomakehurst.wiremock.WireMockServer;
+import com.github.tomakehurst.wiremock.client.WireMock;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static com.jab.resilience.Constants.CIRCUIT_BREAKER_1;
+import static org.assertj.core.api.BDDAssertions.then;
+
+/**
+ * Overloaded upstream behind the adaptive limiter: 150 concurrent callers against a 300ms upstream, the p99 has
+ * to stay below the time limit. Run with ./mvnw -Pload-test verify.
+ */
+@Slf4j
+@SpringBootTest(properties = {
+    "resilience.coalescing.enabled=false",
+    "resilience.isolation.instances.CB1.max-concurrent-calls=1000",
+    "resilience.limiter.initial-limit=10",
+    "resilience.limiter.min-limit=2",
+    "resilience.limiter.latency-threshold=500ms"
+})
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+class AdaptiveLimiterLoadIT {
+
+    private static final int port = 8090;
+    private static final String address = "http://localhost:8090/greek?call=";
+    private static final int CALLS = 300;
+    private static final int CONCURRENCY = 150;
+    private static final long TIME_LIMIT_MILLIS = 3_000;
+
+    WireMockServer wireMockServer;
+
+    @Autowired
+    private ServiceProtected service;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @BeforeEach
+    public void setup() {
+        //Default Jetty pool: few workers, so concurrent calls queue up in the upstream
+        wireMockServer = new WireMockServer(port);
+        wireMockServer.start();
+        wireMockServer.stubFor(WireMock.get(WireMock.urlPathEqualTo("/greek"))
+            .willReturn(WireMock.aResponse().withHeader("Content-Type", "application/json")
+                .withStatus(200)
+                .withFixedDelay(300)
+                .withBodyFile("greek.json")));
+    }
+
+    @AfterEach
+    public void teardown() {
+        wireMockServer.stop();
+    }
+
+    @Test
+    public void given_overloadedUpstream_when_load_then_p99Bounded() {
+
+        List<Long> latencies = Flux.range(0, CALLS)
+            .flatMap(i -> timed(service.retrieveReactive(address + i)), CONCURRENCY)
+            .collectList()
+            .block()
+            .stream()
+            .sorted()
+            .collect(Collectors.toList());
+
+        long p50 = latencies.get(latencies.size() / 2);
+        long p99 = latencies.get((int) Math.ceil(latencies.size() * 0.99) - 1);
+        double rejected = meterRegistry.get("resilience.limiter.rejected")
+            .tag("upstream", CIRCUIT_BREAKER_1)
+            .counter()
+            .count();
+        LOGGER.info("Overloaded upstream: p50 {} ms, p99 {} ms, rejected {}", p50, p99, rejected);
+
+        then(rejected).isPositive();
+        then(p99).isLessThan(TIME_LIMIT_MILLIS);
+    }
+
+    private Mono<Long> timed(Mono<String> call) {
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            return call.map(response -> (System.nanoTime() - start) / 1_000_000);
+        });
+    }
+
+}
@@ -0,0 +1,236 @@
+package com.jab.resilience;
+
+import com.github.tomakehurst.wiremock.WireMockServer;
+import com.github.tomakehurst.wiremock.client.WireMock;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.SneakyThrows;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.BDDAssertions.then;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+    "resilience.retry.enabled=false",
+    "resilience.admission.max-concurrent-requests=2",
+    "resilience.admission.retry-after=2s"
+})
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+class AdmissionControllerTests {
+
+    private static final int port = 8090;
+    private static final String EXPECTED_GOD_RESPONSE = "Zeus";
+
+    WireMockServer wireMockServer;
+
+    @LocalServerPort
+    int serverPort;
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @Autowired
+    private AdmissionController admissionController;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private WebClient webClient;
+
+    @BeforeEach
+    public void setup() {
+        wireMockServer = new WireMockServer(port);
+        wireMockServer.start();
+        webClient = WebClient.create("http://localhost:" + serverPort);
+    }
+
+    @AfterEach
+    public void teardown() {
+        wireMockServer.stop();
+    }
+
+    @Test
+    public void given_freeSlots_when_retrieve_then_admitted() {
+
+        stubGreek(0);
+
+        webTestClient.get().uri("/api/retrieve").exchange()
+            .expectStatus().isOk()
+            .expectBody(String.class).isEqualTo(EXPECTED_GOD_RESPONSE);
+        //The filter ends once the response is flushed, possibly after the client read it
+        awaitUntil(() -> admissionController.getInFlight() == 0);
+    }
+
+    @Test
+    public void given_saturated_when_lowPriorityWaitsTooLong_then_shedWithRetryAfter() {
+
+        stubGreek(1_000);
+        List<CompletableFuture<ClientResponse>> inFlight = saturate();
+
+        long start = System.nanoTime();
+        webTestClient.get().uri("/api/retrieve").header("X-Priority", "low").exchange()
+            .expectStatus().isEqualTo(HttpStatus.SERVICE_UNAVAILABLE)
+            .expectHeader().valueEquals(HttpHeaders.RETRY_AFTER, "2");
+
+        then(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofMillis(500));
+        then(statuses(inFlight)).containsOnly(HttpStatus.OK);
+    }
+
+    @Test
+    public void given_saturated_when_slotFreed_then_queuedRequestAdmitted() {
+
+        stubGreek(300);
+        List<CompletableFuture<ClientResponse>> inFlight = saturate();
+
+        webTestClient.get().uri("/api/retrieve").header("X-Priority", "critical").exchange()
+            .expectStatus().isOk();
+        then(statuses(inFlight)).containsOnly(HttpStatus.OK);
+    }
+
+    @Test
+    public void given_moreImportantWaiting_when_normalArrives_then_shedImmediately() {
+
+        stubGreek(1_000);
+        List<CompletableFuture<ClientResponse>> inFlight = saturate();
+        CompletableFuture<ClientResponse> critical = send("critical");
+        awaitUntil(() -> meterRegistry.get("resilience.admission.queued").tag("priority", "CRITICAL").gauge().value() == 1);
+
+        long start = System.nanoTime();
+        webTestClient.get().uri("/api/retrieve").exchange()
+            .expectStatus().isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+
+        then(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofMillis(200));
+        then(critical.join().statusCode()).isEqualTo(HttpStatus.OK);
+        then(statuses(inFlight)).containsOnly(HttpStatus.OK);
+    }
+
+    @Test
+    public void given_saturated_when_actuator_then_neverQueued() {
+
+        stubGreek(1_000);
+        saturate();
+
+        webTestClient.get().uri("/actuator/health").exchange()
+            .expectStatus().isOk();
+        webTestClient.get().uri("/actuator/health").header("X-Priority", "low").exchange()
+            .expectStatus().isOk();
+    }
+
+    @Test
+    public void given_headerAndRoute_when_classify_then_headerWins() {
+
+        then(admissionController.classify(MockServerHttpRequest.post("/api/retrieve/batch").build(), "/api/retrieve/batch"))
+            .isEqualTo(RequestPriority.LOW);
+        then(admissionController.classify(MockServerHttpRequest.post("/api/retrieve/batch")
+            .header("X-Priority", "High").build(), "/api/retrieve/batch"))
+            .isEqualTo(RequestPriority.HIGH);
+        then(admissionController.classify(MockServerHttpRequest.get("/api/retrieve")
+            .header("X-Priority", "unknown").build(), "/api/retrieve"))
+            .isEqualTo(RequestPriority.NORMAL);
+    }
+
+    @Test
+    public void given_queueTimeoutRacingDrain_when_load_then_noSlotLeaked() {
+
+        AdmissionProperties properties = new AdmissionProperties();
+        properties.setMaxConcurrentRequests(4);
+        AdmissionProperties.Lane lane = new AdmissionProperties.Lane();
+        lane.setMaxQueueDelay(Duration.ofMillis(5));
+        properties.getLanes().put(RequestPriority.NORMAL, lane);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        AdmissionController controller = new AdmissionController(properties, registry, "/actuator");
+
+        //Requests last as long as the queue delay, so queued grants and queue timeouts land together
+        Flux.range(0, 2_000)
+            .flatMap(i -> controller.filter(
+                MockServerWebExchange.from(MockServerHttpRequest.get("/api/retrieve")),
+                exchange -> Mono.delay(Duration.ofMillis(5)).then()), 16)
+            .blockLast();
+
+        then(controller.getInFlight()).isZero();
+        then(registry.get("resilience.admission.queued").tag("priority", "NORMAL").gauge().value()).isZero();
+    }
+
+    @Test
+    public void given_queuedPermit_when_timeoutAndDrainInterleave_then_oneSideWins() {
+
+        //Timeout first: the drain grant loses and the slot goes back, nothing is left to release
+        AdmissionController.Permit expired = new AdmissionController.Permit();
+        then(expired.expire()).isTrue();
+        then(expired.grant()).isFalse();
+        then(expired.revoke()).isFalse();
+
+        //Drain first: the timeout finds the request admitted, its end releases the slot once
+        AdmissionController.Permit granted = new AdmissionController.Permit();
+        then(granted.grant()).isTrue();
+        then(granted.expire()).isFalse();
+        then(granted.revoke()).isTrue();
+        then(granted.revoke()).isFalse();
+    }
+
+    //Fill the 2 slots with normal requests held by the upstream delay
+    private List<CompletableFuture<ClientResponse>> saturate() {
+        List<CompletableFuture<ClientResponse>> inFlight = IntStream.range(0, 2)
+            .mapToObj(i -> send("normal"))
+            .collect(Collectors.toList());
+        awaitUntil(() -> admissionController.getInFlight() == 2);
+        return inFlight;
+    }
+
+    private CompletableFuture<ClientResponse> send(String priority) {
+        return webClient.get().uri("/api/retrieve")
+            .header("X-Priority", priority)
+            .exchange()
+            .flatMap(response -> response.releaseBody().thenReturn(response))
+            .toFuture();
+    }
+
+    private static List<HttpStatus> statuses(List<CompletableFuture<ClientResponse>> responses) {
+        return responses.stream()
+            .map(response -> response.join().statusCode())
+            .collect(Collectors.toList());
+    }
+
+    private static void awaitUntil(BooleanSupplier condition) {
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (!condition.getAsBoolean() && System.nanoTime() < deadline) {
+            sleep(10);
+        }
+        then(condition.getAsBoolean()).isTrue();
+    }
+
+    @SneakyThrows
+    private static void sleep(long millis) {
+        Thread.sleep(millis);
+    }
+
+    private void stubGreek(int delayMillis) {
+        wireMockServer.stubFor(WireMock.get(WireMock.urlPathEqualTo("/greek"))
+            .willReturn(WireMock.aResponse().withHeader("Content-Type", "application/json")
+                .withStatus(200)
+                .withFixedDelay(delayMillis)
+                .withBodyFile("greek.json")));
+    }
+
+}
@@ -0,0 +1,178 @@
+package com.jab.resilience;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.tomakehurst.wiremock.WireMockServer;
+import com.github.tomakehurst.wiremock.client.WireMock;
+import lombok.SneakyThrows;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.File;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.BDDAssertions.then;
+
+/**
+ * Overload of the protected route, 4 times what a slow upstream lets through, mixed with high priority
+ * traffic and health probes. The probes and the high priority requests must not notice the overload.
+ * Run with ./mvnw -Pload-test verify.
+ */
+@Slf4j
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+    "resilience.retry.enabled=false",
+    "resilience.admission.max-concurrent-requests=20"
+})
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+class AdmissionLoadIT {
+
+    private static final Duration DURATION = Duration.parse("PT" + System.getProperty("loadtest.duration", "10s"));
+    private static final Duration UPSTREAM_DELAY = Duration.ofMillis(500);
+    private static final File REPORTS = new File("target/load-tests");
+
+    //20 slots held 500ms: 40 rps of capacity for 160 rps of demand
+    private static final Map<String, Integer> RPS = Map.of(
+        "high", 10,
+        "normal", 50,
+        "low", 100);
+
+    WireMockServer wireMockServer;
+
+    @LocalServerPort
+    int port;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @BeforeEach
+    public void setup() {
+        wireMockServer = new WireMockServer(8090);
+        wireMockServer.start();
+        wireMockServer.stubFor(WireMock.get(WireMock.urlPathEqualTo("/greek"))
+            .willReturn(WireMock.aResponse().withHeader("Content-Type", "application/json")
+                .withStatus(200)
+                .withFixedDelay((int) UPSTREAM_DELAY.toMillis())
+                .withBodyFile("greek.json")));
+    }
+
+    @AfterEach
+    public void teardown() {
+        wireMockServer.stop();
+    }
+
+    @Test
+    public void given_overload_when_shedding_then_actuatorAndHighPriorityUnaffected() {
+
+        WebClient webClient = WebClient.create("http://localhost:" + port);
+
+        Flux<Sample> protectedLoad = Flux.merge(RPS.entrySet().stream()
+            .map(entry -> load(entry.getValue(), () -> call(webClient, "/api/retrieve", entry.getKey())))
+            .collect(Collectors.toList()));
+        Flux<Sample> probes = load(10, () -> call(webClient, "/actuator/health", "probe"));
+
+        Map<String, List<Sample>> samples = Flux.merge(protectedLoad, probes)
+            .collectList()
+            .blockOptional()
+            .orElse(Collections.emptyList())
+            .stream()
+            .collect(Collectors.groupingBy(Sample::getPriority, TreeMap::new, Collectors.toList()));
+
+        Map<String, Summary> report = new TreeMap<>();
+        samples.forEach((priority, prioritySamples) -> report.put(priority, Summary.of(prioritySamples)));
+        write(report);
+
+        then(report.get("probe").getOkRate()).isEqualTo(1.0);
+        then(report.get("probe").getP99Millis()).isLessThanOrEqualTo(200);
+        then(report.get("high").getOkRate()).isGreaterThanOrEqualTo(0.95);
+        then(report.get("high").getP99Millis()).isLessThanOrEqualTo(UPSTREAM_DELAY.toMillis() * 3);
+        then(report.get("low").getShedRate()).isGreaterThan(report.get("normal").getShedRate());
+        then(report.get("normal").getShedRate()).isGreaterThan(report.get("high").getShedRate());
+        then(report.get("low").getShedP99Millis()).isLessThanOrEqualTo(200);
+        then(report.values()).allMatch(summary -> summary.getRetryAfterMissing() == 0);
+    }
+
+    //Open model: one call every 1/rps seconds, whatever the response times are
+    private static Flux<Sample> load(int rps, Supplier<Mono<Sample>> call) {
+        return Flux.interval(Duration.ofNanos(1_000_000_000L / rps))
+            .take(rps * DURATION.getSeconds())
+            .flatMap(i -> call.get(), Integer.MAX_VALUE);
+    }
+
+    private static Mono<Sample> call(WebClient webClient, String uri, String priority) {
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            return webClient.get().uri(uri)
+                .header("X-Priority", priority)
+                .exchange()
+                .flatMap(response -> response.releaseBody().thenReturn(new Sample(
+                    priority,
+                    response.rawStatusCode(),
+                    response.headers().header(HttpHeaders.RETRY_AFTER).isEmpty(),
+                    (System.nanoTime() - start) / 1_000_000)));
+        });
+    }
+
+    @SneakyThrows
+    private void write(Map<String, Summary> report) {
+        REPORTS.mkdirs();
+        objectMapper.writeValue(new File(REPORTS, "admission.json"), report);
+        report.forEach((priority, summary) -> LOGGER.info("Admission load {}: {} requests, ok {}, shed {}, p99 {} ms, shed p99 {} ms",
+            priority, summary.getRequests(), summary.getOkRate(), summary.getShedRate(),
+            summary.getP99Millis(), summary.getShedP99Millis()));
+    }
+
+    @Value
+    static class Sample {
+        String priority;
+        int status;
+        boolean retryAfterMissing;
+        long millis;
+    }
+
+    @Value
+    static class Summary {
+        int requests;
+        double okRate;
+        double shedRate;
+        long p99Millis;
+        long shedP99Millis;
+        long retryAfterMissing;
+
+        static Summary of(List<Sample> samples) {
+            List<Sample> shed = samples.stream().filter(sample -> sample.getStatus() == 503).collect(Collectors.toList());
+            long ok = samples.stream().filter(sample -> sample.getStatus() == 200).count();
+            return new Summary(
+                samples.size(),
+                (double) ok / samples.size(),
+                (double) shed.size() / samples.size(),
+                p99(samples),
+                p99(shed),
+                shed.stream().filter(Sample::isRetryAfterMissing).count());
+        }
+
+        private static long p99(List<Sample> samples) {
+            if (samples.isEmpty()) {
+                return 0;
+            }
+            List<Long> millis = samples.stream().map(Sample::getMillis).sorted().collect(Collectors.toList());
+            return millis.get((int) Math.ceil(millis.size() * 0.99) - 1);
+        }
+    }
+
+}
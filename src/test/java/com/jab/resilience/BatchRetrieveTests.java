@@ -0,0 +1,175 @@
+package com.jab.resilience;
+
+import com.github.tomakehurst.wiremock.WireMockServer;
+import com.github.tomakehurst.wiremock.client.WireMock;
+import com.github.tomakehurst.wiremock.core.WireMockConfiguration;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static com.jab.resilience.Constants.FALLBACK_GOD_RESPONSE;
+import static org.assertj.core.api.BDDAssertions.then;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+    "resilience.retry.enabled=false",
+    "resilience.coalescing.enabled=false",
+    "resilience.isolation.routes.OK=/ok/**",
+    "resilience.isolation.routes.KO=/ko/**"
+})
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+class BatchRetrieveTests {
+
+    private static final int port = 8090;
+    private static final String address = "http://localhost:8090";
+
+    WireMockServer wireMockServer;
+
+    @Autowired
+    private ServiceProtected service;
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @BeforeEach
+    public void setup() {
+        //Delayed stubs answered off the Jetty threads, the 20 slow calls of a batch are served together
+        wireMockServer = new WireMockServer(WireMockConfiguration.options()
+            .port(port)
+            .asynchronousResponseEnabled(true)
+            .asynchronousResponseThreads(20));
+        wireMockServer.start();
+    }
+
+    @AfterEach
+    public void teardown() {
+        wireMockServer.stop();
+    }
+
+    @Test
+    public void given_urls_when_retrieveAllOrdered_then_resultsInRequestOrder() {
+
+        stubGod("/ok/1", "Zeus", 300);
+        stubGod("/ok/2", "Hera", 0);
+
+        List<String> responses = service.retrieveAll(Flux.just(address + "/ok/1", address + "/ok/2"), true)
+            .map(RetrieveResult::getResponse)
+            .collectList()
+            .block();
+
+        then(responses).containsExactly("Zeus", "Hera");
+    }
+
+    @Test
+    public void given_urls_when_retrieveAllUnordered_then_resultsAsTheyComplete() {
+
+        stubGod("/ok/1", "Zeus", 300);
+        stubGod("/ok/2", "Hera", 0);
+
+        List<String> responses = service.retrieveAll(Flux.just(address + "/ok/1", address + "/ok/2"), false)
+            .map(RetrieveResult::getResponse)
+            .collectList()
+            .block();
+
+        then(responses).containsExactly("Hera", "Zeus");
+    }
+
+    @Test
+    public void given_slowUrls_when_retrieveAll_then_batchTakesAboutTheSlowestCall() {
+
+        IntStream.range(0, 20).forEach(i -> stubGod("/ok/" + i, "Zeus", 500));
+        Flux<String> urls = Flux.range(0, 20).map(i -> address + "/ok/" + i);
+
+        long start = System.nanoTime();
+        List<RetrieveResult> results = service.retrieveAll(urls, true).collectList().block();
+        Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+
+        then(results).hasSize(20).extracting(RetrieveResult::getResponse).containsOnly("Zeus");
+        then(elapsed).isLessThan(Duration.ofSeconds(3));
+    }
+
+    @Test
+    public void given_failingUrl_when_retrieveAll_then_onlyThatElementFallsBack() {
+
+        stubGod("/ok/1", "Zeus", 0);
+        stubGod("/ok/2", "Hera", 0);
+        wireMockServer.stubFor(WireMock.get(WireMock.urlEqualTo("/ko/1"))
+            .willReturn(WireMock.aResponse().withStatus(500)));
+
+        List<String> responses = service.retrieveAll(
+                Flux.just(address + "/ok/1", address + "/ko/1", address + "/ok/2"), true)
+            .map(RetrieveResult::getResponse)
+            .collectList()
+            .block();
+
+        then(responses).containsExactly("Zeus", FALLBACK_GOD_RESPONSE, "Hera");
+    }
+
+    @Test
+    public void given_batchEndpoint_when_post_then_ndjsonStream() {
+
+        stubGod("/ok/1", "Zeus", 0);
+        stubGod("/ok/2", "Hera", 0);
+
+        List<String> lines = webTestClient.post().uri("/api/retrieve/batch")
+            .contentType(MediaType.TEXT_PLAIN)
+            .bodyValue("/ok/1\n/ok/2\n")
+            .exchange()
+            .expectStatus().isOk()
+            .expectHeader().contentType(ServiceProtectedRouter.APPLICATION_NDJSON)
+            .expectBody(String.class)
+            .returnResult()
+            .getResponseBody()
+            .lines()
+            .collect(Collectors.toList());
+
+        then(lines).containsExactly(
+            "{\"url\":\"http://localhost:8090/ok/1\",\"response\":\"Zeus\"}",
+            "{\"url\":\"http://localhost:8090/ok/2\",\"response\":\"Hera\"}");
+    }
+
+    @Test
+    public void given_addressOutsideUpstream_when_post_then_badRequest() {
+
+        webTestClient.post().uri("/api/retrieve/batch")
+            .contentType(MediaType.TEXT_PLAIN)
+            .bodyValue("http://example.com/greek\n")
+            .exchange()
+            .expectStatus().isBadRequest();
+
+        wireMockServer.verify(0, WireMock.anyRequestedFor(WireMock.anyUrl()));
+    }
+
+    @Test
+    public void given_addressOutsideUpstreamAfterValidLines_when_post_then_badRequestBeforeAnyCall() {
+
+        stubGod("/ok/1", "Zeus", 0);
+
+        webTestClient.post().uri("/api/retrieve/batch")
+            .contentType(MediaType.TEXT_PLAIN)
+            .bodyValue("/ok/1\nhttp://example.com/greek\n")
+            .exchange()
+            .expectStatus().isBadRequest();
+
+        wireMockServer.verify(0, WireMock.anyRequestedFor(WireMock.anyUrl()));
+    }
+
+    private void stubGod(String path, String god, int delayMillis) {
+        wireMockServer.stubFor(WireMock.get(WireMock.urlEqualTo(path))
+            .willReturn(WireMock.aResponse().withHeader("Content-Type", "application/json")
+                .withStatus(200)
+                .withFixedDelay(delayMillis)
+                .withBody("[\"" + god + "\"]")));
+    }
+
+}
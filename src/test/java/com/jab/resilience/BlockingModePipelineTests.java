@@ -0,0 +1,140 @@
+package com.jab.resilience;
+
+import com.github.tomakehurst.wiremock.WireMockServer;
+import com.github.tomakehurst.wiremock.client.WireMock;
+import com.github.tomakehurst.wiremock.core.WireMockConfiguration;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.IntFunction;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static com.jab.resilience.Constants.CIRCUIT_BREAKER_1;
+import static com.jab.resilience.Constants.FALLBACK_GOD_RESPONSE;
+import static org.assertj.core.api.BDDAssertions.then;
+
+/**
+ * The blocking modes go through the cache, the coalescer, the fast fail and the limiter like the reactive one.
+ */
+@SpringBootTest(properties = {
+    "resilience.blocking.mode=thread-pool",
+    "resilience.retry.enabled=false",
+    "resilience.cache.enabled=true",
+    "resilience.coalescing.enabled=true",
+    "resilience.limiter.enabled=true",
+    "resilience.limiter.initial-limit=2",
+    "resilience.limiter.min-limit=1",
+    "resilience.limiter.max-limit=2",
+    "resilience.limiter.max-queue-time=0ms"
+})
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+class BlockingModePipelineTests {
+
+    private static final String address = "http://localhost:8090/greek";
+
+    WireMockServer wireMockServer;
+
+    @Autowired
+    private ServiceProtected service;
+
+    @Autowired
+    private CircuitBreakerRegistry circuitBreakerRegistry;
+
+    @BeforeEach
+    public void setup() {
+        wireMockServer = new WireMockServer(WireMockConfiguration.options()
+            .port(8090)
+            .asynchronousResponseEnabled(true)
+            .asynchronousResponseThreads(10));
+        wireMockServer.start();
+    }
+
+    @AfterEach
+    public void teardown() {
+        wireMockServer.stop();
+    }
+
+    private void stubGreek(int delayMillis) {
+        wireMockServer.stubFor(WireMock.get(WireMock.urlPathEqualTo("/greek"))
+            .willReturn(WireMock.aResponse().withHeader("Content-Type", "application/json")
+                .withStatus(200)
+                .withFixedDelay(delayMillis)
+                .withBodyFile("greek.json")));
+    }
+
+    private List<String> concurrently(int callers, IntFunction<String> url) {
+        ExecutorService executor = Executors.newFixedThreadPool(callers);
+        try {
+            List<CompletableFuture<String>> responses = IntStream.range(0, callers)
+                .mapToObj(i -> CompletableFuture.supplyAsync(() -> service.retrieve(url.apply(i)), executor))
+                .collect(Collectors.toList());
+            return responses.stream().map(CompletableFuture::join).collect(Collectors.toList());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private int upstreamCalls() {
+        return wireMockServer.findAll(WireMock.getRequestedFor(WireMock.urlPathEqualTo("/greek"))).size();
+    }
+
+    @Test
+    public void given_threadPoolMode_when_retrieveTwice_then_secondServedFromCache() {
+
+        stubGreek(0);
+
+        then(service.retrieve(address)).isEqualTo("Zeus");
+        then(service.retrieve(address)).isEqualTo("Zeus");
+
+        then(upstreamCalls()).isEqualTo(1);
+    }
+
+    @Test
+    public void given_threadPoolMode_when_concurrentCallersOnSameUrl_then_oneUpstreamCall() {
+
+        stubGreek(500);
+
+        List<String> responses = concurrently(8, i -> address);
+
+        then(responses).containsOnly("Zeus");
+        then(upstreamCalls()).isEqualTo(1);
+    }
+
+    @Test
+    public void given_threadPoolMode_when_limitReached_then_fallbackWithoutUpstreamCall() {
+
+        stubGreek(500);
+
+        //Distinct urls, not coalesced, all keyed CB1 by the route of application.yml
+        List<String> responses = concurrently(6, i -> address + "?caller=" + i);
+
+        then(responses).filteredOn("Zeus"::equals).hasSize(2);
+        then(responses).filteredOn(FALLBACK_GOD_RESPONSE::equals).hasSize(4);
+        then(upstreamCalls()).isEqualTo(2);
+    }
+
+    @Test
+    public void given_threadPoolMode_when_breakerOpen_then_fastFailWithoutUpstreamCall() {
+
+        stubGreek(0);
+        CircuitBreaker circuitBreaker = circuitBreakerRegistry.circuitBreaker(CIRCUIT_BREAKER_1);
+        circuitBreaker.transitionToForcedOpenState();
+
+        then(service.retrieve(address)).isEqualTo(FALLBACK_GOD_RESPONSE);
+
+        then(upstreamCalls()).isZero();
+        then(circuitBreaker.getMetrics().getNumberOfNotPermittedCalls()).isEqualTo(1);
+    }
+
+}
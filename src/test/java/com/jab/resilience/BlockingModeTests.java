@@ -0,0 +1,86 @@
+package com.jab.resilience;
+
+import com.github.tomakehurst.wiremock.WireMockServer;
+import com.github.tomakehurst.wiremock.client.WireMock;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+
+import java.util.stream.IntStream;
+
+import static com.jab.resilience.Constants.CIRCUIT_BREAKER_1;
+import static com.jab.resilience.Constants.FALLBACK_GOD_RESPONSE;
+import static org.assertj.core.api.BDDAssertions.then;
+
+@SpringBootTest(properties = {
+    "resilience.blocking.mode=thread-pool",
+    "resilience.blocking.pool-size=4",
+    "resilience.retry.enabled=false"
+})
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+class BlockingModeTests {
+
+    private static final String address = "http://localhost:8090/greek";
+
+    WireMockServer wireMockServer;
+
+    @Autowired
+    private ServiceProtected service;
+
+    @Autowired
+    private CircuitBreakerRegistry circuitBreakerRegistry;
+
+    @BeforeEach
+    public void setup() {
+        wireMockServer = new WireMockServer(8090);
+        wireMockServer.start();
+    }
+
+    @AfterEach
+    public void teardown() {
+        wireMockServer.stop();
+    }
+
+    @Test
+    public void given_threadPoolMode_when_retrieve_then_ok() {
+
+        wireMockServer.stubFor(WireMock.get(WireMock.urlEqualTo("/greek"))
+            .willReturn(WireMock.aResponse().withHeader("Content-Type", "application/json")
+                .withStatus(200)
+                .withBodyFile("greek.json")));
+
+        then(service.retrieve(address)).isEqualTo("Zeus");
+    }
+
+    @Test
+    public void given_threadPoolMode_when_upstreamFails_then_fallbackAndSharedBreakerOpens() {
+
+        wireMockServer.stubFor(WireMock.get(WireMock.urlEqualTo("/greek"))
+            .willReturn(WireMock.aResponse().withStatus(500)));
+
+        IntStream.rangeClosed(1, 2).forEach(i -> then(service.retrieve(address)).isEqualTo(FALLBACK_GOD_RESPONSE));
+
+        //Blocking and reactive factories share the registry, so the reactive path sees the open breaker
+        then(circuitBreakerRegistry.circuitBreaker(CIRCUIT_BREAKER_1).getState()).isEqualTo(CircuitBreaker.State.OPEN);
+        then(service.retrieveReactive(address).block()).isEqualTo(FALLBACK_GOD_RESPONSE);
+        wireMockServer.verify(2, WireMock.getRequestedFor(WireMock.urlEqualTo("/greek")));
+    }
+
+    @Test
+    public void given_slowUpstream_when_retrieve_then_timeLimiterFallsBack() {
+
+        wireMockServer.stubFor(WireMock.get(WireMock.urlEqualTo("/greek"))
+            .willReturn(WireMock.aResponse().withHeader("Content-Type", "application/json")
+                .withStatus(200)
+                .withFixedDelay(4000)
+                .withBodyFile("greek.json")));
+
+        then(service.retrieve(address)).isEqualTo(FALLBACK_GOD_RESPONSE);
+    }
+
+}
@@ -0,0 +1,129 @@
+package com.jab.resilience;
+
+import com.github.tomakehurst.wiremock.WireMockServer;
+import com.github.tomakehurst.wiremock.client.WireMock;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import lombok.SneakyThrows;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.IntStream;
+
+import static com.jab.resilience.Constants.CIRCUIT_BREAKER_1;
+import static com.jab.resilience.Constants.FALLBACK_GOD_RESPONSE;
+import static org.assertj.core.api.BDDAssertions.then;
+
+/**
+ * Several instances of the application started in this JVM, sharing their breakers over each transport.
+ */
+class BreakerStateSyncNodesTests {
+
+    private static final int port = 8090;
+    private static final String address = "http://localhost:8090/greek";
+    private static final Duration PROPAGATION_TIMEOUT = Duration.ofSeconds(5);
+
+    WireMockServer wireMockServer;
+
+    private final List<ConfigurableApplicationContext> nodes = new ArrayList<>();
+    private final String channel = UUID.randomUUID().toString();
+    private final int multicastPort = ThreadLocalRandom.current().nextInt(40_000, 50_000);
+
+    @BeforeEach
+    public void setup() {
+        wireMockServer = new WireMockServer(port);
+        wireMockServer.start();
+        wireMockServer.stubFor(WireMock.get(WireMock.urlEqualTo("/greek"))
+            .willReturn(WireMock.aResponse().withStatus(500)));
+    }
+
+    @AfterEach
+    public void teardown() {
+        nodes.forEach(ConfigurableApplicationContext::close);
+        wireMockServer.stop();
+    }
+
+    @ParameterizedTest
+    @EnumSource(BreakerStateSyncProperties.Transport.class)
+    public void given_threeNodes_when_oneOpens_then_allOpen(BreakerStateSyncProperties.Transport transport) {
+
+        ConfigurableApplicationContext first = node(transport);
+        ConfigurableApplicationContext second = node(transport);
+        ConfigurableApplicationContext third = node(transport);
+        retrieve(second, 1);
+        retrieve(third, 1);
+
+        retrieve(first, 10);
+        then(state(first)).isEqualTo(CircuitBreaker.State.OPEN);
+
+        awaitState(second, CircuitBreaker.State.OPEN);
+        awaitState(third, CircuitBreaker.State.OPEN);
+        then(retrieve(third, 1)).containsOnly(FALLBACK_GOD_RESPONSE);
+        then(wireMockServer.getAllServeEvents()).hasSize(12);
+    }
+
+    @ParameterizedTest
+    @EnumSource(BreakerStateSyncProperties.Transport.class)
+    public void given_nodesBelowMinimumCalls_when_windowsShared_then_allOpen(BreakerStateSyncProperties.Transport transport) {
+
+        ConfigurableApplicationContext first = node(transport);
+        ConfigurableApplicationContext second = node(transport);
+
+        retrieve(first, 6);
+        retrieve(second, 6);
+
+        awaitState(first, CircuitBreaker.State.OPEN);
+        awaitState(second, CircuitBreaker.State.OPEN);
+    }
+
+    private ConfigurableApplicationContext node(BreakerStateSyncProperties.Transport transport) {
+        //Command line arguments, the builder properties are defaults application.yml would override
+        ConfigurableApplicationContext node = new SpringApplicationBuilder(MainApplication.class)
+            .run(
+                "--server.port=0",
+                "--spring.devtools.restart.enabled=false",
+                "--management.metrics.use-global-registry=false",
+                "--resilience.retry.enabled=false",
+                "--resilience.circuit-breaker.sliding-window-size=10",
+                "--resilience.circuit-breaker.minimum-number-of-calls=10",
+                "--resilience.circuit-breaker.wait-duration-in-open-state=60s",
+                "--resilience.state-sync.enabled=true",
+                "--resilience.state-sync.transport=" + transport,
+                "--resilience.state-sync.channel=" + channel,
+                "--resilience.state-sync.flush-interval=20ms",
+                "--resilience.state-sync.digest-interval=100ms",
+                "--resilience.state-sync.multicast.port=" + multicastPort);
+        nodes.add(node);
+        return node;
+    }
+
+    private static List<String> retrieve(ConfigurableApplicationContext node, int calls) {
+        ServiceProtected service = node.getBean(ServiceProtected.class);
+        List<String> responses = new ArrayList<>();
+        IntStream.range(0, calls).forEach(i -> responses.add(service.retrieve(address)));
+        return responses;
+    }
+
+    private static CircuitBreaker.State state(ConfigurableApplicationContext node) {
+        return node.getBean(CircuitBreakerRegistry.class).circuitBreaker(CIRCUIT_BREAKER_1).getState();
+    }
+
+    @SneakyThrows
+    private static void awaitState(ConfigurableApplicationContext node, CircuitBreaker.State expected) {
+        long deadline = System.nanoTime() + PROPAGATION_TIMEOUT.toNanos();
+        while (state(node) != expected && System.nanoTime() < deadline) {
+            Thread.sleep(20);
+        }
+        then(state(node)).isEqualTo(expected);
+    }
+
+}
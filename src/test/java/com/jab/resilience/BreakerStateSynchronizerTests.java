@@ -0,0 +1,258 @@
+package com.jab.resilience;
+
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+
+import static com.jab.resilience.Constants.CIRCUIT_BREAKER_1;
+import static org.assertj.core.api.BDDAssertions.then;
+
+class BreakerStateSynchronizerTests {
+
+    private final AtomicLong clock = new AtomicLong();
+    private final String channel = UUID.randomUUID().toString();
+    private final List<BreakerStateSync> transports = new ArrayList<>();
+
+    private final CircuitBreakerConfig config = CircuitBreakerConfig.custom()
+        .failureRateThreshold(50)
+        .slidingWindowSize(10)
+        .minimumNumberOfCalls(10)
+        .waitDurationInOpenState(Duration.ofSeconds(60))
+        .build();
+
+    @AfterEach
+    public void teardown() {
+        transports.forEach(BreakerStateSync::close);
+    }
+
+    @Test
+    public void given_twoNodes_when_oneOpens_then_otherOpens() {
+
+        Node first = node("first");
+        Node second = node("second");
+        CircuitBreaker secondBreaker = second.breaker();
+
+        first.breaker().transitionToOpenState();
+        first.synchronizer.flush();
+
+        then(secondBreaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+    }
+
+    @Test
+    public void given_nodesBelowMinimumCalls_when_digestsExchanged_then_combinedWindowOpens() {
+
+        Node first = node("first");
+        Node second = node("second");
+        fail(first.breaker(), 6);
+        fail(second.breaker(), 6);
+        then(first.breaker().getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+        then(second.breaker().getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+
+        first.synchronizer.flush();
+        then(second.breaker().getState()).isEqualTo(CircuitBreaker.State.OPEN);
+
+        second.synchronizer.flush();
+        then(first.breaker().getState()).isEqualTo(CircuitBreaker.State.OPEN);
+    }
+
+    @Test
+    public void given_nodesWithHealthyCalls_when_digestsExchanged_then_closed() {
+
+        Node first = node("first");
+        Node second = node("second");
+        IntStream.range(0, 6).forEach(i -> first.breaker().onSuccess(1, TimeUnit.MILLISECONDS));
+        fail(second.breaker(), 4);
+
+        first.synchronizer.flush();
+        second.synchronizer.flush();
+
+        then(first.breaker().getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+        then(second.breaker().getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    public void given_openNodes_when_oneCloses_then_otherProbes() {
+
+        Node first = node("first");
+        Node second = node("second");
+        first.breaker().transitionToOpenState();
+        first.synchronizer.flush();
+        second.synchronizer.flush();
+        then(second.breaker().getState()).isEqualTo(CircuitBreaker.State.OPEN);
+
+        first.breaker().transitionToHalfOpenState();
+        first.breaker().transitionToClosedState();
+        first.synchronizer.flush();
+
+        then(second.breaker().getState()).isEqualTo(CircuitBreaker.State.HALF_OPEN);
+    }
+
+    @Test
+    public void given_openPeer_when_breakerCreatedLater_then_startsOpen() {
+
+        Node first = node("first");
+        Node second = node("second");
+        first.breaker().transitionToOpenState();
+        first.synchronizer.flush();
+
+        then(second.registry.circuitBreaker("CB2").getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+        then(second.breaker().getState()).isEqualTo(CircuitBreaker.State.OPEN);
+    }
+
+    @Test
+    public void given_lostTransition_when_nextDigest_then_caughtUp() {
+
+        Node first = node("first");
+        Node second = node("second");
+        CircuitBreaker secondBreaker = second.breaker();
+        first.breaker();
+        first.synchronizer.flush();
+
+        first.breaker().transitionToOpenState();
+        first.transport.muted = true;
+        first.synchronizer.flush();
+        then(secondBreaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+
+        first.transport.muted = false;
+        clock.addAndGet(Duration.ofSeconds(1).toNanos());
+        first.synchronizer.flush();
+
+        then(secondBreaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+    }
+
+    @Test
+    public void given_reorderedMessages_when_received_then_staleOnesDropped() {
+
+        Node node = node("first");
+        CircuitBreaker breaker = node.breaker();
+
+        node.synchronizer.onMessage(message("remote", 2, CircuitBreaker.State.CLOSED));
+        node.synchronizer.onMessage(message("remote", 1, CircuitBreaker.State.OPEN));
+        node.synchronizer.onMessage(message("remote", 2, CircuitBreaker.State.OPEN));
+
+        then(breaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+        then(node.meterRegistry.counter("resilience.state-sync.messages", "direction", "dropped").count()).isEqualTo(2);
+
+        node.synchronizer.onMessage(message("remote", 3, CircuitBreaker.State.OPEN));
+        then(breaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+    }
+
+    @Test
+    public void given_ownOrForeignMessages_when_received_then_ignored() {
+
+        Node node = node("first");
+        CircuitBreaker breaker = node.breaker();
+
+        node.synchronizer.onMessage(message("first", 1, CircuitBreaker.State.OPEN));
+        node.synchronizer.onMessage(new BreakerStateMessage("other", "remote", CIRCUIT_BREAKER_1, 1, CircuitBreaker.State.OPEN, 0, 0));
+
+        then(breaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    public void given_manyBreakersFlapping_when_flushed_then_messageRateBounded() {
+
+        Node first = node("first");
+        Node second = node("second");
+        List<CircuitBreaker> breakers = new ArrayList<>();
+        IntStream.range(0, 50).forEach(i -> breakers.add(first.registry.circuitBreaker("CB" + i)));
+        first.synchronizer.flush();
+        int initialBurst = second.transport.received.size();
+
+        //10 seconds of flapping every flush, 100 flushes of 100ms
+        IntStream.range(0, 100).forEach(flush -> {
+            breakers.forEach(breaker -> {
+                breaker.transitionToOpenState();
+                breaker.transitionToClosedState();
+            });
+            clock.addAndGet(Duration.ofMillis(100).toNanos());
+            first.synchronizer.flush();
+        });
+
+        then(initialBurst).isEqualTo(20);
+        then(second.transport.received.size() - initialBurst).isEqualTo(100 * 2);
+        then(second.transport.received.stream().map(BreakerStateMessage::getState))
+            .containsOnly(CircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    public void given_message_when_encoded_then_decodedBack() {
+
+        BreakerStateMessage message = new BreakerStateMessage(channel, "node", CIRCUIT_BREAKER_1, 42, CircuitBreaker.State.HALF_OPEN, 10, 3);
+        byte[] bytes = message.encode();
+
+        then(BreakerStateMessage.decode(bytes, bytes.length)).isEqualTo(message);
+        then(bytes.length).isLessThan(128);
+    }
+
+    private BreakerStateMessage message(String node, long sequence, CircuitBreaker.State state) {
+        return new BreakerStateMessage(channel, node, CIRCUIT_BREAKER_1, sequence, state, 0, 0);
+    }
+
+    private static void fail(CircuitBreaker circuitBreaker, int calls) {
+        IntStream.range(0, calls).forEach(i -> circuitBreaker.onError(1, TimeUnit.MILLISECONDS, new IOException()));
+    }
+
+    private Node node(String nodeId) {
+        BreakerStateSyncProperties properties = new BreakerStateSyncProperties();
+        properties.setChannel(channel);
+        properties.setNodeId(nodeId);
+        properties.setFlushInterval(Duration.ofMillis(100));
+        properties.setDigestInterval(Duration.ofSeconds(1));
+        properties.setMaxMessagesPerSecond(20);
+
+        Node node = new Node(properties, new RecordingSync(channel));
+        transports.add(node.transport);
+        return node;
+    }
+
+    private class Node {
+
+        private final CircuitBreakerRegistry registry = CircuitBreakerRegistry.of(config);
+        private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        private final RecordingSync transport;
+        private final BreakerStateSynchronizer synchronizer;
+
+        Node(BreakerStateSyncProperties properties, RecordingSync transport) {
+            this.transport = transport;
+            this.synchronizer = new BreakerStateSynchronizer(properties, transport, registry, meterRegistry, clock::get);
+            this.synchronizer.connect();
+        }
+
+        CircuitBreaker breaker() {
+            return registry.circuitBreaker(CIRCUIT_BREAKER_1);
+        }
+    }
+
+    //Loopback transport keeping what it receives, and able to lose what it sends
+    private static class RecordingSync extends LoopbackBreakerStateSync {
+
+        private final List<BreakerStateMessage> received = new ArrayList<>();
+        private boolean muted;
+
+        RecordingSync(String channel) {
+            super(channel);
+            subscribe(received::add);
+        }
+
+        @Override
+        public void publish(BreakerStateMessage message) {
+            if (!muted) {
+                super.publish(message);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,77 @@
+package com.jab.resilience;
+
+import com.github.tomakehurst.wiremock.WireMockServer;
+import com.github.tomakehurst.wiremock.client.ResponseDefinitionBuilder;
+import com.github.tomakehurst.wiremock.client.WireMock;
+import com.github.tomakehurst.wiremock.http.Fault;
+import com.github.tomakehurst.wiremock.stubbing.Scenario;
+
+import java.util.function.IntFunction;
+
+/**
+ * Upstream behaviours used by the load tests, with the SLOs the app must keep under each one.
+ */
+public enum FaultProfile {
+
+    HEALTHY(200, 0.01, state -> ok()),
+
+    //Log-normal delays: median 20 ms, p99 around 330 ms
+    LATENCY_SPIKES(1_000, 0.05, state -> ok().withLogNormalRandomDelay(20, 1.2)),
+
+    //3 consecutive 500 every 10 upstream calls
+    ERROR_BURSTS(1_000, 0.35, state -> state >= 7 ? WireMock.aResponse().withStatus(500) : ok()),
+
+    //Body dribbled over 4s, the 3s time limiter must cut it
+    SLOW_DRIP(3_500, 1.0, state -> ok().withChunkedDribbleDelay(20, 4_000)),
+
+    //1 connection reset every 5 upstream calls
+    CONNECTION_RESETS(1_000, 0.25, state -> state == 0
+        ? WireMock.aResponse().withFault(Fault.CONNECTION_RESET_BY_PEER)
+        : ok());
+
+    private static final String SCENARIO_NAME = "fault_profile";
+    private static final int STATES = 10;
+
+    private final long p99SloMillis;
+    private final double fallbackRateSlo;
+    private final IntFunction<ResponseDefinitionBuilder> response;
+
+    FaultProfile(long p99SloMillis, double fallbackRateSlo, IntFunction<ResponseDefinitionBuilder> response) {
+        this.p99SloMillis = p99SloMillis;
+        this.fallbackRateSlo = fallbackRateSlo;
+        this.response = response;
+    }
+
+    public long getP99SloMillis() {
+        return p99SloMillis;
+    }
+
+    public double getFallbackRateSlo() {
+        return fallbackRateSlo;
+    }
+
+    /**
+     * Stub the upstream as a cycle of scenario states, each upstream call moving to the next one.
+     */
+    public void stub(WireMockServer wireMockServer, String path) {
+        for (int state = 0; state < STATES; state++) {
+            wireMockServer.stubFor(WireMock.get(WireMock.urlPathEqualTo(path))
+                .inScenario(SCENARIO_NAME)
+                .whenScenarioStateIs(stateName(state))
+                .willSetStateTo(stateName((state + 1) % STATES))
+                .willReturn(response.apply(state)));
+        }
+    }
+
+    private static String stateName(int state) {
+        return state == 0 ? Scenario.STARTED : "state-" + state;
+    }
+
+    private static ResponseDefinitionBuilder ok() {
+        return WireMock.aResponse()
+            .withStatus(200)
+            .withHeader("Content-Type", "application/json")
+            .withBodyFile("greek.json");
+    }
+
+}
@@ -0,0 +1,206 @@
+package com.jab.resilience;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import lombok.SneakyThrows;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.codec.DecodingException;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.client.ExchangeStrategies;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+import reactor.test.StepVerifier;
+
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.BDDAssertions.then;
+
+@Slf4j
+class JsonArrayStreamDecoderTests {
+
+    private static final int port = 8090;
+    private static final String address = "http://localhost:8090/greek-large";
+    private static final int SCALE = 10_000;
+    private static final int CHUNK_SIZE = 8 * 1024;
+    private static final int MAX_IN_MEMORY_SIZE = 16 * 1024 * 1024;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final JsonArrayStreamDecoder decoder = new JsonArrayStreamDecoder(objectMapper);
+
+    @Test
+    public void given_chunkedArray_when_decode_then_allElements() {
+
+        List<String> gods = readGreek();
+        byte[] payload = toJson(gods).getBytes(StandardCharsets.UTF_8);
+
+        for (int chunkSize = 1; chunkSize <= 7; chunkSize++) {
+            StepVerifier.create(decoder.decode(chunks(payload, chunkSize)).collectList())
+                .assertNext(decoded -> then(decoded).isEqualTo(gods))
+                .verifyComplete();
+        }
+    }
+
+    @Test
+    public void given_notAnArray_when_decode_then_Ko() {
+
+        byte[] payload = "{\"god\":\"Zeus\"}".getBytes(StandardCharsets.UTF_8);
+
+        StepVerifier.create(decoder.decode(chunks(payload, 4)))
+            .expectError(DecodingException.class)
+            .verify();
+    }
+
+    @Test
+    public void given_largeUpstreamArray_when_firstElement_then_sameResultAsBuffered() {
+
+        String largeBody = largeBody(readGreek());
+        byte[] payload = largeBody.getBytes(StandardCharsets.UTF_8);
+
+        //One flushed chunk every 10ms, about 2s for the whole body. WireMock dribbling sends no byte
+        //before its first interval and Jetty gathers the chunks, the first element came with the last ones
+        DisposableServer upstream = HttpServer.create()
+            .port(port)
+            .route(routes -> routes.get("/greek-large", (request, response) -> response
+                .header(HttpHeaderNames.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                .sendByteArray(Flux.fromIterable(byteChunks(payload, CHUNK_SIZE))
+                    .delayElements(Duration.ofMillis(10)))))
+            .bindNow();
+
+        //The buffered leg holds the whole body, above the 256 KB default of a WebClient built outside Boot
+        WebClient webClient = WebClient.builder()
+            .exchangeStrategies(ExchangeStrategies.builder()
+                .codecs(codecs -> codecs.defaultCodecs().maxInMemorySize(MAX_IN_MEMORY_SIZE))
+                .build())
+            .build();
+
+        long bufferedMillis;
+        long streamingMillis;
+        String buffered;
+        String streaming;
+        try {
+            long bufferedStart = System.nanoTime();
+            buffered = webClient.get().uri(address)
+                .retrieve()
+                .bodyToMono(String.class)
+                .map(this::fromJson)
+                .map(list -> list.get(0))
+                .block();
+            bufferedMillis = (System.nanoTime() - bufferedStart) / 1_000_000;
+
+            long streamingStart = System.nanoTime();
+            streaming = webClient.get().uri(address)
+                .retrieve()
+                .bodyToFlux(DataBuffer.class)
+                .transform(decoder::decode)
+                .next()
+                .block();
+            streamingMillis = (System.nanoTime() - streamingStart) / 1_000_000;
+        } finally {
+            upstream.disposeNow();
+        }
+
+        LOGGER.info("First element of {} bytes: buffered {} ms, streaming {} ms",
+            largeBody.length(), bufferedMillis, streamingMillis);
+
+        then(streaming).isEqualTo(buffered).isEqualTo("Zeus");
+        then(streamingMillis).isLessThan(bufferedMillis);
+    }
+
+    @Test
+    public void given_largeArray_when_firstElement_then_streamingAllocatesFarLessThanBuffered() {
+
+        byte[] payload = largeBody(readGreek()).getBytes(StandardCharsets.UTF_8);
+
+        //Warm up, class loading allocates on the calling thread too
+        firstBuffered(chunks(payload, CHUNK_SIZE));
+        firstStreaming(chunks(payload, CHUNK_SIZE));
+
+        Flux<DataBuffer> bufferedBody = chunks(payload, CHUNK_SIZE);
+        long bufferedStart = allocatedBytes();
+        String buffered = firstBuffered(bufferedBody);
+        long bufferedBytes = allocatedBytes() - bufferedStart;
+
+        Flux<DataBuffer> streamingBody = chunks(payload, CHUNK_SIZE);
+        long streamingStart = allocatedBytes();
+        String streaming = firstStreaming(streamingBody);
+        long streamingBytes = allocatedBytes() - streamingStart;
+
+        LOGGER.info("First element of {} bytes: buffered {} bytes allocated, streaming {} bytes allocated",
+            payload.length, bufferedBytes, streamingBytes);
+
+        then(streaming).isEqualTo(buffered).isEqualTo("Zeus");
+        then(bufferedBytes).isGreaterThan(payload.length);
+        then(streamingBytes).isLessThan(bufferedBytes / 10);
+    }
+
+    //Both decodings run on the calling thread, the body is already in memory
+    private String firstBuffered(Flux<DataBuffer> body) {
+        return DataBufferUtils.join(body)
+            .map(buffer -> buffer.toString(StandardCharsets.UTF_8))
+            .map(this::fromJson)
+            .map(list -> list.get(0))
+            .block();
+    }
+
+    private String firstStreaming(Flux<DataBuffer> body) {
+        return decoder.decode(body).next().block();
+    }
+
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()).getCurrentThreadAllocatedBytes();
+    }
+
+    private String largeBody(List<String> gods) {
+        return toJson(IntStream.range(0, SCALE)
+            .boxed()
+            .flatMap(i -> gods.stream())
+            .collect(Collectors.toList()));
+    }
+
+    private Flux<DataBuffer> chunks(byte[] payload, int chunkSize) {
+        DefaultDataBufferFactory bufferFactory = new DefaultDataBufferFactory();
+        return Flux.fromIterable(byteChunks(payload, chunkSize).stream()
+            .map(bufferFactory::wrap)
+            .collect(Collectors.toList()));
+    }
+
+    private static List<byte[]> byteChunks(byte[] payload, int chunkSize) {
+        List<byte[]> chunks = new ArrayList<>();
+        for (int i = 0; i < payload.length; i += chunkSize) {
+            chunks.add(Arrays.copyOfRange(payload, i, Math.min(payload.length, i + chunkSize)));
+        }
+        return chunks;
+    }
+
+    @SneakyThrows
+    private List<String> readGreek() {
+        return objectMapper.readValue(new ClassPathResource("__files/greek.json").getInputStream(),
+            new TypeReference<List<String>>() {});
+    }
+
+    @SneakyThrows
+    private List<String> fromJson(String json) {
+        return objectMapper.readValue(json, new TypeReference<List<String>>() {});
+    }
+
+    @SneakyThrows
+    private String toJson(List<String> list) {
+        return objectMapper.writeValueAsString(list);
+    }
+
+}
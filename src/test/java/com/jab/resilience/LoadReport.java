@@ -0,0 +1,73 @@
+package com.jab.resilience;
+
+import lombok.Value;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Summary of one load test run, written as JSON next to the build output.
+ */
+@Value
+public class LoadReport {
+
+    String profile;
+    int offeredRps;
+    long requests;
+    double throughput;
+    long p50Millis;
+    long p99Millis;
+    long p999Millis;
+    double fallbackRate;
+    long errors;
+    List<String> breakerTimeline;
+
+    /**
+     * Compute the report of a run.
+     */
+    public static LoadReport of(
+            FaultProfile profile,
+            int offeredRps,
+            long elapsedNanos,
+            List<Sample> samples,
+            List<String> breakerTimeline) {
+
+        List<Long> latencies = samples.stream()
+            .map(Sample::getLatencyMillis)
+            .sorted()
+            .collect(Collectors.toList());
+        long fallbacks = samples.stream().filter(Sample::isFallback).count();
+        long errors = samples.stream().filter(Sample::isError).count();
+
+        return new LoadReport(
+            profile.name(),
+            offeredRps,
+            samples.size(),
+            samples.size() / (elapsedNanos / 1e9),
+            percentile(latencies, 0.5),
+            percentile(latencies, 0.99),
+            percentile(latencies, 0.999),
+            samples.isEmpty() ? 0 : (double) fallbacks / samples.size(),
+            errors,
+            breakerTimeline);
+    }
+
+    private static long percentile(List<Long> sorted, double percentile) {
+        if (sorted.isEmpty()) {
+            return 0;
+        }
+        int index = (int) Math.ceil(sorted.size() * percentile) - 1;
+        return sorted.get(Math.max(0, index));
+    }
+
+    @Value
+    public static class Sample {
+
+        long latencyMillis;
+        boolean fallback;
+        //No response body: an error status or a failed connection, never a fallback
+        boolean error;
+
+    }
+
+}
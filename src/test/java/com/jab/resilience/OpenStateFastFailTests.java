@@ -0,0 +1,151 @@
+package com.jab.resilience;
+
+import com.github.tomakehurst.wiremock.WireMockServer;
+import com.github.tomakehurst.wiremock.client.WireMock;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import lombok.SneakyThrows;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import static com.jab.resilience.Constants.CIRCUIT_BREAKER_1;
+import static com.jab.resilience.Constants.FALLBACK_GOD_RESPONSE;
+import static org.assertj.core.api.BDDAssertions.then;
+import static org.assertj.core.api.BDDAssertions.thenThrownBy;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+    "resilience.retry.enabled=false",
+    "resilience.circuit-breaker.wait-duration-in-open-state=200ms"
+})
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+class OpenStateFastFailTests {
+
+    private static final int port = 8090;
+
+    WireMockServer wireMockServer;
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @Autowired
+    private CircuitBreakerRegistry circuitBreakerRegistry;
+
+    @Autowired
+    private FastFailProperties fastFailProperties;
+
+    @BeforeEach
+    public void setup() {
+        wireMockServer = new WireMockServer(port);
+        wireMockServer.start();
+        wireMockServer.stubFor(WireMock.get(WireMock.urlEqualTo("/greek"))
+            .willReturn(WireMock.aResponse().withHeader("Content-Type", "application/json")
+                .withStatus(200)
+                .withBodyFile("greek.json")));
+    }
+
+    @AfterEach
+    public void teardown() {
+        wireMockServer.stop();
+    }
+
+    @Test
+    public void given_openState_when_retrieve_then_preallocatedFallbackWithoutUpstreamCall() {
+
+        CircuitBreaker circuitBreaker = circuitBreakerRegistry.circuitBreaker(CIRCUIT_BREAKER_1);
+        circuitBreaker.transitionToOpenState();
+
+        webTestClient.get().uri("/api/retrieve").exchange()
+            .expectStatus().isOk()
+            .expectHeader().contentType(MediaType.TEXT_PLAIN)
+            .expectHeader().contentLength(FALLBACK_GOD_RESPONSE.length())
+            .expectBody(String.class).isEqualTo(FALLBACK_GOD_RESPONSE);
+
+        then(wireMockServer.getAllServeEvents()).isEmpty();
+        then(circuitBreaker.getMetrics().getNumberOfNotPermittedCalls()).isEqualTo(1);
+    }
+
+    @Test
+    public void given_openState_when_proxy_then_preallocatedFallbackBody() {
+
+        circuitBreakerRegistry.circuitBreaker(CIRCUIT_BREAKER_1).transitionToOpenState();
+
+        webTestClient.get().uri("/api/proxy").exchange()
+            .expectStatus().isOk()
+            .expectHeader().contentType(MediaType.APPLICATION_JSON)
+            .expectBody(String.class).isEqualTo("[\"" + FALLBACK_GOD_RESPONSE + "\"]");
+
+        then(wireMockServer.getAllServeEvents()).isEmpty();
+    }
+
+    @Test
+    public void given_fastFailDisabled_when_retrieve_then_sameFallbackFromProtectedPath() {
+
+        fastFailProperties.setEnabled(false);
+        CircuitBreaker circuitBreaker = circuitBreakerRegistry.circuitBreaker(CIRCUIT_BREAKER_1);
+        circuitBreaker.transitionToOpenState();
+
+        webTestClient.get().uri("/api/retrieve").exchange()
+            .expectStatus().isOk()
+            .expectBody(String.class).isEqualTo(FALLBACK_GOD_RESPONSE);
+
+        then(wireMockServer.getAllServeEvents()).isEmpty();
+        then(circuitBreaker.getMetrics().getNumberOfNotPermittedCalls()).isEqualTo(1);
+    }
+
+    @Test
+    public void given_openStateWaitElapsed_when_retrieve_then_trialCallReachesUpstream() {
+
+        CircuitBreaker circuitBreaker = circuitBreakerRegistry.circuitBreaker(CIRCUIT_BREAKER_1);
+        circuitBreaker.transitionToOpenState();
+        sleep(400);
+
+        webTestClient.get().uri("/api/retrieve").exchange()
+            .expectStatus().isOk()
+            .expectBody(String.class).isEqualTo("Zeus");
+
+        then(wireMockServer.getAllServeEvents()).hasSize(1);
+        then(circuitBreaker.getState()).isEqualTo(CircuitBreaker.State.HALF_OPEN);
+        then(circuitBreaker.getMetrics().getNumberOfSuccessfulCalls()).isEqualTo(1);
+    }
+
+    @Test
+    public void given_replacedBreaker_when_open_then_fastFailFollowsRegistry() {
+
+        circuitBreakerRegistry.circuitBreaker(CIRCUIT_BREAKER_1);
+        CircuitBreaker replacement = CircuitBreaker.of(CIRCUIT_BREAKER_1, CircuitBreakerConfig.ofDefaults());
+        circuitBreakerRegistry.replace(CIRCUIT_BREAKER_1, replacement);
+        replacement.transitionToForcedOpenState();
+
+        webTestClient.get().uri("/api/retrieve").exchange()
+            .expectStatus().isOk()
+            .expectBody(String.class).isEqualTo(FALLBACK_GOD_RESPONSE);
+
+        then(wireMockServer.getAllServeEvents()).isEmpty();
+        then(replacement.getMetrics().getNumberOfNotPermittedCalls()).isEqualTo(1);
+    }
+
+    @Test
+    public void given_openState_when_rejected_then_exceptionWithoutStackTrace() {
+
+        CircuitBreaker circuitBreaker = circuitBreakerRegistry.circuitBreaker(CIRCUIT_BREAKER_1);
+        circuitBreaker.transitionToOpenState();
+
+        thenThrownBy(() -> circuitBreaker.executeSupplier(() -> "Zeus"))
+            .isInstanceOf(CallNotPermittedException.class)
+            .satisfies(ex -> then(ex.getStackTrace()).isEmpty());
+    }
+
+    @SneakyThrows
+    private static void sleep(long millis) {
+        Thread.sleep(millis);
+    }
+
+}
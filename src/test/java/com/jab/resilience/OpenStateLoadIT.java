@@ -0,0 +1,155 @@
+package com.jab.resilience;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.management.OperatingSystemMXBean;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import lombok.SneakyThrows;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+import static com.jab.resilience.Constants.CIRCUIT_BREAKER_1;
+import static com.jab.resilience.Constants.FALLBACK_GOD_RESPONSE;
+import static org.assertj.core.api.BDDAssertions.then;
+
+/**
+ * Incident traffic: the breaker is forced open and /api/retrieve is loaded with and without
+ * resilience.fast-fail, the upstream is never called. The report compares latency and process CPU per request.
+ * Run with ./mvnw -Pload-test verify, -Dloadtest.open-state.rps and -Dloadtest.duration tune the load.
+ */
+@Slf4j
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+class OpenStateLoadIT {
+
+    private static final int RPS = Integer.getInteger("loadtest.open-state.rps", 1_000);
+    private static final Duration DURATION = Duration.parse("PT" + System.getProperty("loadtest.duration", "10s"));
+    private static final File REPORTS = new File("target/load-tests");
+
+    @LocalServerPort
+    int port;
+
+    @Autowired
+    private CircuitBreakerRegistry circuitBreakerRegistry;
+
+    @Autowired
+    private FastFailProperties fastFailProperties;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Test
+    public void given_openBreaker_when_load_then_fallbackWithinSlo() {
+
+        circuitBreakerRegistry.circuitBreaker(CIRCUIT_BREAKER_1).transitionToForcedOpenState();
+        WebClient webClient = WebClient.create("http://localhost:" + port);
+
+        Map<String, Summary> report = new TreeMap<>();
+        fastFailProperties.setEnabled(false);
+        report.put("protected-path", run(webClient));
+        fastFailProperties.setEnabled(true);
+        report.put("fast-fail", run(webClient));
+        write(report);
+
+        then(report.values()).allMatch(summary -> summary.getRequests() == RPS * DURATION.getSeconds());
+        then(report.values()).allMatch(summary -> summary.getErrors() == 0);
+        then(report.values()).allMatch(summary -> summary.getFallbackRate() == 1.0);
+        then(report.get("fast-fail").getP99Millis()).isLessThanOrEqualTo(50);
+    }
+
+    //Open model: one request every 1/RPS seconds, whatever the response times are
+    private Summary run(WebClient webClient) {
+        long cpuStart = processCpuNanos();
+        long start = System.nanoTime();
+        List<Sample> samples = Flux.interval(Duration.ofNanos(1_000_000_000L / RPS))
+            .take(RPS * DURATION.getSeconds())
+            .flatMap(i -> timed(webClient.get().uri("/api/retrieve")
+                .retrieve()
+                .bodyToMono(String.class)), Integer.MAX_VALUE)
+            .collectList()
+            .blockOptional()
+            .orElse(Collections.emptyList());
+        return Summary.of(samples, System.nanoTime() - start, processCpuNanos() - cpuStart);
+    }
+
+    private static Mono<Sample> timed(Mono<String> call) {
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            return call
+                .map(body -> new Sample((System.nanoTime() - start) / 1_000, FALLBACK_GOD_RESPONSE.equals(body), false))
+                .onErrorResume(error -> Mono.just(new Sample((System.nanoTime() - start) / 1_000, false, true)));
+        });
+    }
+
+    //Client and server share the process, the difference between runs is the server side
+    private static long processCpuNanos() {
+        return ((OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean()).getProcessCpuTime();
+    }
+
+    @SneakyThrows
+    private void write(Map<String, Summary> report) {
+        REPORTS.mkdirs();
+        objectMapper.writeValue(new File(REPORTS, "open-state.json"), report);
+        report.forEach((mode, summary) -> LOGGER.info("Open state load {}: {} requests, {} errors, {} rps, p50 {} us, p99 {} us, cpu {} us per request",
+            mode, summary.getRequests(), summary.getErrors(), String.format("%.1f", summary.getThroughput()),
+            summary.getP50Micros(), summary.getP99Micros(), summary.getCpuNanosPerRequest() / 1_000));
+    }
+
+    @Value
+    static class Sample {
+        long micros;
+        boolean fallback;
+        boolean error;
+    }
+
+    @Value
+    static class Summary {
+        int requests;
+        double throughput;
+        long p50Micros;
+        long p99Micros;
+        double fallbackRate;
+        long errors;
+        long cpuNanosPerRequest;
+
+        long getP99Millis() {
+            return p99Micros / 1_000;
+        }
+
+        static Summary of(List<Sample> samples, long elapsedNanos, long cpuNanos) {
+            List<Long> micros = samples.stream().map(Sample::getMicros).sorted().collect(Collectors.toList());
+            return new Summary(
+                samples.size(),
+                samples.size() / (elapsedNanos / 1e9),
+                percentile(micros, 0.5),
+                percentile(micros, 0.99),
+                samples.isEmpty() ? 0 : (double) samples.stream().filter(Sample::isFallback).count() / samples.size(),
+                samples.stream().filter(Sample::isError).count(),
+                samples.isEmpty() ? 0 : cpuNanos / samples.size());
+        }
+
+        private static long percentile(List<Long> sorted, double percentile) {
+            if (sorted.isEmpty()) {
+                return 0;
+            }
+            return sorted.get(Math.max(0, (int) Math.ceil(sorted.size() * percentile) - 1));
+        }
+    }
+
+}
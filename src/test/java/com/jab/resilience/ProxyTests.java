@@ -0,0 +1,131 @@
+package com.jab.resilience;
+
+import com.github.tomakehurst.wiremock.WireMockServer;
+import com.github.tomakehurst.wiremock.client.WireMock;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.http.MediaType;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static com.jab.resilience.Constants.CIRCUIT_BREAKER_1;
+import static com.jab.resilience.Constants.FALLBACK_GOD_RESPONSE;
+import static org.assertj.core.api.BDDAssertions.then;
+import static org.assertj.core.api.BDDAssertions.thenThrownBy;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+    "resilience.retry.enabled=false",
+    //Above the first call of a cold context on a small machine
+    "resilience.time-limiter.timeout=2s"
+})
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+class ProxyTests {
+
+    private static final int port = 8090;
+    private static final String FALLBACK_BODY = "[\"" + FALLBACK_GOD_RESPONSE + "\"]";
+
+    WireMockServer wireMockServer;
+
+    @LocalServerPort
+    int serverPort;
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @Autowired
+    private CircuitBreakerRegistry circuitBreakerRegistry;
+
+    @BeforeEach
+    public void setup() {
+        wireMockServer = new WireMockServer(port);
+        wireMockServer.start();
+    }
+
+    @AfterEach
+    public void teardown() {
+        wireMockServer.stop();
+    }
+
+    @Test
+    public void given_closeState_when_proxy_then_upstreamBodyUnchanged() throws IOException {
+
+        wireMockServer.stubFor(WireMock.get(WireMock.urlEqualTo("/greek"))
+            .willReturn(WireMock.aResponse().withHeader("Content-Type", "application/json")
+                .withStatus(200)
+                .withBodyFile("greek.json")));
+
+        byte[] body = webTestClient.get().uri("/api/proxy").exchange()
+            .expectStatus().isOk()
+            .expectHeader().contentType(MediaType.APPLICATION_JSON)
+            .expectBody().returnResult().getResponseBody();
+
+        then(body).isEqualTo(Files.readAllBytes(Paths.get("src/test/resources/__files/greek.json")));
+    }
+
+    @Test
+    public void given_upstreamError_when_proxy_then_fallbackBody() {
+
+        wireMockServer.stubFor(WireMock.get(WireMock.urlEqualTo("/greek"))
+            .willReturn(WireMock.aResponse().withStatus(500)));
+
+        webTestClient.get().uri("/api/proxy").exchange()
+            .expectStatus().isOk()
+            .expectBody(String.class).isEqualTo(FALLBACK_BODY);
+    }
+
+    @Test
+    public void given_openState_when_proxy_then_fallbackWithoutUpstreamCall() {
+
+        circuitBreakerRegistry.circuitBreaker(CIRCUIT_BREAKER_1).transitionToOpenState();
+
+        webTestClient.get().uri("/api/proxy").exchange()
+            .expectStatus().isOk()
+            .expectBody(String.class).isEqualTo(FALLBACK_BODY);
+        then(wireMockServer.getAllServeEvents()).isEmpty();
+    }
+
+    @Test
+    public void given_bytesCommitted_when_upstreamStalls_then_responseAbortedWithoutFallback() {
+
+        //First line right away, then nothing: WireMock spreads its dribble delay evenly, before the first chunk too.
+        //Whole lines, the client decodes a String per line
+        wireMockServer.stop();
+        DisposableServer stalling = HttpServer.create()
+            .port(port)
+            .route(routes -> routes.get("/greek", (request, response) -> response
+                .header(HttpHeaderNames.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                .sendString(Flux.just("[\n  \"Zeus\",\n").concatWith(Flux.never()))))
+            .bindNow();
+
+        List<String> received = new CopyOnWriteArrayList<>();
+        try {
+            thenThrownBy(() -> WebClient.create("http://localhost:" + serverPort).get().uri("/api/proxy")
+                .retrieve()
+                .bodyToFlux(String.class)
+                .doOnNext(received::add)
+                .blockLast());
+        } finally {
+            stalling.disposeNow();
+        }
+
+        then(received).isNotEmpty();
+        then(String.join("", received)).doesNotContain(FALLBACK_GOD_RESPONSE);
+    }
+
+}
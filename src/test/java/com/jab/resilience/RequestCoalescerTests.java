@@ -0,0 +1,89 @@
+package com.jab.resilience;
+
+import com.github.tomakehurst.wiremock.WireMockServer;
+import com.github.tomakehurst.wiremock.client.WireMock;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.List;
+
+import static com.jab.resilience.Constants.CIRCUIT_BREAKER_1;
+import static org.assertj.core.api.BDDAssertions.then;
+
+@SpringBootTest
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+class RequestCoalescerTests {
+
+    private static final int port = 8090;
+    private static final String address = "http://localhost:8090/greek";
+    private static final int CALLERS = 50;
+
+    WireMockServer wireMockServer;
+
+    @Autowired
+    private ServiceProtected service;
+
+    @Autowired
+    private RequestCoalescingProperties requestCoalescingProperties;
+
+    @Autowired
+    private CircuitBreakerRegistry circuitBreakerRegistry;
+
+    @BeforeEach
+    public void setup() {
+        wireMockServer = new WireMockServer(port);
+        wireMockServer.start();
+        wireMockServer.stubFor(WireMock.get(WireMock.urlEqualTo("/greek"))
+            .willReturn(WireMock.aResponse().withHeader("Content-Type", "application/json")
+                .withStatus(200)
+                .withFixedDelay(500)
+                .withBodyFile("greek.json")));
+    }
+
+    @AfterEach
+    public void teardown() {
+        wireMockServer.stop();
+    }
+
+    @Test
+    public void given_concurrentCallers_when_retrieve_then_oneUpstreamCall() {
+
+        List<String> responses = Flux.range(0, CALLERS)
+            .flatMap(i -> service.retrieveReactive(address), CALLERS)
+            .collectList()
+            .block();
+
+        then(responses).hasSize(CALLERS).containsOnly("Zeus");
+        wireMockServer.verify(1, WireMock.getRequestedFor(WireMock.urlEqualTo("/greek")));
+        then(circuitBreakerRegistry.circuitBreaker(CIRCUIT_BREAKER_1).getMetrics().getNumberOfSuccessfulCalls())
+            .isEqualTo(1);
+    }
+
+    @Test
+    public void given_coalescingWindow_when_sequentialCalls_then_oneUpstreamCall() {
+
+        requestCoalescingProperties.setWindow(Duration.ofSeconds(5));
+
+        then(service.retrieve(address)).isEqualTo("Zeus");
+        then(service.retrieve(address)).isEqualTo("Zeus");
+
+        wireMockServer.verify(1, WireMock.getRequestedFor(WireMock.urlEqualTo("/greek")));
+    }
+
+    @Test
+    public void given_noWindow_when_sequentialCalls_then_oneUpstreamCallEach() {
+
+        then(service.retrieve(address)).isEqualTo("Zeus");
+        then(service.retrieve(address)).isEqualTo("Zeus");
+
+        wireMockServer.verify(2, WireMock.getRequestedFor(WireMock.urlEqualTo("/greek")));
+    }
+
+}
@@ -0,0 +1,114 @@
+package com.jab.resilience;
+
+import com.github.tomakehurst.wiremock.WireMockServer;
+import com.github.tomakehurst.wiremock.client.WireMock;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.jab.resilience.Constants.CIRCUIT_BREAKER_1;
+import static org.assertj.core.api.BDDAssertions.then;
+
+@Slf4j
+@SpringBootTest(properties = {
+    "resilience.hedging.percentile=0.9",
+    "resilience.hedging.initial-delay=100ms",
+    "resilience.hedging.min-samples=20",
+    "resilience.hedging.budget-percent=20"
+})
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+class RequestHedgerTests {
+
+    private static final int port = 8090;
+    private static final String address = "http://localhost:8090/greek";
+    private static final int CALLS = 150;
+
+    WireMockServer wireMockServer;
+
+    @Autowired
+    private ServiceProtected service;
+
+    @Autowired
+    private HedgingProperties hedgingProperties;
+
+    @Autowired
+    private CircuitBreakerRegistry circuitBreakerRegistry;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @BeforeEach
+    public void setup() {
+        wireMockServer = new WireMockServer(port);
+        wireMockServer.start();
+        //Heavy tail: median 20 ms, p99 around 650 ms
+        wireMockServer.stubFor(WireMock.get(WireMock.urlEqualTo("/greek"))
+            .willReturn(WireMock.aResponse().withHeader("Content-Type", "application/json")
+                .withStatus(200)
+                .withLogNormalRandomDelay(20, 1.5)
+                .withBodyFile("greek.json")));
+    }
+
+    @AfterEach
+    public void teardown() {
+        wireMockServer.stop();
+    }
+
+    @Test
+    public void given_randomDelays_when_hedging_then_lowerTailLatency() {
+
+        hedgingProperties.setEnabled(false);
+        long unhedgedP99 = p99(CALLS);
+
+        hedgingProperties.setEnabled(true);
+        long hedgedP99 = p99(CALLS);
+
+        double hedges = meterRegistry.get("resilience.hedging.attempts").counter().count();
+        LOGGER.info("p99 without hedging {} ms, with hedging {} ms, hedges {}", unhedgedP99, hedgedP99, hedges);
+
+        then(hedgedP99).isLessThan(unhedgedP99);
+        then(hedges).isPositive().isLessThanOrEqualTo(CALLS * 0.2 + hedgingProperties.getBudgetCapacity());
+    }
+
+    @Test
+    public void given_hedging_when_retrieve_then_oneBreakerCallPerRequest() {
+
+        hedgingProperties.setEnabled(true);
+        AtomicInteger recordedCalls = new AtomicInteger();
+        circuitBreakerRegistry.circuitBreaker(CIRCUIT_BREAKER_1).getEventPublisher()
+            .onSuccess(event -> recordedCalls.incrementAndGet())
+            .onError(event -> recordedCalls.incrementAndGet());
+
+        int calls = 50;
+        for (int i = 0; i < calls; i++) {
+            then(service.retrieve(address)).isEqualTo("Zeus");
+        }
+
+        then(recordedCalls.get()).isEqualTo(calls);
+        then(wireMockServer.findAll(WireMock.getRequestedFor(WireMock.urlEqualTo("/greek"))).size())
+            .isGreaterThanOrEqualTo(calls);
+    }
+
+    private long p99(int calls) {
+        List<Long> latencies = new ArrayList<>();
+        for (int i = 0; i < calls; i++) {
+            long start = System.nanoTime();
+            then(service.retrieve(address)).isEqualTo("Zeus");
+            latencies.add((System.nanoTime() - start) / 1_000_000);
+        }
+        Collections.sort(latencies);
+        return latencies.get((int) Math.ceil(calls * 0.99) - 1);
+    }
+
+}
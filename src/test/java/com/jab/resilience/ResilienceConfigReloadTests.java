@@ -0,0 +1,177 @@
+package com.jab.resilience;
+
+import com.github.tomakehurst.wiremock.WireMockServer;
+import com.github.tomakehurst.wiremock.client.WireMock;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cloud.context.refresh.ContextRefresher;
+import org.springframework.core.env.ConfigurableEnvironment;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.test.annotation.DirtiesContext;
+import reactor.core.publisher.Flux;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static com.jab.resilience.Constants.CIRCUIT_BREAKER_1;
+import static com.jab.resilience.Constants.FALLBACK_GOD_RESPONSE;
+import static org.assertj.core.api.BDDAssertions.then;
+
+//Timeouts well above the call duration, a refresh takes the CPU from the calls in flight on small machines
+@SpringBootTest(properties = {
+    "resilience.retry.enabled=false",
+    "resilience.time-limiter.timeout=10s"
+})
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+class ResilienceConfigReloadTests {
+
+    private static final int port = 8090;
+    private static final String address = "http://localhost:8090/greek";
+    private static final String EXPECTED_GOD_RESPONSE = "Zeus";
+
+    WireMockServer wireMockServer;
+
+    @Autowired
+    private ServiceProtected service;
+
+    @Autowired
+    private CircuitBreakerRegistry circuitBreakerRegistry;
+
+    @Autowired
+    private ContextRefresher contextRefresher;
+
+    @Autowired
+    private ConfigurableEnvironment environment;
+
+    private final Map<String, Object> overrides = new HashMap<>();
+
+    @BeforeEach
+    public void setup() {
+        wireMockServer = new WireMockServer(port);
+        wireMockServer.start();
+        environment.getPropertySources().addFirst(new MapPropertySource("reload-tests", overrides));
+    }
+
+    @AfterEach
+    public void teardown() {
+        wireMockServer.stop();
+    }
+
+    @Test
+    public void given_concurrentLoad_when_reload_then_noCallDisruptedAndNewConfigApplied() {
+
+        stubGreek(20);
+        service.retrieve(address);
+
+        CompletableFuture<List<String>> responses = Flux.range(0, 1000)
+            .flatMap(i -> service.retrieveReactive(address + "?call=" + i), 32)
+            .collectList()
+            .toFuture();
+
+        IntStream.range(0, 10).forEach(i -> reload(Map.of(
+            "resilience.circuit-breaker.failure-rate-threshold", 40 + i,
+            "resilience.time-limiter.timeout", (10 + i % 2) + "s")));
+
+        then(responses.join()).hasSize(1000).containsOnly(EXPECTED_GOD_RESPONSE);
+        then(circuitBreakerRegistry.circuitBreaker(CIRCUIT_BREAKER_1).getCircuitBreakerConfig().getFailureRateThreshold())
+            .isEqualTo(49f);
+    }
+
+    @Test
+    public void given_openBreaker_when_reload_then_stillOpenWithNewConfig() {
+
+        stubGreek(0);
+        then(service.retrieve(address)).isEqualTo(EXPECTED_GOD_RESPONSE);
+        circuitBreakerRegistry.circuitBreaker(CIRCUIT_BREAKER_1).transitionToOpenState();
+
+        reload(Map.of("resilience.circuit-breaker.wait-duration-in-open-state", "60s"));
+
+        CircuitBreaker circuitBreaker = circuitBreakerRegistry.circuitBreaker(CIRCUIT_BREAKER_1);
+        then(circuitBreaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+        then(circuitBreaker.getCircuitBreakerConfig().getWaitDurationInOpenState().getSeconds()).isEqualTo(60);
+        then(service.retrieve(address)).isEqualTo(FALLBACK_GOD_RESPONSE);
+    }
+
+    @Test
+    public void given_closedBreakerWithCalls_when_reload_then_windowKept() {
+
+        stubGreek(0);
+        then(service.retrieve(address)).isEqualTo(EXPECTED_GOD_RESPONSE);
+
+        reload(Map.of("resilience.circuit-breaker.failure-rate-threshold", 50));
+
+        CircuitBreaker circuitBreaker = circuitBreakerRegistry.circuitBreaker(CIRCUIT_BREAKER_1);
+        then(circuitBreaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+        then(circuitBreaker.getMetrics().getNumberOfSuccessfulCalls()).isEqualTo(1);
+
+        //The replayed success and one failure fill the 2 calls window at 50%
+        wireMockServer.resetAll();
+        wireMockServer.stubFor(WireMock.get(WireMock.urlEqualTo("/greek"))
+            .willReturn(WireMock.aResponse().withStatus(500)));
+        then(service.retrieve(address)).isEqualTo(FALLBACK_GOD_RESPONSE);
+
+        then(circuitBreakerRegistry.circuitBreaker(CIRCUIT_BREAKER_1).getState()).isEqualTo(CircuitBreaker.State.OPEN);
+    }
+
+    @Test
+    public void given_shorterTimeout_when_reload_then_appliedToExistingBreaker() {
+
+        stubGreek(0);
+        then(service.retrieve(address)).isEqualTo(EXPECTED_GOD_RESPONSE);
+
+        reload(Map.of("resilience.time-limiter.timeout", "500ms"));
+        wireMockServer.resetAll();
+        stubGreek(1500);
+
+        then(service.retrieve(address)).isEqualTo(FALLBACK_GOD_RESPONSE);
+    }
+
+    @Test
+    public void given_eventConsumerOnBreaker_when_reload_then_stillNotified() {
+
+        stubGreek(0);
+        then(service.retrieve(address)).isEqualTo(EXPECTED_GOD_RESPONSE);
+        AtomicInteger errors = new AtomicInteger();
+        AtomicInteger transitions = new AtomicInteger();
+        circuitBreakerRegistry.circuitBreaker(CIRCUIT_BREAKER_1).getEventPublisher()
+            .onError(event -> errors.incrementAndGet())
+            .onStateTransition(event -> transitions.incrementAndGet());
+
+        reload(Map.of("resilience.circuit-breaker.failure-rate-threshold", 50));
+        reload(Map.of("resilience.circuit-breaker.failure-rate-threshold", 40));
+
+        //The replayed success is not published, the real failure is
+        then(errors.get()).isZero();
+        wireMockServer.resetAll();
+        wireMockServer.stubFor(WireMock.get(WireMock.urlEqualTo("/greek"))
+            .willReturn(WireMock.aResponse().withStatus(500)));
+        then(service.retrieve(address)).isEqualTo(FALLBACK_GOD_RESPONSE);
+
+        then(errors.get()).isEqualTo(1);
+        then(transitions.get()).isEqualTo(1);
+        then(circuitBreakerRegistry.circuitBreaker(CIRCUIT_BREAKER_1).getState()).isEqualTo(CircuitBreaker.State.OPEN);
+    }
+
+    private void reload(Map<String, Object> values) {
+        overrides.putAll(values);
+        contextRefresher.refresh();
+    }
+
+    private void stubGreek(int delayMillis) {
+        wireMockServer.stubFor(WireMock.get(WireMock.urlPathEqualTo("/greek"))
+            .willReturn(WireMock.aResponse().withHeader("Content-Type", "application/json")
+                .withStatus(200)
+                .withFixedDelay(delayMillis)
+                .withBodyFile("greek.json")));
+    }
+
+}
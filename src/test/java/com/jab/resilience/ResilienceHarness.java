@@ -0,0 +1,332 @@
+package com.jab.resilience;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.timelimiter.TimeLimiterConfig;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.Getter;
+import lombok.SneakyThrows;
+import lombok.Value;
+import org.springframework.cloud.circuitbreaker.resilience4j.ReactiveResilience4JCircuitBreakerFactory;
+import org.springframework.cloud.circuitbreaker.resilience4j.Resilience4JCircuitBreakerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+import reactor.test.scheduler.VirtualTimeScheduler;
+
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import static com.jab.resilience.Constants.CIRCUIT_BREAKER_1;
+
+/**
+ * The reactive protected pipeline wired by hand, without a Spring context, on virtual time.
+ *
+ * Every Reactor timer (time limiter, retry backoff, hedge delay, upstream delays) runs on a
+ * {@link VirtualTimeScheduler} and the breakers measure their OPEN state on a clock reading it, so a call
+ * to a 3s slow upstream or a 60s OPEN state take no wall clock time. The upstream is a scripted
+ * {@link ExchangeFunction}, replies are served in order and the last one repeats. One harness per test,
+ * the virtual scheduler replaces the Reactor default schedulers until {@link #close()}.
+ */
+class ResilienceHarness implements AutoCloseable {
+
+    static final String ADDRESS = "http://localhost:8090/greek";
+
+    private static final Duration STEP = Duration.ofMillis(1);
+    private static final Duration MAX_CALL_DURATION = Duration.ofMinutes(10);
+
+    private final VirtualTimeScheduler scheduler;
+    private final ScriptedUpstream upstream = new ScriptedUpstream();
+    private final Settings settings;
+    private final CircuitBreakerRegistry circuitBreakerRegistry;
+    private final ServiceProtected service;
+    private final ResilienceConfigReloader reloader;
+
+    @Getter
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private ResilienceHarness(Settings settings) {
+        this.scheduler = VirtualTimeScheduler.getOrSet();
+        this.settings = settings;
+        Clock clock = new VirtualClock(scheduler);
+
+        MainConfiguration configuration = new MainConfiguration();
+        CircuitBreakerConfig circuitBreakerConfig = configuration.circuitBreakerConfig(settings.circuitBreaker);
+        TimeLimiterConfig timeLimiterConfig = configuration.timeLimiterConfig(settings.timeLimiter);
+        ClockedCircuitBreakerRegistry circuitBreakerRegistry =
+            configuration.circuitBreakerRegistry(circuitBreakerConfig, settings.window, clock);
+        this.circuitBreakerRegistry = circuitBreakerRegistry;
+
+        UpstreamIsolation upstreamIsolation = new UpstreamIsolation(settings.isolation, circuitBreakerConfig,
+            timeLimiterConfig, circuitBreakerRegistry, BulkheadRegistry.ofDefaults(), settings.limiter,
+            settings.retry, meterRegistry);
+        UpstreamPool upstreamPool = new UpstreamPool(settings.pool, upstreamIsolation, circuitBreakerRegistry,
+            meterRegistry, () -> TimeUnit.MILLISECONDS.toNanos(now()));
+        ReactiveResilience4JCircuitBreakerFactory circuitBreakerFactory = new ReactiveResilience4JCircuitBreakerFactory();
+        configuration.defaultCustomizer2(upstreamIsolation, circuitBreakerRegistry).customize(circuitBreakerFactory);
+
+        ObjectMapper objectMapper = new ObjectMapper();
+        this.service = new ServiceProtectedImpl(
+            circuitBreakerFactory,
+            WebClient.builder().exchangeFunction(upstream).build(),
+            objectMapper.readerFor(new TypeReference<List<String>>() {}),
+            new JsonArrayStreamDecoder(objectMapper),
+            settings.upstreamClient,
+            new ResponseCache(settings.cache, meterRegistry),
+            new SnapshotStore(new SnapshotStoreProperties(), meterRegistry),
+            new RequestCoalescer(settings.coalescing, meterRegistry),
+            upstreamIsolation,
+            upstreamPool,
+            new OpenStateFastFail(settings.fastFail, circuitBreakerRegistry, upstreamIsolation, upstreamPool),
+            new RequestHedger(settings.hedging, meterRegistry),
+            //Only the reactive pipeline runs on virtual time, the blocking factory is not wired
+            null,
+            new BlockingExecutionProperties(),
+            new BatchProperties(),
+            new StageMetrics(settings.instrumentation, meterRegistry));
+        //The blocking factory is only configured on reload, no call goes through it
+        this.reloader = new ResilienceConfigReloader(settings.circuitBreaker, settings.timeLimiter,
+            upstreamIsolation, circuitBreakerRegistry, circuitBreakerFactory, new Resilience4JCircuitBreakerFactory());
+    }
+
+    /**
+     * Harness on the default properties, with the CB1 route of application.yml and the instrumentation off.
+     *
+     * @param customizer settings to change before the pipeline is built
+     * @return harness, to close
+     */
+    static ResilienceHarness start(Consumer<Settings> customizer) {
+        Settings settings = new Settings();
+        customizer.accept(settings);
+        return new ResilienceHarness(settings);
+    }
+
+    /**
+     * Script the next upstream replies.
+     *
+     * @param replies served in order, the last one repeats
+     * @return this harness
+     */
+    ResilienceHarness upstreamReplies(Reply... replies) {
+        upstream.script(replies);
+        return this;
+    }
+
+    /**
+     * Retrieve the upstream address, moving virtual time 1ms at a time until the call completes.
+     *
+     * @return response and virtual duration
+     */
+    Call retrieve() {
+        return retrieve(ADDRESS);
+    }
+
+    /**
+     * Retrieve an address, moving virtual time 1ms at a time until the call completes.
+     *
+     * @param url upstream address, logical or not
+     * @return response and virtual duration
+     */
+    @SneakyThrows
+    Call retrieve(String url) {
+        long start = now();
+        CompletableFuture<String> response = service.retrieveReactive(url).toFuture();
+        scheduler.advanceTime();
+        while (!response.isDone() && now() - start < MAX_CALL_DURATION.toMillis()) {
+            scheduler.advanceTimeBy(STEP);
+        }
+        if (!response.isDone()) {
+            throw new IllegalStateException("Call still running after " + MAX_CALL_DURATION);
+        }
+        return new Call(response.get(), Duration.ofMillis(now() - start));
+    }
+
+    /**
+     * Change the settings and reload them, as a refresh of the bound properties does.
+     *
+     * @param change settings to change
+     */
+    void reload(Consumer<Settings> change) {
+        change.accept(settings);
+        reloader.reload();
+    }
+
+    void advance(Duration duration) {
+        scheduler.advanceTimeBy(duration);
+    }
+
+    CircuitBreaker.State state() {
+        return circuitBreaker().getState();
+    }
+
+    CircuitBreaker circuitBreaker() {
+        return circuitBreakerRegistry.circuitBreaker(CIRCUIT_BREAKER_1);
+    }
+
+    int upstreamCalls() {
+        return upstream.calls.get();
+    }
+
+    List<String> upstreamAuthorities() {
+        return List.copyOf(upstream.authorities);
+    }
+
+    @Override
+    public void close() {
+        VirtualTimeScheduler.reset();
+    }
+
+    private long now() {
+        return scheduler.now(TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Properties of the harness pipeline, plain instances of the bound classes.
+     */
+    @Getter
+    static class Settings {
+
+        private final CircuitBreakerProperties circuitBreaker = new CircuitBreakerProperties();
+        private final TimeLimiterProperties timeLimiter = new TimeLimiterProperties();
+        private final RetryProperties retry = new RetryProperties();
+        private final UpstreamIsolationProperties isolation = new UpstreamIsolationProperties();
+        private final AdaptiveLimiterProperties limiter = new AdaptiveLimiterProperties();
+        private final HedgingProperties hedging = new HedgingProperties();
+        private final RequestCoalescingProperties coalescing = new RequestCoalescingProperties();
+        private final ResponseCacheProperties cache = new ResponseCacheProperties();
+        private final SlidingWindowProperties window = new SlidingWindowProperties();
+        private final InstrumentationProperties instrumentation = new InstrumentationProperties();
+        private final UpstreamClientProperties upstreamClient = new UpstreamClientProperties();
+        private final UpstreamPoolProperties pool = new UpstreamPoolProperties();
+        private final FastFailProperties fastFail = new FastFailProperties();
+
+        Settings() {
+            isolation.getRoutes().put(CIRCUIT_BREAKER_1, "/greek/**");
+            instrumentation.setEnabled(false);
+        }
+    }
+
+    @Value
+    static class Call {
+        String response;
+        Duration duration;
+    }
+
+    /**
+     * One scripted upstream reply: a status, the greek.json body when 200, after a virtual delay.
+     */
+    @Value
+    static class Reply {
+
+        HttpStatus status;
+        Duration delay;
+
+        static Reply ok() {
+            return new Reply(HttpStatus.OK, Duration.ZERO);
+        }
+
+        static Reply ok(Duration delay) {
+            return new Reply(HttpStatus.OK, delay);
+        }
+
+        static Reply error() {
+            return new Reply(HttpStatus.INTERNAL_SERVER_ERROR, Duration.ZERO);
+        }
+
+        static Reply[] times(int count, Reply reply) {
+            Reply[] replies = new Reply[count];
+            Arrays.fill(replies, reply);
+            return replies;
+        }
+    }
+
+    private static class ScriptedUpstream implements ExchangeFunction {
+
+        private static final String BODY = readGreek();
+
+        private final Deque<Reply> replies = new ArrayDeque<>();
+        private final AtomicInteger calls = new AtomicInteger();
+        private final List<String> authorities = new CopyOnWriteArrayList<>();
+        private Reply last = Reply.ok();
+
+        synchronized void script(Reply... next) {
+            replies.clear();
+            replies.addAll(Arrays.asList(next));
+        }
+
+        @Override
+        public Mono<ClientResponse> exchange(ClientRequest request) {
+            return Mono.defer(() -> {
+                calls.incrementAndGet();
+                authorities.add(request.url().getRawAuthority());
+                Reply reply = next();
+                Mono<ClientResponse> response = Mono.fromSupplier(() -> ClientResponse.create(reply.getStatus())
+                    .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                    .body(reply.getStatus() == HttpStatus.OK ? BODY : "")
+                    .build());
+                return reply.getDelay().isZero() ? response : Mono.delay(reply.getDelay()).then(response);
+            });
+        }
+
+        private synchronized Reply next() {
+            if (!replies.isEmpty()) {
+                last = replies.poll();
+            }
+            return last;
+        }
+
+        @SneakyThrows
+        private static String readGreek() {
+            return Files.readString(Paths.get("src/test/resources/__files/greek.json"));
+        }
+    }
+
+    private static class VirtualClock extends Clock {
+
+        private final VirtualTimeScheduler scheduler;
+
+        VirtualClock(VirtualTimeScheduler scheduler) {
+            this.scheduler = scheduler;
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return Instant.ofEpochMilli(scheduler.now(TimeUnit.MILLISECONDS));
+        }
+    }
+
+}
@@ -0,0 +1,297 @@
+package com.jab.resilience;
+
+import com.jab.resilience.ResilienceHarness.Call;
+import com.jab.resilience.ResilienceHarness.Reply;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static com.jab.resilience.Constants.FALLBACK_GOD_RESPONSE;
+import static com.jab.resilience.ResilienceHarness.Reply.error;
+import static com.jab.resilience.ResilienceHarness.Reply.ok;
+import static com.jab.resilience.ResilienceHarness.Reply.times;
+import static org.assertj.core.api.BDDAssertions.then;
+
+/**
+ * Breaker, time limiter and retry scenarios on virtual time, no Spring context and no sleeps.
+ */
+class ResilienceScenarioTests {
+
+    //The breaker leaves OPEN once the clock is strictly after the wait
+    private static final Duration OPEN_WAIT = Duration.ofSeconds(60);
+
+    private static ResilienceHarness breakerOfFour() {
+        return ResilienceHarness.start(settings -> {
+            settings.getCircuitBreaker().setSlidingWindowSize(4);
+            settings.getCircuitBreaker().setMinimumNumberOfCalls(4);
+            settings.getCircuitBreaker().setWaitDurationInOpenState(OPEN_WAIT);
+            settings.getCircuitBreaker().setPermittedNumberOfCallsInHalfOpenState(2);
+            settings.getRetry().setEnabled(false);
+        });
+    }
+
+    //The 2 calls window of application.yml, opening once it is full
+    private static ResilienceHarness breakerOfTwo() {
+        return ResilienceHarness.start(settings -> {
+            settings.getCircuitBreaker().setMinimumNumberOfCalls(2);
+            settings.getRetry().setEnabled(false);
+        });
+    }
+
+    private static void open(ResilienceHarness harness) {
+        harness.upstreamReplies(error());
+        IntStream.range(0, 4).forEach(i -> harness.retrieve());
+    }
+
+    @Test
+    public void given_failingUpstream_when_windowFull_then_openAndFallbackWithoutUpstreamCall() {
+
+        try (ResilienceHarness harness = breakerOfFour()) {
+            open(harness);
+            then(harness.state()).isEqualTo(CircuitBreaker.State.OPEN);
+
+            Call call = harness.retrieve();
+
+            then(call.getResponse()).isEqualTo(FALLBACK_GOD_RESPONSE);
+            then(call.getDuration()).isZero();
+            then(harness.upstreamCalls()).isEqualTo(4);
+        }
+    }
+
+    @Test
+    public void given_openState_when_waitNotElapsed_then_stillOpen() {
+
+        try (ResilienceHarness harness = breakerOfFour()) {
+            open(harness);
+            harness.upstreamReplies(ok());
+
+            harness.advance(OPEN_WAIT.minusMillis(1));
+
+            then(harness.retrieve().getResponse()).isEqualTo(FALLBACK_GOD_RESPONSE);
+            then(harness.state()).isEqualTo(CircuitBreaker.State.OPEN);
+            then(harness.upstreamCalls()).isEqualTo(4);
+        }
+    }
+
+    @Test
+    public void given_openState_when_waitElapsedAndUpstreamRecovered_then_halfOpenThenClosed() {
+
+        try (ResilienceHarness harness = breakerOfFour()) {
+            open(harness);
+            harness.upstreamReplies(ok());
+
+            harness.advance(OPEN_WAIT.plusMillis(1));
+
+            then(harness.retrieve().getResponse()).isEqualTo("Zeus");
+            then(harness.state()).isEqualTo(CircuitBreaker.State.HALF_OPEN);
+            then(harness.retrieve().getResponse()).isEqualTo("Zeus");
+            then(harness.state()).isEqualTo(CircuitBreaker.State.CLOSED);
+            then(harness.upstreamCalls()).isEqualTo(6);
+        }
+    }
+
+    @Test
+    public void given_halfOpenState_when_upstreamStillFailing_then_openAgain() {
+
+        try (ResilienceHarness harness = breakerOfFour()) {
+            open(harness);
+
+            harness.advance(OPEN_WAIT.plusMillis(1));
+            harness.retrieve();
+            harness.retrieve();
+
+            then(harness.state()).isEqualTo(CircuitBreaker.State.OPEN);
+            then(harness.retrieve().getResponse()).isEqualTo(FALLBACK_GOD_RESPONSE);
+            then(harness.upstreamCalls()).isEqualTo(6);
+        }
+    }
+
+    @Test
+    public void given_slowUpstream_when_timeoutReached_then_fallbackAfterTimeoutAndFailureRecorded() {
+
+        try (ResilienceHarness harness = breakerOfFour()) {
+            harness.upstreamReplies(ok(Duration.ofMillis(3_500)));
+
+            Call call = harness.retrieve();
+
+            then(call.getResponse()).isEqualTo(FALLBACK_GOD_RESPONSE);
+            then(call.getDuration()).isEqualTo(Duration.ofSeconds(3));
+            then(harness.circuitBreaker().getMetrics().getNumberOfFailedCalls()).isEqualTo(1);
+        }
+    }
+
+    @Test
+    public void given_slowUpstream_when_underTimeout_then_upstreamResponse() {
+
+        try (ResilienceHarness harness = breakerOfFour()) {
+            harness.upstreamReplies(ok(Duration.ofMillis(2_900)));
+
+            Call call = harness.retrieve();
+
+            then(call.getResponse()).isEqualTo("Zeus");
+            then(call.getDuration()).isEqualTo(Duration.ofMillis(2_900));
+            then(harness.circuitBreaker().getMetrics().getNumberOfSuccessfulCalls()).isEqualTo(1);
+        }
+    }
+
+    @Test
+    public void given_transientErrors_when_retry_then_upstreamResponseAsOneBreakerCall() {
+
+        try (ResilienceHarness harness = ResilienceHarness.start(settings -> { })) {
+            harness.upstreamReplies(error(), error(), ok());
+
+            Call call = harness.retrieve();
+
+            then(call.getResponse()).isEqualTo("Zeus");
+            then(harness.upstreamCalls()).isEqualTo(3);
+            //Full jitter: at most the initial backoff, then at most twice it
+            then(call.getDuration()).isLessThanOrEqualTo(Duration.ofMillis(50 + 100));
+            then(harness.circuitBreaker().getMetrics().getNumberOfSuccessfulCalls()).isEqualTo(1);
+            then(harness.circuitBreaker().getMetrics().getNumberOfFailedCalls()).isZero();
+        }
+    }
+
+    @Test
+    public void given_persistentErrors_when_retriesExhausted_then_fallbackAndOneFailure() {
+
+        try (ResilienceHarness harness = ResilienceHarness.start(settings -> { })) {
+            harness.upstreamReplies(error());
+
+            Call call = harness.retrieve();
+
+            then(call.getResponse()).isEqualTo(FALLBACK_GOD_RESPONSE);
+            then(harness.upstreamCalls()).isEqualTo(3);
+            then(harness.circuitBreaker().getMetrics().getNumberOfFailedCalls()).isEqualTo(1);
+        }
+    }
+
+    @Test
+    public void given_closeState_when_upstreamFailsAfterTwoCalls_then_open() {
+
+        try (ResilienceHarness harness = breakerOfTwo()) {
+            harness.upstreamReplies(ok(), ok(), error());
+
+            then(harness.retrieve().getResponse()).isEqualTo("Zeus");
+            then(harness.retrieve().getResponse()).isEqualTo("Zeus");
+            then(harness.retrieve().getResponse()).isEqualTo(FALLBACK_GOD_RESPONSE);
+
+            then(harness.state()).isEqualTo(CircuitBreaker.State.OPEN);
+        }
+    }
+
+    @Test
+    public void given_openedByFailure_when_waitElapsed_then_halfOpenWithUpstreamResponse() {
+
+        try (ResilienceHarness harness = breakerOfTwo()) {
+            harness.upstreamReplies(ok(), ok(), error(), ok());
+            harness.retrieve();
+            harness.retrieve();
+            harness.retrieve();
+
+            then(harness.retrieve().getResponse()).isEqualTo(FALLBACK_GOD_RESPONSE);
+            then(harness.retrieve().getResponse()).isEqualTo(FALLBACK_GOD_RESPONSE);
+            then(harness.upstreamCalls()).isEqualTo(3);
+
+            harness.advance(Duration.ofSeconds(1).plusMillis(1));
+
+            then(harness.retrieve().getResponse()).isEqualTo("Zeus");
+            then(harness.state()).isEqualTo(CircuitBreaker.State.HALF_OPEN);
+        }
+    }
+
+    @Test
+    public void given_slowUpstream_when_windowOfTimeouts_then_open() {
+
+        try (ResilienceHarness harness = breakerOfTwo()) {
+            harness.upstreamReplies(ok(Duration.ofMillis(3_500)));
+
+            then(harness.retrieve().getResponse()).isEqualTo(FALLBACK_GOD_RESPONSE);
+            then(harness.state()).isEqualTo(CircuitBreaker.State.CLOSED);
+
+            then(harness.retrieve().getResponse()).isEqualTo(FALLBACK_GOD_RESPONSE);
+            then(harness.state()).isEqualTo(CircuitBreaker.State.OPEN);
+
+            Call call = harness.retrieve();
+            then(call.getResponse()).isEqualTo(FALLBACK_GOD_RESPONSE);
+            then(call.getDuration()).isZero();
+            then(harness.upstreamCalls()).isEqualTo(2);
+        }
+    }
+
+    @Test
+    public void given_openState_when_reloadWithShorterWait_then_replacementLeavesOpenOnVirtualTime() {
+
+        try (ResilienceHarness harness = breakerOfFour()) {
+            open(harness);
+            harness.upstreamReplies(ok());
+
+            harness.reload(settings -> settings.getCircuitBreaker().setWaitDurationInOpenState(Duration.ofSeconds(5)));
+            then(harness.state()).isEqualTo(CircuitBreaker.State.OPEN);
+
+            harness.advance(Duration.ofSeconds(5).plusMillis(1));
+
+            then(harness.retrieve().getResponse()).isEqualTo("Zeus");
+            then(harness.state()).isEqualTo(CircuitBreaker.State.HALF_OPEN);
+            then(harness.upstreamCalls()).isEqualTo(5);
+        }
+    }
+
+    @Test
+    public void given_pooledUpstream_when_retry_then_endpointPickedAgain() {
+
+        try (ResilienceHarness harness = ResilienceHarness.start(settings -> {
+            settings.getPool().getUpstreams().put("greek", List.of("http://localhost:8091", "http://localhost:8092"));
+            //The failed endpoint is ejected at once, so the retry can only pick the other one
+            settings.getPool().setConsecutiveFailures(1);
+        })) {
+            harness.upstreamReplies(error(), ok());
+
+            Call call = harness.retrieve("lb://greek/greek");
+
+            then(call.getResponse()).isEqualTo("Zeus");
+            then(harness.upstreamAuthorities()).hasSize(2).doesNotHaveDuplicates();
+        }
+    }
+
+    static Stream<Arguments> windows() {
+        List<Arguments> arguments = new ArrayList<>();
+        for (int window = 2; window <= 10; window++) {
+            for (int failures = 0; failures <= window; failures++) {
+                arguments.add(Arguments.of(window, failures));
+            }
+        }
+        return arguments.stream();
+    }
+
+    @ParameterizedTest
+    @MethodSource("windows")
+    public void given_failureMix_when_windowFull_then_openFromFailureRateThreshold(int window, int failures) {
+
+        try (ResilienceHarness harness = ResilienceHarness.start(settings -> {
+            settings.getCircuitBreaker().setSlidingWindowSize(window);
+            settings.getCircuitBreaker().setMinimumNumberOfCalls(window);
+            settings.getRetry().setEnabled(false);
+        })) {
+            Reply[] replies = Stream.concat(
+                Arrays.stream(times(failures, error())),
+                Arrays.stream(times(window - failures, ok())))
+                .toArray(Reply[]::new);
+            harness.upstreamReplies(replies);
+
+            IntStream.range(0, window).forEach(i -> harness.retrieve());
+
+            boolean overThreshold = failures * 100 >= window * 50;
+            then(harness.state()).isEqualTo(overThreshold ? CircuitBreaker.State.OPEN : CircuitBreaker.State.CLOSED);
+        }
+    }
+
+}
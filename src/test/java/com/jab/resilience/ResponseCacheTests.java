@@ -0,0 +1,124 @@
+package com.jab.resilience;
+
+import com.github.tomakehurst.wiremock.WireMockServer;
+import com.github.tomakehurst.wiremock.client.WireMock;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.SneakyThrows;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+
+import static com.jab.resilience.Constants.CIRCUIT_BREAKER_1;
+import static com.jab.resilience.Constants.FALLBACK_GOD_RESPONSE;
+import static org.assertj.core.api.BDDAssertions.then;
+
+@SpringBootTest(properties = {
+    "resilience.cache.enabled=true",
+    "resilience.cache.ttl=500ms",
+    "resilience.cache.stale-ttl=10s"
+})
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+class ResponseCacheTests {
+
+    private static final int port = 8090;
+    private static final String address = "http://localhost:8090/greek";
+
+    WireMockServer wireMockServer;
+
+    @Autowired
+    private ServiceProtected service;
+
+    @Autowired
+    private ResponseCacheProperties responseCacheProperties;
+
+    @Autowired
+    private CircuitBreakerRegistry circuitBreakerRegistry;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @BeforeEach
+    public void setup() {
+        wireMockServer = new WireMockServer(port);
+        wireMockServer.start();
+    }
+
+    @AfterEach
+    public void teardown() {
+        wireMockServer.stop();
+    }
+
+    @Test
+    public void given_freshEntry_when_retrieve_then_noUpstreamCall() {
+
+        stubGod("Zeus");
+
+        then(service.retrieve(address)).isEqualTo("Zeus");
+        then(service.retrieve(address)).isEqualTo("Zeus");
+        then(service.retrieve(address)).isEqualTo("Zeus");
+
+        wireMockServer.verify(1, WireMock.getRequestedFor(WireMock.urlEqualTo("/greek")));
+        then(count("hit")).isEqualTo(2);
+        then(count("miss")).isEqualTo(1);
+    }
+
+    @Test
+    public void given_staleEntry_when_retrieve_then_staleServedAndRevalidated() {
+
+        stubGod("Zeus");
+        then(service.retrieve(address)).isEqualTo("Zeus");
+
+        stubGod("Hera");
+        sleep(600);
+
+        then(service.retrieve(address)).isEqualTo("Zeus");
+        sleep(200);
+        then(service.retrieve(address)).isEqualTo("Hera");
+
+        then(count("stale")).isEqualTo(1);
+    }
+
+    @Test
+    public void given_openState_and_expiredEntry_when_retrieve_then_lastKnownGood() {
+
+        responseCacheProperties.setStaleWhileRevalidate(false);
+
+        stubGod("Zeus");
+        then(service.retrieve(address)).isEqualTo("Zeus");
+
+        circuitBreakerRegistry.circuitBreaker(CIRCUIT_BREAKER_1).transitionToOpenState();
+        sleep(600);
+
+        then(service.retrieve(address)).isEqualTo("Zeus");
+        then(count("stale-fallback")).isEqualTo(1);
+    }
+
+    @Test
+    public void given_openState_and_emptyCache_when_retrieve_then_fallback() {
+
+        circuitBreakerRegistry.circuitBreaker(CIRCUIT_BREAKER_1).transitionToOpenState();
+
+        then(service.retrieve(address)).isEqualTo(FALLBACK_GOD_RESPONSE);
+    }
+
+    private void stubGod(String god) {
+        wireMockServer.stubFor(WireMock.get(WireMock.urlEqualTo("/greek"))
+            .willReturn(WireMock.aResponse().withHeader("Content-Type", "application/json")
+                .withStatus(200)
+                .withBody("[\"" + god + "\"]")));
+    }
+
+    private double count(String result) {
+        return meterRegistry.get("resilience.cache.requests").tag("result", result).counter().count();
+    }
+
+    @SneakyThrows
+    private void sleep(long millis) {
+        Thread.sleep(millis);
+    }
+
+}
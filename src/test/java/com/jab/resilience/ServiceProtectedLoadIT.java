@@ -0,0 +1,123 @@
+package com.jab.resilience;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.tomakehurst.wiremock.WireMockServer;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import lombok.SneakyThrows;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.File;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static com.jab.resilience.Constants.CIRCUIT_BREAKER_1;
+import static com.jab.resilience.Constants.FALLBACK_GOD_RESPONSE;
+import static org.assertj.core.api.BDDAssertions.then;
+
+/**
+ * Open-model load test of the /api/retrieve endpoint against each upstream fault profile.
+ * Run with ./mvnw -Pload-test verify, -Dloadtest.rps and -Dloadtest.duration tune the load.
+ */
+@Slf4j
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+class ServiceProtectedLoadIT {
+
+    private static final int RPS = Integer.getInteger("loadtest.rps", 100);
+    private static final Duration DURATION = Duration.parse("PT" + System.getProperty("loadtest.duration", "10s"));
+    private static final File REPORTS = new File("target/load-tests");
+
+    WireMockServer wireMockServer;
+
+    @LocalServerPort
+    int port;
+
+    @Autowired
+    private CircuitBreakerRegistry circuitBreakerRegistry;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @BeforeEach
+    public void setup() {
+        wireMockServer = new WireMockServer(8090);
+        wireMockServer.start();
+    }
+
+    @AfterEach
+    public void teardown() {
+        wireMockServer.stop();
+    }
+
+    @ParameterizedTest
+    @EnumSource(FaultProfile.class)
+    public void given_faultProfile_when_load_then_sloMet(FaultProfile profile) {
+
+        profile.stub(wireMockServer, "/greek");
+
+        long start = System.nanoTime();
+        List<String> breakerTimeline = new CopyOnWriteArrayList<>();
+        circuitBreakerRegistry.circuitBreaker(CIRCUIT_BREAKER_1).getEventPublisher()
+            .onStateTransition(event -> breakerTimeline.add(
+                (System.nanoTime() - start) / 1_000_000 + "ms " + event.getStateTransition()));
+
+        List<LoadReport.Sample> samples = run();
+        LoadReport report = LoadReport.of(profile, RPS, System.nanoTime() - start, samples, breakerTimeline);
+        write(report);
+
+        then(report.getRequests()).isEqualTo(RPS * DURATION.getSeconds());
+        then(report.getErrors()).isZero();
+        then(report.getP99Millis()).isLessThanOrEqualTo(profile.getP99SloMillis());
+        then(report.getFallbackRate()).isLessThanOrEqualTo(profile.getFallbackRateSlo());
+    }
+
+    private List<LoadReport.Sample> run() {
+        WebClient webClient = WebClient.create("http://localhost:" + port);
+        long requests = RPS * DURATION.getSeconds();
+
+        //Open model: one request every 1/RPS seconds, whatever the response times are
+        return Flux.interval(Duration.ofNanos(1_000_000_000L / RPS))
+            .take(requests)
+            .flatMap(i -> timed(webClient.get().uri("/api/retrieve")
+                .retrieve()
+                .bodyToMono(String.class)), Integer.MAX_VALUE)
+            .collectList()
+            .blockOptional()
+            .orElse(Collections.emptyList());
+    }
+
+    private Mono<LoadReport.Sample> timed(Mono<String> call) {
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            return call
+                .map(body -> new LoadReport.Sample(
+                    (System.nanoTime() - start) / 1_000_000, FALLBACK_GOD_RESPONSE.equals(body), false))
+                .onErrorResume(error -> Mono.just(new LoadReport.Sample(
+                    (System.nanoTime() - start) / 1_000_000, false, true)));
+        });
+    }
+
+    @SneakyThrows
+    private void write(LoadReport report) {
+        REPORTS.mkdirs();
+        objectMapper.writeValue(new File(REPORTS, report.getProfile() + ".json"), report);
+        LOGGER.info("Load test {}: {} rps, p50 {} ms, p99 {} ms, p999 {} ms, fallback rate {}, errors {}, breaker {}",
+            report.getProfile(), String.format("%.1f", report.getThroughput()), report.getP50Millis(),
+            report.getP99Millis(), report.getP999Millis(), report.getFallbackRate(), report.getErrors(),
+            report.getBreakerTimeline());
+    }
+
+}
@@ -0,0 +1,119 @@
+package com.jab.resilience;
+
+import com.github.tomakehurst.wiremock.WireMockServer;
+import com.github.tomakehurst.wiremock.client.WireMock;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import static com.jab.resilience.Constants.CIRCUIT_BREAKER_1;
+import static com.jab.resilience.Constants.FALLBACK_GOD_RESPONSE;
+import static org.assertj.core.api.BDDAssertions.then;
+
+@Slf4j
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+class ServiceProtectedReactiveTests {
+
+    private static final int port = 8090;
+    private static final String address = "http://localhost:8090/greek";
+    private static final String EXPECTED_GOD_RESPONSE = "Zeus";
+
+    WireMockServer wireMockServer;
+
+    @Autowired
+    private ServiceProtected service;
+
+    @Autowired
+    private CircuitBreakerRegistry circuitBreakerRegistry;
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @BeforeEach
+    public void setup() {
+        wireMockServer = new WireMockServer(port);
+        wireMockServer.start();
+    }
+
+    @AfterEach
+    public void teardown() {
+        wireMockServer.stop();
+    }
+
+    @Test
+    public void given_closeState_when_retrieveReactive_then_Ok() {
+
+        stubGreek();
+
+        StepVerifier.create(service.retrieveReactive(address))
+            .expectNext(EXPECTED_GOD_RESPONSE)
+            .verifyComplete();
+
+        checkHealthStatus(CircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    public void given_openState_when_retrieveReactive_then_Ko() {
+
+        circuitBreakerRegistry.circuitBreaker(CIRCUIT_BREAKER_1).transitionToOpenState();
+
+        StepVerifier.create(service.retrieveReactive(address))
+            .expectNext(FALLBACK_GOD_RESPONSE)
+            .verifyComplete();
+
+        wireMockServer.verify(0, WireMock.getRequestedFor(WireMock.urlEqualTo("/greek")));
+    }
+
+    @Test
+    public void given_closeState_when_manyConcurrentCalls_then_Ok() {
+
+        stubGreek();
+
+        int calls = 200;
+        StepVerifier.create(Flux.range(0, calls)
+                .flatMap(i -> service.retrieveReactive(address), calls)
+                .filter(EXPECTED_GOD_RESPONSE::equals)
+                .count())
+            .expectNext((long) calls)
+            .verifyComplete();
+    }
+
+    @Test
+    public void given_closeState_when_callEndpoint_then_Ok() {
+
+        stubGreek();
+
+        String body = webTestClient.get().uri("/api/retrieve")
+            .accept(MediaType.TEXT_PLAIN)
+            .exchange()
+            .expectStatus().isOk()
+            .expectBody(String.class)
+            .returnResult()
+            .getResponseBody();
+
+        then(body).isEqualTo(EXPECTED_GOD_RESPONSE);
+    }
+
+    private void stubGreek() {
+        wireMockServer.stubFor(WireMock.get(WireMock.urlEqualTo("/greek"))
+            .willReturn(WireMock.aResponse().withHeader("Content-Type", "application/json")
+                .withStatus(200)
+                .withBodyFile("greek.json")));
+    }
+
+    private void checkHealthStatus(CircuitBreaker.State state) {
+        then(circuitBreakerRegistry.circuitBreaker(CIRCUIT_BREAKER_1).getState()).isEqualTo(state);
+    }
+
+}
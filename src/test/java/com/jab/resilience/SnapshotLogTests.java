@@ -0,0 +1,223 @@
+package com.jab.resilience;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.assertj.core.api.BDDAssertions.then;
+import static org.assertj.core.api.BDDAssertions.thenThrownBy;
+
+class SnapshotLogTests {
+
+    private static final int CAPACITY = 4096;
+    private static final int MAX_KEYS = 100;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void given_values_when_reopened_then_lastValuesRecovered() throws IOException {
+
+        Path file = directory.resolve("last-good.snap");
+        try (SnapshotLog log = new SnapshotLog(file, CAPACITY, MAX_KEYS)) {
+            log.put("http://localhost:8090/greek", "Zeus");
+            log.put("http://localhost:8090/roman", "Jupiter");
+            log.put("http://localhost:8090/greek", "Hera");
+        }
+
+        try (SnapshotLog log = new SnapshotLog(file, CAPACITY, MAX_KEYS)) {
+            then(log.size()).isEqualTo(2);
+            then(log.get("http://localhost:8090/greek")).contains("Hera");
+            then(log.get("http://localhost:8090/roman")).contains("Jupiter");
+            then(log.get("http://localhost:8090/nordic")).isEmpty();
+        }
+    }
+
+    @Test
+    public void given_sameValue_when_put_then_nothingAppended() throws IOException {
+
+        try (SnapshotLog log = new SnapshotLog(directory.resolve("last-good.snap"), CAPACITY, MAX_KEYS)) {
+            log.put("http://localhost:8090/greek", "Zeus");
+            int used = log.getUsedBytes();
+
+            then(log.put("http://localhost:8090/greek", "Zeus")).isTrue();
+            then(log.getUsedBytes()).isEqualTo(used);
+        }
+    }
+
+    @Test
+    public void given_lastRecordTorn_when_reopened_then_previousValuesRecoveredAtEveryCut() throws IOException {
+
+        Path file = directory.resolve("last-good.snap");
+        int start;
+        int end;
+        try (SnapshotLog log = new SnapshotLog(file, CAPACITY, MAX_KEYS)) {
+            log.put("http://localhost:8090/greek", "Zeus");
+            log.put("http://localhost:8090/roman", "Jupiter");
+            start = log.getUsedBytes();
+            log.put("http://localhost:8090/greek", "Hera");
+            end = log.getUsedBytes();
+        }
+
+        //A crash while the last record was written leaves any prefix of it, the rest being the previous bytes
+        for (int cut = start; cut < end; cut++) {
+            Path torn = directory.resolve("torn-" + cut + ".snap");
+            Files.copy(file, torn);
+            overwrite(torn, cut, new byte[end - cut]);
+
+            try (SnapshotLog log = new SnapshotLog(torn, CAPACITY, MAX_KEYS)) {
+                then(log.get("http://localhost:8090/greek")).contains("Zeus");
+                then(log.get("http://localhost:8090/roman")).contains("Jupiter");
+                then(log.getUsedBytes()).isEqualTo(start);
+                log.put("http://localhost:8090/nordic", "Odin");
+            }
+            try (SnapshotLog log = new SnapshotLog(torn, CAPACITY, MAX_KEYS)) {
+                then(log.get("http://localhost:8090/nordic")).contains("Odin");
+                then(log.get("http://localhost:8090/greek")).contains("Zeus");
+            }
+        }
+    }
+
+    @Test
+    public void given_staleRecordsAfterRewrite_when_reopened_then_neverRead() throws IOException {
+
+        Path file = directory.resolve("last-good.snap");
+        int second;
+        try (SnapshotLog log = new SnapshotLog(file, CAPACITY, MAX_KEYS)) {
+            log.put("http://localhost:8090/greek", "Zeus");
+            second = log.getUsedBytes();
+            log.put("http://localhost:8090/roman", "Jupiter");
+            log.put("http://localhost:8090/nordic", "Odin");
+        }
+        //Torn second record, then the next run appends over it and stops before the old third one
+        overwrite(file, second + SnapshotLog.RECORD_HEADER_SIZE, new byte[] {0});
+        try (SnapshotLog log = new SnapshotLog(file, CAPACITY, MAX_KEYS)) {
+            then(log.size()).isEqualTo(1);
+            log.put("http://localhost:8090/x", "y");
+        }
+
+        try (SnapshotLog log = new SnapshotLog(file, CAPACITY, MAX_KEYS)) {
+            then(log.get("http://localhost:8090/greek")).contains("Zeus");
+            then(log.get("http://localhost:8090/x")).contains("y");
+            then(log.get("http://localhost:8090/roman")).isEmpty();
+            then(log.get("http://localhost:8090/nordic")).isEmpty();
+        }
+    }
+
+    @Test
+    public void given_corruptHeader_when_reopened_then_startsEmpty() throws IOException {
+
+        Path file = directory.resolve("last-good.snap");
+        try (SnapshotLog log = new SnapshotLog(file, CAPACITY, MAX_KEYS)) {
+            log.put("http://localhost:8090/greek", "Zeus");
+        }
+        overwrite(file, 8, new byte[] {1, 2, 3});
+
+        try (SnapshotLog log = new SnapshotLog(file, CAPACITY, MAX_KEYS)) {
+            then(log.size()).isZero();
+            log.put("http://localhost:8090/roman", "Jupiter");
+        }
+        try (SnapshotLog log = new SnapshotLog(file, CAPACITY, MAX_KEYS)) {
+            then(log.get("http://localhost:8090/roman")).contains("Jupiter");
+            then(log.get("http://localhost:8090/greek")).isEmpty();
+        }
+    }
+
+    @Test
+    public void given_randomGarbage_when_reopened_then_neverFails() throws IOException {
+
+        Path file = directory.resolve("last-good.snap");
+        try (SnapshotLog log = new SnapshotLog(file, CAPACITY, MAX_KEYS)) {
+            for (int i = 0; i < 50; i++) {
+                log.put("key-" + i, "value-" + i);
+            }
+        }
+
+        for (int round = 0; round < 100; round++) {
+            byte[] garbage = new byte[ThreadLocalRandom.current().nextInt(1, 16)];
+            ThreadLocalRandom.current().nextBytes(garbage);
+            overwrite(file, ThreadLocalRandom.current().nextInt(0, CAPACITY - garbage.length), garbage);
+
+            try (SnapshotLog log = new SnapshotLog(file, CAPACITY, MAX_KEYS)) {
+                for (int i = 0; i < 50; i++) {
+                    Optional<String> value = log.get("key-" + i);
+                    then(value.orElse("value-" + i)).isEqualTo("value-" + i);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void given_full_when_compacted_then_mostRecentKeysKept() throws IOException {
+
+        Path file = directory.resolve("last-good.snap");
+        try (SnapshotLog log = new SnapshotLog(file, 1024, 10)) {
+            int keys = 0;
+            while (log.put("key-" + keys, "value-" + keys)) {
+                keys++;
+            }
+            then(keys).isEqualTo(10);
+
+            log.compact(0.5);
+
+            then(log.size()).isEqualTo(5);
+            then(log.get("key-0")).isEmpty();
+            then(log.get("key-9")).contains("value-9");
+            then(log.put("key-10", "value-10")).isTrue();
+        }
+
+        try (SnapshotLog log = new SnapshotLog(file, 1024, 10)) {
+            then(log.size()).isEqualTo(6);
+            then(log.get("key-5")).contains("value-5");
+            then(log.get("key-10")).contains("value-10");
+        }
+    }
+
+    @Test
+    public void given_openFile_when_openedAgain_then_rejected() throws IOException {
+
+        Path file = directory.resolve("last-good.snap");
+        try (SnapshotLog log = new SnapshotLog(file, CAPACITY, MAX_KEYS)) {
+            thenThrownBy(() -> new SnapshotLog(file, CAPACITY, MAX_KEYS))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("in use");
+        }
+    }
+
+    @Test
+    public void given_millionKeys_when_reopened_then_recoveredInTime() throws IOException {
+
+        int keys = 1_000_000;
+        Path file = directory.resolve("last-good.snap");
+        try (SnapshotLog log = new SnapshotLog(file, 128 * 1024 * 1024, keys)) {
+            for (int i = 0; i < keys; i++) {
+                log.put("http://localhost:8090/greek/" + i, "[\"Zeus\",\"Hera\",\"" + i + "\"]");
+            }
+        }
+
+        long start = System.nanoTime();
+        try (SnapshotLog log = new SnapshotLog(file, 128 * 1024 * 1024, keys)) {
+            Duration recovery = Duration.ofNanos(System.nanoTime() - start);
+
+            then(log.size()).isEqualTo(keys);
+            then(log.get("http://localhost:8090/greek/" + (keys - 1))).contains("[\"Zeus\",\"Hera\",\"" + (keys - 1) + "\"]");
+            then(recovery).isLessThan(Duration.ofSeconds(3));
+        }
+    }
+
+    private static void overwrite(Path file, int position, byte[] bytes) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(bytes), position);
+        }
+    }
+
+}
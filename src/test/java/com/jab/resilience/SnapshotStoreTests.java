@@ -0,0 +1,105 @@
+package com.jab.resilience;
+
+import com.github.tomakehurst.wiremock.WireMockServer;
+import com.github.tomakehurst.wiremock.client.WireMock;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.SneakyThrows;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+
+import java.io.IOException;
+import java.time.Duration;
+
+import static com.jab.resilience.Constants.CIRCUIT_BREAKER_1;
+import static com.jab.resilience.Constants.FALLBACK_GOD_RESPONSE;
+import static org.assertj.core.api.BDDAssertions.then;
+
+@SpringBootTest(properties = {
+    "resilience.retry.enabled=false",
+    "resilience.snapshot.enabled=true",
+    "resilience.snapshot.path=target/snapshot-tests/${random.uuid}/last-good.snap",
+    "resilience.snapshot.max-size=1MB"
+})
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+class SnapshotStoreTests {
+
+    private static final int port = 8090;
+    private static final String address = "http://localhost:8090/greek";
+    private static final String EXPECTED_GOD_RESPONSE = "Zeus";
+
+    WireMockServer wireMockServer;
+
+    @Autowired
+    private ServiceProtected service;
+
+    @Autowired
+    private SnapshotStore snapshotStore;
+
+    @Autowired
+    private SnapshotStoreProperties properties;
+
+    @Autowired
+    private CircuitBreakerRegistry circuitBreakerRegistry;
+
+    @BeforeEach
+    public void setup() {
+        wireMockServer = new WireMockServer(port);
+        wireMockServer.start();
+        awaitReady(snapshotStore);
+    }
+
+    @AfterEach
+    public void teardown() {
+        wireMockServer.stop();
+    }
+
+    @Test
+    public void given_goodResponse_when_breakerOpens_then_fallbackServesSnapshot() {
+
+        wireMockServer.stubFor(WireMock.get(WireMock.urlEqualTo("/greek"))
+            .willReturn(WireMock.aResponse().withHeader("Content-Type", "application/json")
+                .withStatus(200)
+                .withBodyFile("greek.json")));
+        then(service.retrieve(address)).isEqualTo(EXPECTED_GOD_RESPONSE);
+
+        circuitBreakerRegistry.circuitBreaker(CIRCUIT_BREAKER_1).transitionToOpenState();
+
+        then(service.retrieve(address)).isEqualTo(EXPECTED_GOD_RESPONSE);
+        then(service.retrieve("http://localhost:8090/greek/unknown")).isEqualTo(FALLBACK_GOD_RESPONSE);
+        then(wireMockServer.getAllServeEvents()).hasSize(1);
+    }
+
+    @Test
+    public void given_goodResponse_when_restarted_then_snapshotRecovered() throws IOException {
+
+        wireMockServer.stubFor(WireMock.get(WireMock.urlEqualTo("/greek"))
+            .willReturn(WireMock.aResponse().withHeader("Content-Type", "application/json")
+                .withStatus(200)
+                .withBodyFile("greek.json")));
+        then(service.retrieve(address)).isEqualTo(EXPECTED_GOD_RESPONSE);
+        snapshotStore.close();
+
+        SnapshotStore restarted = new SnapshotStore(properties, new SimpleMeterRegistry());
+        try {
+            awaitReady(restarted);
+            then(restarted.get(address)).contains(EXPECTED_GOD_RESPONSE);
+        } finally {
+            restarted.close();
+        }
+    }
+
+    @SneakyThrows
+    private static void awaitReady(SnapshotStore store) {
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (!store.isReady() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        then(store.isReady()).isTrue();
+    }
+
+}
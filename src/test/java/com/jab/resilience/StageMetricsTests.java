@@ -0,0 +1,136 @@
+package com.jab.resilience;
+
+import com.github.tomakehurst.wiremock.WireMockServer;
+import com.github.tomakehurst.wiremock.client.WireMock;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.config.MeterFilter;
+import io.micrometer.core.instrument.distribution.DistributionStatisticConfig;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static com.jab.resilience.Constants.CIRCUIT_BREAKER_1;
+import static com.jab.resilience.Constants.FALLBACK_GOD_RESPONSE;
+import static org.assertj.core.api.BDDAssertions.then;
+
+@SpringBootTest(properties = "resilience.retry.enabled=false")
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+class StageMetricsTests {
+
+    private static final int port = 8090;
+    private static final String address = "http://localhost:8090/greek";
+
+    WireMockServer wireMockServer;
+
+    @Autowired
+    private ServiceProtected service;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private StageMetrics stageMetrics;
+
+    @BeforeEach
+    public void setup() {
+        wireMockServer = new WireMockServer(port);
+        wireMockServer.start();
+    }
+
+    @AfterEach
+    public void teardown() {
+        wireMockServer.stop();
+    }
+
+    @Test
+    public void given_upstreamCall_when_retrieve_then_everyStageTimed() {
+
+        wireMockServer.stubFor(WireMock.get(WireMock.urlEqualTo("/greek"))
+            .willReturn(WireMock.aResponse().withHeader("Content-Type", "application/json")
+                .withStatus(200)
+                .withFixedDelay(100)
+                .withBodyFile("greek.json")));
+
+        then(service.retrieve(address)).isEqualTo("Zeus");
+
+        then(stage("acquire").count()).isEqualTo(1);
+        then(stage("upstream").count()).isEqualTo(1);
+        then(stage("upstream").totalTime(TimeUnit.MILLISECONDS)).isGreaterThanOrEqualTo(100);
+        then(stage("decode").count()).isEqualTo(1);
+        then(stage("breaker").count()).isEqualTo(1);
+        then(stage("breaker").totalTime(TimeUnit.MILLISECONDS)).isGreaterThanOrEqualTo(100);
+        then(stage("fallback").count()).isZero();
+    }
+
+    @Test
+    public void given_upstreamError_when_retrieve_then_fallbackTimed() {
+
+        wireMockServer.stubFor(WireMock.get(WireMock.urlEqualTo("/greek"))
+            .willReturn(WireMock.aResponse().withStatus(500)));
+
+        then(service.retrieve(address)).isEqualTo(FALLBACK_GOD_RESPONSE);
+
+        then(stage("upstream").count()).isEqualTo(1);
+        then(stage("decode").count()).isZero();
+        then(stage("fallback").count()).isEqualTo(1);
+    }
+
+    @Test
+    public void given_stageTimers_when_registered_then_histogramPublished() {
+
+        wireMockServer.stubFor(WireMock.get(WireMock.urlEqualTo("/greek"))
+            .willReturn(WireMock.aResponse().withHeader("Content-Type", "application/json")
+                .withStatus(200)
+                .withBodyFile("greek.json")));
+
+        //The simple registry of the tests keeps no buckets, check what the stage timers ask for
+        List<DistributionStatisticConfig> configs = new CopyOnWriteArrayList<>();
+        meterRegistry.config().meterFilter(new MeterFilter() {
+            @Override
+            public DistributionStatisticConfig configure(Meter.Id id, DistributionStatisticConfig config) {
+                if ("resilience.stage".equals(id.getName())) {
+                    configs.add(config);
+                }
+                return config;
+            }
+        });
+
+        service.retrieve(address);
+
+        then(configs).hasSize(StageMetrics.Stage.values().length)
+            .allMatch(DistributionStatisticConfig::isPercentileHistogram);
+    }
+
+    @Test
+    public void given_evictedUpstream_when_removed_then_timersRegisteredAgainOnNextCall() {
+
+        wireMockServer.stubFor(WireMock.get(WireMock.urlPathEqualTo("/greek"))
+            .willReturn(WireMock.aResponse().withHeader("Content-Type", "application/json")
+                .withStatus(200)
+                .withBodyFile("greek.json")));
+        service.retrieve(address);
+
+        stageMetrics.remove(CIRCUIT_BREAKER_1);
+
+        then(meterRegistry.find("resilience.stage").tag("upstream", CIRCUIT_BREAKER_1).timers()).isEmpty();
+        service.retrieve(address + "?page=2");
+        then(stage("upstream").count()).isEqualTo(1);
+    }
+
+    private Timer stage(String stage) {
+        return meterRegistry.get("resilience.stage")
+            .tag("stage", stage)
+            .tag("upstream", CIRCUIT_BREAKER_1)
+            .timer();
+    }
+
+}
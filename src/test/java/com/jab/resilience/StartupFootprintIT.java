@@ -0,0 +1,146 @@
+package com.jab.resilience;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.BDDAssertions.then;
+
+/**
+ * Starts the application classes and library jars as a separate JVM, with and without the AppCDS archive, and
+ * compares the time to a healthy actuator and the resident memory once started.
+ * Run with ./mvnw -Pappcds verify, the archive is dumped in pre-integration-test.
+ */
+@Slf4j
+class StartupFootprintIT {
+
+    private static final int RUNS = 3;
+    private static final Duration STARTUP_TIMEOUT = Duration.ofSeconds(60);
+    private static final File REPORTS = new File("target/footprint");
+
+    private final String appcdsDir = System.getProperty("appcds.dir", "target/appcds");
+    private final String classpath = System.getProperty("appcds.classpath");
+    private final HttpClient httpClient = HttpClient.newHttpClient();
+
+    @Test
+    public void given_appcdsArchive_when_start_then_fasterThanJvmWithoutMoreMemory() throws Exception {
+
+        Footprint jvm = median("jvm", List.of());
+        Footprint appcds = median("appcds", appcdsOptions());
+
+        REPORTS.mkdirs();
+        new ObjectMapper().writeValue(new File(REPORTS, "startup.json"), List.of(jvm, appcds));
+        LOGGER.info("Startup jvm {} ms / {} MB RSS, appcds {} ms / {} MB RSS",
+            jvm.getStartupMillis(), jvm.getRssMegabytes(), appcds.getStartupMillis(), appcds.getRssMegabytes());
+
+        then(appcds.getStartupMillis()).isLessThan(jvm.getStartupMillis());
+        then(appcds.getRssMegabytes()).isLessThanOrEqualTo((long) (jvm.getRssMegabytes() * 1.1));
+    }
+
+    @Test
+    public void given_appcdsArchive_when_start_then_applicationClassesMappedFromArchive() throws Exception {
+
+        then(new File(appcdsDir, "app.jsa")).as("archive dumped in pre-integration-test").isFile();
+
+        List<String> options = new ArrayList<>(appcdsOptions());
+        options.add("-Xlog:class+load=info");
+        start("appcds-class-load", options, 0);
+
+        then(Files.readAllLines(new File(REPORTS, "appcds-class-load-0.log").toPath()))
+            .anyMatch(line -> line.contains("com.jab.resilience.MainApplication source: shared objects file"));
+    }
+
+    //-Xshare:on fails the start instead of silently running without the archive
+    private List<String> appcdsOptions() {
+        return List.of("-Xshare:on", "-XX:SharedArchiveFile=" + appcdsDir + "/app.jsa");
+    }
+
+    private Footprint median(String mode, List<String> jvmOptions) throws Exception {
+        List<Footprint> runs = new ArrayList<>();
+        for (int run = 0; run < RUNS; run++) {
+            runs.add(start(mode, jvmOptions, run));
+        }
+        List<Long> startups = runs.stream().map(Footprint::getStartupMillis).sorted().collect(Collectors.toList());
+        List<Long> rss = runs.stream().map(Footprint::getRssMegabytes).sorted().collect(Collectors.toList());
+        return new Footprint(mode, startups.get(RUNS / 2), rss.get(RUNS / 2));
+    }
+
+    private Footprint start(String mode, List<String> jvmOptions, int run) throws Exception {
+        int port = freePort();
+        List<String> command = new ArrayList<>(List.of("java", "-Dspring.devtools.restart.enabled=false"));
+        command.addAll(jvmOptions);
+        command.addAll(List.of("-cp", classpath, "com.jab.resilience.MainApplication", "--server.port=" + port));
+
+        REPORTS.mkdirs();
+        long start = System.nanoTime();
+        Process process = new ProcessBuilder(command)
+            .redirectErrorStream(true)
+            .redirectOutput(new File(REPORTS, mode + "-" + run + ".log"))
+            .start();
+        try {
+            awaitHealthy(port, process);
+            long startupMillis = Duration.ofNanos(System.nanoTime() - start).toMillis();
+            return new Footprint(mode, startupMillis, rssMegabytes(process.pid()));
+        } finally {
+            process.destroy();
+            process.waitFor();
+        }
+    }
+
+    private void awaitHealthy(int port, Process process) throws InterruptedException {
+        HttpRequest health = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/actuator/health")).build();
+        long deadline = System.nanoTime() + STARTUP_TIMEOUT.toNanos();
+        while (System.nanoTime() < deadline) {
+            then(process.isAlive()).as("application process alive").isTrue();
+            try {
+                if (httpClient.send(health, HttpResponse.BodyHandlers.discarding()).statusCode() == 200) {
+                    return;
+                }
+            } catch (IOException ex) {
+                //Not listening yet
+            }
+            Thread.sleep(20);
+        }
+        throw new AssertionError("Application not healthy after " + STARTUP_TIMEOUT);
+    }
+
+    //Linux only, VmRSS is reported in kB
+    private long rssMegabytes(long pid) throws IOException {
+        return Files.readAllLines(Path.of("/proc", String.valueOf(pid), "status")).stream()
+            .filter(line -> line.startsWith("VmRSS:"))
+            .map(line -> Long.parseLong(line.replaceAll("[^0-9]", "")) / 1024)
+            .findFirst()
+            .orElseThrow();
+    }
+
+    private int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    @Value
+    static class Footprint {
+
+        String mode;
+        long startupMillis;
+        long rssMegabytes;
+
+    }
+
+}
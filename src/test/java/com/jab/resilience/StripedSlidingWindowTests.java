@@ -0,0 +1,102 @@
+package com.jab.resilience;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.BDDAssertions.then;
+
+class StripedSlidingWindowTests {
+
+    private final AtomicLong clock = new AtomicLong();
+
+    @Test
+    public void given_outcomes_when_snapshot_then_rates() {
+
+        StripedSlidingWindow window = window();
+
+        IntStream.range(0, 6).forEach(i -> window.record(false, false));
+        IntStream.range(0, 3).forEach(i -> window.record(true, false));
+        window.record(false, true);
+
+        StripedSlidingWindow.Snapshot snapshot = window.snapshot();
+        then(snapshot.getCalls()).isEqualTo(10);
+        then(snapshot.getFailureRate()).isEqualTo(30f);
+        then(snapshot.getSlowCallRate()).isEqualTo(10f);
+    }
+
+    @Test
+    public void given_oldOutcomes_when_windowSlides_then_expired() {
+
+        StripedSlidingWindow window = window();
+
+        window.record(true, false);
+        clock.addAndGet(Duration.ofSeconds(5).toNanos());
+        window.record(false, false);
+
+        then(window.snapshot().getCalls()).isEqualTo(2);
+
+        clock.addAndGet(Duration.ofMillis(5500).toNanos());
+
+        StripedSlidingWindow.Snapshot snapshot = window.snapshot();
+        then(snapshot.getCalls()).isEqualTo(1);
+        then(snapshot.getFailures()).isZero();
+
+        clock.addAndGet(Duration.ofSeconds(10).toNanos());
+
+        then(window.snapshot().getCalls()).isZero();
+    }
+
+    @Test
+    public void given_recycledBucket_when_record_then_previousPeriodCleared() {
+
+        StripedSlidingWindow window = window();
+
+        window.record(true, true);
+        clock.addAndGet(Duration.ofSeconds(10).toNanos());
+        window.record(false, false);
+
+        StripedSlidingWindow.Snapshot snapshot = window.snapshot();
+        then(snapshot.getCalls()).isEqualTo(1);
+        then(snapshot.getFailures()).isZero();
+        then(snapshot.getSlowCalls()).isZero();
+    }
+
+    @Test
+    public void given_manyThreads_when_recordWithinBucket_then_noOutcomeLost() throws InterruptedException {
+
+        StripedSlidingWindow window = new StripedSlidingWindow(Duration.ofSeconds(10), 10, 8, clock::get);
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        CountDownLatch done = new CountDownLatch(16);
+
+        IntStream.range(0, 16).forEach(thread -> executor.execute(() -> {
+            IntStream.range(0, 10_000).forEach(i -> window.record(i % 10 == 0, false));
+            done.countDown();
+        }));
+
+        then(done.await(10, TimeUnit.SECONDS)).isTrue();
+        executor.shutdown();
+
+        StripedSlidingWindow.Snapshot snapshot = window.snapshot();
+        then(snapshot.getCalls()).isEqualTo(160_000);
+        then(snapshot.getFailures()).isEqualTo(16_000);
+    }
+
+    @Test
+    public void given_stripes_when_notPowerOfTwo_then_roundedUp() {
+
+        then(new StripedSlidingWindow(Duration.ofSeconds(1), 1, 6, clock::get).getStripes()).isEqualTo(8);
+        then(new StripedSlidingWindow(Duration.ofSeconds(1), 1, 1, clock::get).getStripes()).isEqualTo(1);
+    }
+
+    private StripedSlidingWindow window() {
+        return new StripedSlidingWindow(Duration.ofSeconds(10), 10, 4, clock::get);
+    }
+
+}
@@ -0,0 +1,153 @@
+package com.jab.resilience;
+
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.circuitbreaker.event.CircuitBreakerEvent;
+import io.github.resilience4j.micrometer.tagged.TaggedCircuitBreakerMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.vavr.collection.HashMap;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.BDDAssertions.then;
+
+class StripedWindowCircuitBreakerTests {
+
+    private final AtomicLong clock = new AtomicLong();
+
+    private final CircuitBreakerConfig config = CircuitBreakerConfig.custom()
+        .failureRateThreshold(50)
+        .slowCallRateThreshold(80)
+        .slowCallDurationThreshold(Duration.ofMillis(200))
+        .minimumNumberOfCalls(10)
+        .waitDurationInOpenState(Duration.ofSeconds(60))
+        .permittedNumberOfCallsInHalfOpenState(2)
+        .ignoreExceptions(BulkheadFullException.class)
+        .build();
+
+    @Test
+    public void given_failureRateOverThreshold_when_minimumCallsReached_then_open() {
+
+        CircuitBreaker circuitBreaker = circuitBreaker();
+
+        IntStream.range(0, 4).forEach(i -> circuitBreaker.onSuccess(1, TimeUnit.MILLISECONDS));
+        IntStream.range(0, 5).forEach(i -> circuitBreaker.onError(1, TimeUnit.MILLISECONDS, new IOException()));
+
+        then(circuitBreaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+        then(circuitBreaker.getMetrics().getFailureRate()).isEqualTo(-1f);
+
+        circuitBreaker.onError(1, TimeUnit.MILLISECONDS, new IOException());
+
+        then(circuitBreaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+        then(circuitBreaker.tryAcquirePermission()).isFalse();
+    }
+
+    @Test
+    public void given_slowCalls_when_slowRateOverThreshold_then_open() {
+
+        CircuitBreaker circuitBreaker = circuitBreaker();
+
+        IntStream.range(0, 2).forEach(i -> circuitBreaker.onSuccess(1, TimeUnit.MILLISECONDS));
+        IntStream.range(0, 8).forEach(i -> circuitBreaker.onSuccess(300, TimeUnit.MILLISECONDS));
+
+        then(circuitBreaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+    }
+
+    @Test
+    public void given_ignoredException_when_onError_then_notRecorded() {
+
+        CircuitBreaker circuitBreaker = circuitBreaker();
+
+        IntStream.range(0, 20).forEach(i -> circuitBreaker.onError(1, TimeUnit.MILLISECONDS,
+            BulkheadFullException.createBulkheadFullException(Bulkhead.ofDefaults("test"))));
+
+        then(circuitBreaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+        then(circuitBreaker.getMetrics().getNumberOfBufferedCalls()).isZero();
+    }
+
+    @Test
+    public void given_halfOpen_when_permittedCallsSucceed_then_closedWithEmptyWindow() {
+
+        CircuitBreaker circuitBreaker = circuitBreaker();
+        IntStream.range(0, 10).forEach(i -> circuitBreaker.onError(1, TimeUnit.MILLISECONDS, new IOException()));
+        then(circuitBreaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+
+        circuitBreaker.transitionToHalfOpenState();
+        IntStream.range(0, 2).forEach(i -> {
+            then(circuitBreaker.tryAcquirePermission()).isTrue();
+            circuitBreaker.onSuccess(1, TimeUnit.MILLISECONDS);
+        });
+
+        then(circuitBreaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+        then(circuitBreaker.getMetrics().getNumberOfBufferedCalls()).isZero();
+    }
+
+    @Test
+    public void given_closedState_when_callsRecorded_then_callEventsPublished() {
+
+        CircuitBreaker circuitBreaker = circuitBreaker();
+        List<CircuitBreakerEvent.Type> events = new CopyOnWriteArrayList<>();
+        circuitBreaker.getEventPublisher().onEvent(event -> events.add(event.getEventType()));
+
+        circuitBreaker.onSuccess(1, TimeUnit.MILLISECONDS);
+        circuitBreaker.onError(1, TimeUnit.MILLISECONDS,
+            BulkheadFullException.createBulkheadFullException(Bulkhead.ofDefaults("test")));
+        IntStream.range(0, 9).forEach(i -> circuitBreaker.onError(1, TimeUnit.MILLISECONDS, new IOException()));
+
+        then(circuitBreaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+        then(events).containsSubsequence(
+            CircuitBreakerEvent.Type.SUCCESS,
+            CircuitBreakerEvent.Type.IGNORED_ERROR,
+            CircuitBreakerEvent.Type.ERROR,
+            CircuitBreakerEvent.Type.FAILURE_RATE_EXCEEDED,
+            CircuitBreakerEvent.Type.STATE_TRANSITION);
+        then(events).filteredOn(CircuitBreakerEvent.Type.ERROR::equals).hasSize(9);
+    }
+
+    @Test
+    public void given_taggedMetrics_when_closedCallsRecorded_then_callTimersCount() {
+
+        SlidingWindowProperties properties = new SlidingWindowProperties();
+        properties.setStriped(true);
+        CircuitBreakerRegistry registry = new StripedWindowCircuitBreakerRegistry(config, properties);
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        TaggedCircuitBreakerMetrics.ofCircuitBreakerRegistry(registry).bindTo(meterRegistry);
+        CircuitBreaker circuitBreaker = registry.circuitBreaker("CB1", config);
+
+        IntStream.range(0, 3).forEach(i -> circuitBreaker.onSuccess(1, TimeUnit.MILLISECONDS));
+        circuitBreaker.onError(1, TimeUnit.MILLISECONDS, new IOException());
+
+        then(meterRegistry.get("resilience4j.circuitbreaker.calls").tag("kind", "successful").timer().count())
+            .isEqualTo(3);
+        then(meterRegistry.get("resilience4j.circuitbreaker.calls").tag("kind", "failed").timer().count())
+            .isEqualTo(1);
+    }
+
+    @Test
+    public void given_stripedRegistry_when_circuitBreaker_then_stripedInstanceSharedByName() {
+
+        SlidingWindowProperties properties = new SlidingWindowProperties();
+        properties.setStriped(true);
+        CircuitBreakerRegistry registry = new StripedWindowCircuitBreakerRegistry(config, properties);
+
+        CircuitBreaker circuitBreaker = registry.circuitBreaker("CB1", config);
+
+        then(circuitBreaker).isInstanceOf(StripedWindowCircuitBreaker.class);
+        then(registry.circuitBreaker("CB1")).isSameAs(circuitBreaker);
+    }
+
+    private CircuitBreaker circuitBreaker() {
+        return new StripedWindowCircuitBreaker("test", config, HashMap.empty(), new SlidingWindowProperties(), clock::get);
+    }
+
+}
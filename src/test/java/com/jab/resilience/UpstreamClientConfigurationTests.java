@@ -0,0 +1,78 @@
+package com.jab.resilience;
+
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.github.tomakehurst.wiremock.WireMockServer;
+import com.github.tomakehurst.wiremock.client.WireMock;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import lombok.SneakyThrows;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+
+import java.util.List;
+
+import static org.assertj.core.api.BDDAssertions.then;
+
+@SpringBootTest
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+class UpstreamClientConfigurationTests {
+
+    private static final int port = 8090;
+    private static final String address = "http://localhost:8090/greek";
+
+    WireMockServer wireMockServer;
+
+    @Autowired
+    private ServiceProtected service;
+
+    @Autowired
+    private ObjectReader upstreamListReader;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @BeforeEach
+    public void setup() {
+        wireMockServer = new WireMockServer(port);
+        wireMockServer.start();
+    }
+
+    @AfterEach
+    public void teardown() {
+        wireMockServer.stop();
+    }
+
+    @SneakyThrows
+    @Test
+    public void given_sharedReader_when_readValue_then_Ok() {
+
+        List<String> gods = upstreamListReader.readValue("[\"Zeus\",\"Hera\"]");
+
+        then(gods).containsExactly("Zeus", "Hera");
+    }
+
+    @Test
+    public void given_pooledClient_when_retrieve_then_poolMetricsExported() {
+
+        wireMockServer.stubFor(WireMock.get(WireMock.urlEqualTo("/greek"))
+            .willReturn(WireMock.aResponse().withHeader("Content-Type", "application/json")
+                .withStatus(200)
+                .withBodyFile("greek.json")));
+
+        then(service.retrieve(address)).isEqualTo("Zeus");
+        then(service.retrieve(address)).isEqualTo("Zeus");
+
+        //Reactor Netty binds its pool gauges to the global registry once per pool and address for the JVM,
+        //the registry of a later test context only joins it (management.metrics.use-global-registry)
+        then(Metrics.globalRegistry.getRegistries()).contains(meterRegistry);
+        then(Metrics.globalRegistry.find("reactor.netty.connection.provider.total.connections")
+            .tag("name", "upstream")
+            .tag("remote.address", "localhost:8090")
+            .gauge()).isNotNull();
+    }
+
+}
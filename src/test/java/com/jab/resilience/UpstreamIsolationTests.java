@@ -0,0 +1,107 @@
+package com.jab.resilience;
+
+import com.github.tomakehurst.wiremock.WireMockServer;
+import com.github.tomakehurst.wiremock.client.WireMock;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import reactor.core.publisher.Flux;
+
+import java.util.List;
+
+import static com.jab.resilience.Constants.CIRCUIT_BREAKER_1;
+import static com.jab.resilience.Constants.FALLBACK_GOD_RESPONSE;
+import static org.assertj.core.api.BDDAssertions.then;
+
+@SpringBootTest(properties = {
+    "resilience.coalescing.enabled=false",
+    //Escaped colon, the first one would end the key, and brackets to keep it in the map key
+    "resilience.isolation.instances.[localhost\\:8091].max-concurrent-calls=2"
+})
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+class UpstreamIsolationTests {
+
+    private static final String HEALTHY_ADDRESS = "http://localhost:8090/greek";
+    private static final String DEGRADED_ADDRESS = "http://localhost:8091/roman";
+    private static final String DEGRADED_KEY = "localhost:8091";
+
+    WireMockServer healthyServer;
+    WireMockServer degradedServer;
+
+    @Autowired
+    private ServiceProtected service;
+
+    @Autowired
+    private UpstreamIsolation upstreamIsolation;
+
+    @Autowired
+    private CircuitBreakerRegistry circuitBreakerRegistry;
+
+    @BeforeEach
+    public void setup() {
+        healthyServer = new WireMockServer(8090);
+        healthyServer.start();
+        healthyServer.stubFor(WireMock.get(WireMock.urlEqualTo("/greek"))
+            .willReturn(WireMock.aResponse().withHeader("Content-Type", "application/json")
+                .withStatus(200)
+                .withBodyFile("greek.json")));
+
+        degradedServer = new WireMockServer(8091);
+        degradedServer.start();
+    }
+
+    @AfterEach
+    public void teardown() {
+        healthyServer.stop();
+        degradedServer.stop();
+    }
+
+    @Test
+    public void given_urls_when_keyFor_then_routeOrHost() {
+
+        then(upstreamIsolation.keyFor(HEALTHY_ADDRESS)).isEqualTo(CIRCUIT_BREAKER_1);
+        then(upstreamIsolation.keyFor(DEGRADED_ADDRESS)).isEqualTo(DEGRADED_KEY);
+        then(upstreamIsolation.keyFor("https://example.org/gods")).isEqualTo("example.org:443");
+    }
+
+    @Test
+    public void given_failingHost_when_retrieve_then_otherHostUnaffected() {
+
+        degradedServer.stubFor(WireMock.get(WireMock.urlEqualTo("/roman"))
+            .willReturn(WireMock.aResponse().withStatus(500)));
+
+        then(service.retrieve(DEGRADED_ADDRESS)).isEqualTo(FALLBACK_GOD_RESPONSE);
+        then(service.retrieve(DEGRADED_ADDRESS)).isEqualTo(FALLBACK_GOD_RESPONSE);
+        then(circuitBreakerRegistry.circuitBreaker(DEGRADED_KEY).getState()).isEqualTo(CircuitBreaker.State.OPEN);
+
+        then(service.retrieve(HEALTHY_ADDRESS)).isEqualTo("Zeus");
+        then(circuitBreakerRegistry.circuitBreaker(CIRCUIT_BREAKER_1).getState())
+            .isEqualTo(CircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    public void given_slowHost_when_concurrentCalls_then_bulkheadRejectsExcess() {
+
+        degradedServer.stubFor(WireMock.get(WireMock.urlEqualTo("/roman"))
+            .willReturn(WireMock.aResponse().withHeader("Content-Type", "application/json")
+                .withStatus(200)
+                .withFixedDelay(500)
+                .withBody("[\"Jupiter\"]")));
+
+        List<String> responses = Flux.range(0, 10)
+            .flatMap(i -> service.retrieveReactive(DEGRADED_ADDRESS), 10)
+            .collectList()
+            .block();
+
+        then(responses).filteredOn("Jupiter"::equals).hasSize(2);
+        then(responses).filteredOn(FALLBACK_GOD_RESPONSE::equals).hasSize(8);
+        then(circuitBreakerRegistry.circuitBreaker(DEGRADED_KEY).getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+        then(service.retrieve(HEALTHY_ADDRESS)).isEqualTo("Zeus");
+    }
+
+}
@@ -0,0 +1,172 @@
+package com.jab.resilience;
+
+import com.github.tomakehurst.wiremock.WireMockServer;
+import com.github.tomakehurst.wiremock.client.WireMock;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.SneakyThrows;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static com.jab.resilience.Constants.FALLBACK_GOD_RESPONSE;
+import static org.assertj.core.api.BDDAssertions.then;
+
+@SpringBootTest(properties = {
+    "resilience.coalescing.enabled=false",
+    "resilience.retry.enabled=false",
+    "resilience.pool.upstreams.greek=http://localhost:8091,http://localhost:8092,http://localhost:8093",
+    "resilience.pool.base-ejection-time=500ms",
+    "resilience.pool.consecutive-failures=1",
+    //With the 2 calls window a probe after a failure is a 50% failure rate, the breaker would open on recovery
+    "resilience.circuit-breaker.sliding-window-size=10"
+})
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+class UpstreamPoolLoadBalancingTests {
+
+    private static final String LOGICAL_ADDRESS = "lb://greek/greek";
+    private static final String DEGRADED_KEY = "greek/localhost:8092";
+
+    WireMockServer replica1;
+    WireMockServer replica2;
+    WireMockServer replica3;
+
+    @Autowired
+    private ServiceProtected service;
+
+    @Autowired
+    private UpstreamPool upstreamPool;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private WebClient upstreamWebClient;
+
+    @BeforeEach
+    public void setup() {
+        replica1 = healthy(8091);
+        replica2 = healthy(8092);
+        replica3 = healthy(8093);
+        warmUp(replica1, replica2, replica3);
+    }
+
+    //A cold first call takes about a second and peak EWMA keeps it, the pool would measure the JVM, not the replica
+    private void warmUp(WireMockServer... replicas) {
+        for (WireMockServer replica : replicas) {
+            IntStream.range(0, 10).forEach(i -> upstreamWebClient.get()
+                .uri("http://localhost:" + replica.port() + "/greek")
+                .retrieve()
+                .bodyToMono(String.class)
+                .block());
+            replica.resetRequests();
+        }
+    }
+
+    @AfterEach
+    public void teardown() {
+        replica1.stop();
+        replica2.stop();
+        replica3.stop();
+    }
+
+    private static WireMockServer healthy(int port) {
+        WireMockServer server = new WireMockServer(port);
+        server.start();
+        stubGreek(server, 0);
+        return server;
+    }
+
+    private static void stubGreek(WireMockServer server, int delayMillis) {
+        server.stubFor(WireMock.get(WireMock.urlEqualTo("/greek"))
+            .willReturn(WireMock.aResponse().withHeader("Content-Type", "application/json")
+                .withStatus(200)
+                .withFixedDelay(delayMillis)
+                .withBodyFile("greek.json")));
+    }
+
+    private List<String> retrieve(int count) {
+        return IntStream.range(0, count)
+            .mapToObj(i -> service.retrieve(LOGICAL_ADDRESS))
+            .collect(Collectors.toList());
+    }
+
+    private static int calls(WireMockServer server) {
+        return server.getAllServeEvents().size();
+    }
+
+    @Test
+    public void given_slowReplica_when_retrieve_then_trafficShiftsToTheOthers() {
+
+        stubGreek(replica2, 300);
+
+        List<String> responses = retrieve(90);
+
+        then(responses).containsOnly("Zeus");
+        then(calls(replica2)).isLessThan(9);
+        then(calls(replica1) + calls(replica2) + calls(replica3)).isEqualTo(90);
+    }
+
+    @Test
+    public void given_failingReplica_when_retrieve_then_ejectedWithFewFallbacks() {
+
+        replica2.stubFor(WireMock.get(WireMock.urlEqualTo("/greek"))
+            .willReturn(WireMock.aResponse().withStatus(500)));
+
+        List<String> responses = retrieve(90);
+
+        then(responses).filteredOn(FALLBACK_GOD_RESPONSE::equals).hasSizeLessThan(9);
+        then(calls(replica2)).isLessThan(9);
+        then(meterRegistry.find("resilience.pool.ejections").counters())
+            .extracting(counter -> counter.getId().getTag("endpoint"))
+            .containsOnly(DEGRADED_KEY);
+        then(upstreamPool.getEndpoints("greek"))
+            .filteredOn(UpstreamPool.Endpoint::isEjected)
+            .extracting(UpstreamPool.Endpoint::getKey)
+            .allMatch(DEGRADED_KEY::equals);
+    }
+
+    @Test
+    public void given_ejectedReplica_when_recovered_then_trafficBack() {
+
+        replica2.stubFor(WireMock.get(WireMock.urlEqualTo("/greek"))
+            .willReturn(WireMock.aResponse().withStatus(500)));
+        retrieve(30);
+        then(calls(replica2)).isLessThan(9);
+
+        replica2.resetAll();
+        stubGreek(replica2, 0);
+        //Past the last ejection and the OPEN state of its breaker, however many probes failed meanwhile
+        awaitAvailable(DEGRADED_KEY);
+
+        List<String> responses = retrieve(90);
+
+        then(responses).containsOnly("Zeus");
+        then(calls(replica2)).isGreaterThan(15);
+        then(upstreamPool.getEndpoints("greek")).noneMatch(UpstreamPool.Endpoint::isEjected);
+    }
+
+    private void awaitAvailable(String key) {
+        UpstreamPool.Endpoint endpoint = upstreamPool.getEndpoints("greek").stream()
+            .filter(candidate -> candidate.getKey().equals(key))
+            .findFirst()
+            .orElseThrow();
+        for (int i = 0; i < 200 && !endpoint.isAvailable(); i++) {
+            sleep(50);
+        }
+        then(endpoint.isAvailable()).isTrue();
+    }
+
+    @SneakyThrows
+    private static void sleep(long millis) {
+        Thread.sleep(millis);
+    }
+
+}
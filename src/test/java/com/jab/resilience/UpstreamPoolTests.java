@@ -0,0 +1,229 @@
+package com.jab.resilience;
+
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.timelimiter.TimeLimiterConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.BDDAssertions.then;
+
+class UpstreamPoolTests {
+
+    private static final String GREEK = "lb://greek/greek";
+    private static final List<String> ENDPOINTS = List.of(
+        "http://localhost:8091", "http://localhost:8092", "http://localhost:8093");
+    private static final String DEGRADED = "greek/localhost:8092";
+
+    private final AtomicLong clock = new AtomicLong();
+    private final UpstreamPoolProperties properties = new UpstreamPoolProperties();
+    private final CircuitBreakerRegistry circuitBreakerRegistry = CircuitBreakerRegistry.ofDefaults();
+
+    private UpstreamPool pool() {
+        properties.getUpstreams().put("greek", ENDPOINTS);
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        UpstreamIsolation upstreamIsolation = new UpstreamIsolation(new UpstreamIsolationProperties(),
+            CircuitBreakerConfig.ofDefaults(), TimeLimiterConfig.ofDefaults(), circuitBreakerRegistry,
+            BulkheadRegistry.ofDefaults(), new AdaptiveLimiterProperties(), new RetryProperties(), meterRegistry);
+        return new UpstreamPool(properties, upstreamIsolation, circuitBreakerRegistry, meterRegistry, clock::get);
+    }
+
+    //One call on the pool taking the latency of its endpoint on the test clock, the next one starts after it
+    private String call(UpstreamPool pool, Function<String, Duration> latency, Function<String, Boolean> succeeds) {
+        UpstreamPool.Target target = pool.resolve(GREEK);
+        target.observe(Mono.fromCallable(() -> {
+            clock.addAndGet(latency.apply(target.getKey()).toNanos());
+            if (!succeeds.apply(target.getKey())) {
+                throw new IllegalStateException("500");
+            }
+            return "Zeus";
+        }))
+            .onErrorReturn("KatakrokerGod")
+            .block();
+        return target.getKey();
+    }
+
+    private Map<String, Long> calls(UpstreamPool pool, int count, Function<String, Duration> latency,
+            Function<String, Boolean> succeeds) {
+        return IntStream.range(0, count)
+            .mapToObj(i -> call(pool, latency, succeeds))
+            .collect(Collectors.groupingBy(Function.identity(), Collectors.counting()));
+    }
+
+    private static Function<String, Duration> slow(String degraded, Duration latency) {
+        return key -> key.equals(degraded) ? latency : Duration.ofMillis(10);
+    }
+
+    private static Function<String, Boolean> failing(String degraded) {
+        return key -> !key.equals(degraded);
+    }
+
+    private static Function<String, Boolean> healthy() {
+        return key -> true;
+    }
+
+    @Test
+    public void given_logicalUpstream_when_resolve_then_endpointAddressWithPathAndQuery() {
+
+        properties.getUpstreams().put("other", List.of("http://localhost:9000/"));
+        UpstreamPool pool = pool();
+
+        UpstreamPool.Target target = pool.resolve("lb://other/greek?god=zeus");
+
+        then(target.getAddress()).isEqualTo("http://localhost:9000/greek?god=zeus");
+        then(target.getKey()).isEqualTo("other/localhost:9000");
+    }
+
+    @Test
+    public void given_addressNotPooled_when_resolve_then_addressAsIs() {
+
+        UpstreamPool pool = pool();
+
+        UpstreamPool.Target target = pool.resolve("http://localhost:8090/greek");
+
+        then(target.getAddress()).isEqualTo("http://localhost:8090/greek");
+        then(target.getKey()).isEqualTo("localhost:8090");
+        then(pool.isPooled("http://localhost:8090/greek")).isFalse();
+        then(pool.isPooled("lb://unknown/greek")).isFalse();
+        then(pool.isPooled(GREEK)).isTrue();
+    }
+
+    @Test
+    public void given_slowEndpoint_when_balancing_then_trafficShiftsAway() {
+
+        //Latency outliers never ejected, the power of two choices alone
+        properties.setLatencyOutlierFactor(1_000);
+        UpstreamPool pool = pool();
+
+        calls(pool, 100, slow(DEGRADED, Duration.ofMillis(300)), healthy());
+        Map<String, Long> calls = calls(pool, 1_000, slow(DEGRADED, Duration.ofMillis(300)), healthy());
+
+        then(calls.getOrDefault(DEGRADED, 0L)).isLessThan(50);
+        then(calls.get("greek/localhost:8091")).isGreaterThan(400);
+        then(calls.get("greek/localhost:8093")).isGreaterThan(400);
+    }
+
+    @Test
+    public void given_endpointsAlike_when_balancing_then_evenTraffic() {
+
+        UpstreamPool pool = pool();
+
+        Map<String, Long> calls = calls(pool, 3_000, key -> Duration.ofMillis(10), healthy());
+
+        then(calls.values()).allMatch(count -> count > 800);
+    }
+
+    @Test
+    public void given_latencyOutlier_when_detected_then_ejected() {
+
+        UpstreamPool pool = pool();
+        //Every endpoint measured, an outlier is told from the others only
+        calls(pool, 100, key -> Duration.ofMillis(10), healthy());
+
+        Map<String, Long> calls = calls(pool, 1_000, slow(DEGRADED, Duration.ofMillis(300)), healthy());
+
+        then(endpoint(pool, DEGRADED).isEjected()).isTrue();
+        then(calls.getOrDefault(DEGRADED, 0L)).isLessThan(10);
+    }
+
+    @Test
+    public void given_consecutiveFailures_when_ejectionOver_then_probedAndBack() {
+
+        properties.setBaseEjectionTime(Duration.ofSeconds(30));
+        UpstreamPool pool = pool();
+
+        calls(pool, 200, key -> Duration.ofMillis(10), failing(DEGRADED));
+        then(endpoint(pool, DEGRADED).isEjected()).isTrue();
+        long before = endpoint(pool, DEGRADED).getCalls();
+
+        calls(pool, 100, key -> Duration.ofMillis(10), healthy());
+        then(endpoint(pool, DEGRADED).getCalls()).isEqualTo(before);
+
+        clock.addAndGet(Duration.ofSeconds(30).toNanos());
+        Map<String, Long> calls = calls(pool, 3_000, key -> Duration.ofMillis(10), healthy());
+
+        then(endpoint(pool, DEGRADED).isEjected()).isFalse();
+        then(calls.get(DEGRADED)).isGreaterThan(800);
+    }
+
+    @Test
+    public void given_failedProbe_when_ejectedAgain_then_doubleEjectionTime() {
+
+        properties.setBaseEjectionTime(Duration.ofSeconds(30));
+        UpstreamPool pool = pool();
+
+        calls(pool, 200, key -> Duration.ofMillis(10), failing(DEGRADED));
+        clock.addAndGet(Duration.ofSeconds(30).toNanos());
+        calls(pool, 200, key -> Duration.ofMillis(10), failing(DEGRADED));
+        then(endpoint(pool, DEGRADED).isEjected()).isTrue();
+
+        clock.addAndGet(Duration.ofSeconds(30).toNanos());
+        then(endpoint(pool, DEGRADED).isEjected()).isTrue();
+        clock.addAndGet(Duration.ofSeconds(30).toNanos());
+        then(endpoint(pool, DEGRADED).isEjected()).isFalse();
+    }
+
+    @Test
+    public void given_allEndpointsFailing_when_ejecting_then_atMostMaxEjectionPercent() {
+
+        UpstreamPool pool = pool();
+
+        calls(pool, 300, key -> Duration.ofMillis(10), key -> false);
+
+        then(pool.getEndpoints("greek").stream().filter(UpstreamPool.Endpoint::isEjected).count()).isEqualTo(1);
+    }
+
+    @Test
+    public void given_openBreaker_when_balancing_then_endpointSkipped() {
+
+        UpstreamPool pool = pool();
+        circuitBreakerRegistry.circuitBreaker(DEGRADED).transitionToForcedOpenState();
+
+        Map<String, Long> calls = calls(pool, 300, key -> Duration.ofMillis(10), healthy());
+
+        then(calls).doesNotContainKey(DEGRADED);
+    }
+
+    @Test
+    public void given_openBreakerPastWait_when_balancing_then_stateReadOnlyAndEndpointBackAfterWait()
+            throws InterruptedException {
+
+        UpstreamPool pool = pool();
+        CircuitBreaker circuitBreaker = circuitBreakerRegistry.circuitBreaker(DEGRADED,
+            CircuitBreakerConfig.custom().waitDurationInOpenState(Duration.ofMillis(10)).build());
+        circuitBreaker.transitionToOpenState();
+        //Past its wait on the breaker clock, a permission asked for would move it to HALF_OPEN
+        Thread.sleep(20);
+
+        Map<String, Long> calls = IntStream.range(0, 300)
+            .mapToObj(i -> pool.resolve(GREEK).getKey())
+            .collect(Collectors.groupingBy(Function.identity(), Collectors.counting()));
+
+        then(calls).doesNotContainKey(DEGRADED);
+        then(circuitBreaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+
+        clock.addAndGet(Duration.ofMillis(11).toNanos());
+
+        then(IntStream.range(0, 300).mapToObj(i -> pool.resolve(GREEK).getKey())).contains(DEGRADED);
+        then(circuitBreaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+    }
+
+    private static UpstreamPool.Endpoint endpoint(UpstreamPool pool, String key) {
+        return pool.getEndpoints("greek").stream()
+            .filter(endpoint -> endpoint.getKey().equals(key))
+            .findFirst()
+            .orElseThrow();
+    }
+
+}
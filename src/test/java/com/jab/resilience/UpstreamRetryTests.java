@@ -0,0 +1,106 @@
+package com.jab.resilience;
+
+import com.github.tomakehurst.wiremock.WireMockServer;
+import com.github.tomakehurst.wiremock.client.WireMock;
+import com.github.tomakehurst.wiremock.stubbing.Scenario;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+
+import static com.jab.resilience.Constants.CIRCUIT_BREAKER_1;
+import static com.jab.resilience.Constants.FALLBACK_GOD_RESPONSE;
+import static org.assertj.core.api.BDDAssertions.then;
+
+@SpringBootTest(properties = {
+    "resilience.retry.budget-capacity=2",
+    "resilience.retry.budget-percent=0"
+})
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+class UpstreamRetryTests {
+
+    private static final String SCENARIO_NAME = "transient_failure";
+    private static final String address = "http://localhost:8090/greek";
+
+    WireMockServer wireMockServer;
+
+    @Autowired
+    private ServiceProtected service;
+
+    @Autowired
+    private CircuitBreakerRegistry circuitBreakerRegistry;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @BeforeEach
+    public void setup() {
+        wireMockServer = new WireMockServer(8090);
+        wireMockServer.start();
+    }
+
+    @AfterEach
+    public void teardown() {
+        wireMockServer.stop();
+    }
+
+    @Test
+    public void given_transientError_when_retrieve_then_retriedAndOk() {
+
+        wireMockServer.stubFor(WireMock.get(WireMock.urlEqualTo("/greek"))
+            .inScenario(SCENARIO_NAME)
+            .whenScenarioStateIs(Scenario.STARTED)
+            .willSetStateTo("recovered")
+            .willReturn(WireMock.aResponse().withStatus(500)));
+        wireMockServer.stubFor(WireMock.get(WireMock.urlEqualTo("/greek"))
+            .inScenario(SCENARIO_NAME)
+            .whenScenarioStateIs("recovered")
+            .willReturn(WireMock.aResponse().withHeader("Content-Type", "application/json")
+                .withStatus(200)
+                .withBodyFile("greek.json")));
+
+        then(service.retrieve(address)).isEqualTo("Zeus");
+
+        wireMockServer.verify(2, WireMock.getRequestedFor(WireMock.urlEqualTo("/greek")));
+        then(retries("attempts")).isEqualTo(1);
+        then(circuitBreakerRegistry.circuitBreaker(CIRCUIT_BREAKER_1).getMetrics().getNumberOfFailedCalls())
+            .isZero();
+    }
+
+    @Test
+    public void given_outage_when_retrieve_then_budgetBoundsRetries() {
+
+        wireMockServer.stubFor(WireMock.get(WireMock.urlEqualTo("/greek"))
+            .willReturn(WireMock.aResponse().withStatus(503)));
+
+        then(service.retrieve(address)).isEqualTo(FALLBACK_GOD_RESPONSE);
+        then(service.retrieve(address)).isEqualTo(FALLBACK_GOD_RESPONSE);
+
+        //2 calls and a budget of 2 tokens that is never refilled: 2 retries in total
+        wireMockServer.verify(4, WireMock.getRequestedFor(WireMock.urlEqualTo("/greek")));
+        then(retries("attempts")).isEqualTo(2);
+        then(retries("budget.exhausted")).isEqualTo(1);
+        then(circuitBreakerRegistry.circuitBreaker(CIRCUIT_BREAKER_1).getState()).isEqualTo(CircuitBreaker.State.OPEN);
+    }
+
+    @Test
+    public void given_clientError_when_retrieve_then_notRetried() {
+
+        wireMockServer.stubFor(WireMock.get(WireMock.urlEqualTo("/greek"))
+            .willReturn(WireMock.aResponse().withStatus(404)));
+
+        then(service.retrieve(address)).isEqualTo(FALLBACK_GOD_RESPONSE);
+
+        wireMockServer.verify(1, WireMock.getRequestedFor(WireMock.urlEqualTo("/greek")));
+    }
+
+    private double retries(String metric) {
+        return meterRegistry.get("resilience.retry." + metric).tag("upstream", CIRCUIT_BREAKER_1).counter().count();
+    }
+
+}
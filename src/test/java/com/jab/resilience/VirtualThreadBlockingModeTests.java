@@ -0,0 +1,94 @@
+package com.jab.resilience;
+
+import com.github.tomakehurst.wiremock.WireMockServer;
+import com.github.tomakehurst.wiremock.client.WireMock;
+import com.github.tomakehurst.wiremock.core.WireMockConfiguration;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.BDDAssertions.then;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+@SpringBootTest(properties = {
+    "resilience.blocking.mode=virtual-threads",
+    "resilience.limiter.initial-limit=500",
+    "resilience.isolation.instances.CB1.max-concurrent-calls=1000"
+})
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+class VirtualThreadBlockingModeTests {
+
+    private static final String address = "http://localhost:8090/greek";
+
+    WireMockServer wireMockServer;
+
+    @Autowired
+    private ServiceProtected service;
+
+    @Autowired
+    private ExecutorService blockingCircuitBreakerExecutor;
+
+    @BeforeAll
+    public static void requireVirtualThreads() {
+        assumeTrue(VirtualThreads.isSupported(), "Virtual threads need a Java 21+ runtime");
+    }
+
+    @BeforeEach
+    public void setup() {
+        wireMockServer = new WireMockServer(WireMockConfiguration.options()
+            .port(8090)
+            .asynchronousResponseEnabled(true)
+            .asynchronousResponseThreads(50));
+        wireMockServer.start();
+    }
+
+    @AfterEach
+    public void teardown() {
+        wireMockServer.stop();
+    }
+
+    @Test
+    public void given_virtualThreadsMode_when_retrieve_then_runsOnVirtualThread() throws Exception {
+
+        Object virtual = blockingCircuitBreakerExecutor
+            .submit(() -> Thread.class.getMethod("isVirtual").invoke(Thread.currentThread()))
+            .get();
+
+        then(virtual).isEqualTo(true);
+    }
+
+    @Test
+    public void given_slowUpstream_when_manyBlockingCallers_then_allServedWithinTimeLimit() {
+
+        wireMockServer.stubFor(WireMock.get(WireMock.urlPathEqualTo("/greek"))
+            .willReturn(WireMock.aResponse().withHeader("Content-Type", "application/json")
+                .withStatus(200)
+                .withFixedDelay(500)
+                .withBodyFile("greek.json")));
+
+        //More concurrent callers than a platform pool would hold, each parks a virtual thread for 500ms.
+        //Distinct urls, otherwise the coalescer makes them a single upstream call
+        ExecutorService callers = Executors.newFixedThreadPool(400);
+        try {
+            List<CompletableFuture<String>> responses = IntStream.range(0, 400)
+                .mapToObj(i -> CompletableFuture.supplyAsync(() -> service.retrieve(address + "?caller=" + i), callers))
+                .collect(Collectors.toList());
+
+            then(responses.stream().map(CompletableFuture::join)).containsOnly("Zeus");
+        } finally {
+            callers.shutdownNow();
+        }
+    }
+
+}